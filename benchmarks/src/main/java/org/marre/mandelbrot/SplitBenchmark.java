@@ -0,0 +1,57 @@
+package org.marre.mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting large canvases into parts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitBenchmark {
+    @Param({"10000", "100000"})
+    public int canvasSize;
+
+    @Param({"250", "1000"})
+    public int partSize;
+
+    private MandelbrotPart whole;
+
+    @Setup
+    public void setup() {
+        whole = MandelbrotPart.create(
+                new Dimension(canvasSize, canvasSize),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                1024);
+    }
+
+    @Benchmark
+    public List<MandelbrotPart> split() {
+        return whole.split(partSize);
+    }
+
+    @Benchmark
+    public void splitLazily(Blackhole blackhole) {
+        for (MandelbrotPart part : whole.splitLazily(partSize)) {
+            blackhole.consume(part);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.marre.mandelbrot.api;
+
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.benchmark.StandInServer;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decoding a 1000x1000 part as json and in the binary encoding, with and without gzip.
+ *
+ * The pixels are a real view, calculated locally, since the binary encoding depends on neighbouring
+ * pixels being alike. The sizes of the encodings are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final int SIZE = 1000;
+
+    /**
+     * The whole set, the seahorse valley and a deep spiral.
+     */
+    @Param({"-2.0,-1.5,1.0,1.5", "-0.8,0.05,-0.7,0.15", "-0.7454,0.1130,-0.7452,0.1132"})
+    public String view;
+
+    private byte[] json;
+    private byte[] jsonGzip;
+    private byte[] binary;
+    private byte[] binaryGzip;
+
+    @Setup
+    public void setup() {
+        String[] c = view.split(",");
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(SIZE, SIZE),
+                new Complex(Double.parseDouble(c[0]), Double.parseDouble(c[1])),
+                new Complex(Double.parseDouble(c[2]), Double.parseDouble(c[3])),
+                1024);
+        int[] pixels = LocalMandelbrotBackend.create().mandelbrot(mandelbrotPart).blockingGet().getPixels();
+
+        json = StandInServer.json(pixels);
+        jsonGzip = StandInServer.gzip(json);
+        binary = MandelbrotBinaryCodec.encode(pixels, SIZE, SIZE);
+        binaryGzip = StandInServer.gzip(binary);
+
+        System.out.println();
+        System.out.println("Bytes : json " + json.length + ", json+gzip " + jsonGzip.length
+                + ", binary " + binary.length + ", binary+gzip " + binaryGzip.length);
+    }
+
+    @Benchmark
+    public int[] json() throws IOException {
+        return MandelbrotResponseDecoder.decode(new ByteArrayInputStream(json), SIZE * SIZE).getPixels();
+    }
+
+    @Benchmark
+    public int[] jsonGzip() throws IOException {
+        return MandelbrotResponseDecoder.decode(new GZIPInputStream(new ByteArrayInputStream(jsonGzip)), SIZE * SIZE).getPixels();
+    }
+
+    @Benchmark
+    public int[] binary() throws IOException {
+        return MandelbrotBinaryCodec.decode(new ByteArrayInputStream(binary), SIZE, SIZE);
+    }
+
+    @Benchmark
+    public int[] binaryGzip() throws IOException {
+        return MandelbrotBinaryCodec.decode(new GZIPInputStream(new ByteArrayInputStream(binaryGzip)), SIZE, SIZE);
+    }
+}
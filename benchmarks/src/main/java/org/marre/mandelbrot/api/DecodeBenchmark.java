@@ -0,0 +1,65 @@
+package org.marre.mandelbrot.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.marre.mandelbrot.benchmark.StandInServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding server responses of realistic sizes.
+ *
+ * Run with -prof gc to compare the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+    @Param({"100", "500", "1000"})
+    public int partSize;
+
+    private byte[] json;
+    private ObjectReader objectReader;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(17);
+        int[] pixels = new int[partSize * partSize];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(1025);
+        }
+
+        json = StandInServer.json(pixels);
+        objectReader = new ObjectMapper().readerFor(MandelbrotResponseJson.class);
+    }
+
+    /**
+     * Jackson databind, as the client used to decode responses.
+     */
+    @Benchmark
+    public MandelbrotResponseJson databind() throws IOException {
+        return objectReader.readValue(json);
+    }
+
+    @Benchmark
+    public MandelbrotResponseJson streaming() throws IOException {
+        return MandelbrotResponseDecoder.decode(new ByteArrayInputStream(json), partSize * partSize);
+    }
+}
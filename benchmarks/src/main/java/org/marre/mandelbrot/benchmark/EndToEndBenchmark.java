@@ -0,0 +1,97 @@
+package org.marre.mandelbrot.benchmark;
+
+import io.reactivex.Flowable;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.cli.PngUtil;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole render, the same way as the Cli does it, against a stand-in server.
+ *
+ * The latency of the server is log-normal with the given median and sigma.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+    @Param({"2000"})
+    public int canvasSize;
+
+    @Param({"250"})
+    public int partSize;
+
+    @Param({"10"})
+    public int concurrency;
+
+    @Param({"20"})
+    public double latencyMedianMs;
+
+    @Param({"0.0", "1.0"})
+    public double latencySigma;
+
+    /**
+     * The response format, json or binary, optionally gzipped.
+     */
+    @Param({"json", "json+gzip", "binary", "binary+gzip"})
+    public String format;
+
+    private StandInServer server;
+    private MandelbrotClient client;
+    private MandelbrotPart whole;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = StandInServer.start(latencyMedianMs, latencySigma, format.startsWith("binary"), format.endsWith("+gzip"));
+        client = MandelbrotClient.create(server.getUrl(), concurrency);
+        whole = MandelbrotPart.create(
+                new Dimension(canvasSize, canvasSize),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                1024);
+
+        // Let the server calculate every part once
+        render();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public int render() {
+        ImageCanvas canvas = Canvas.create(whole.getSize());
+
+        Flowable.fromIterable(whole.splitLazily(partSize))
+                .flatMapSingle(client::mandelbrot, false, 2 * concurrency)
+                .blockingForEach(canvas::draw);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        PngUtil.toPng(canvas.getImage(), png);
+        return png.size();
+    }
+}
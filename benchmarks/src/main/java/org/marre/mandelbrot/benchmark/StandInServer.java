@@ -0,0 +1,177 @@
+package org.marre.mandelbrot.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBinaryCodec;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the mandelbrot server.
+ *
+ * Answers the same urls as the real server after a delay drawn from a log-normal distribution, like a
+ * lambda with the occasional cold start. The pixels are calculated with the local backend once per url
+ * and then served from memory, so the benchmarks measure the client and not the server.
+ *
+ * If enabled, clients that accept it get the binary encoding instead of json, and gzip if they accept
+ * that.
+ */
+public final class StandInServer implements AutoCloseable {
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final LocalMandelbrotBackend backend = LocalMandelbrotBackend.create();
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    private final double medianLatencyMs;
+    private final double latencySigma;
+    private final boolean binary;
+    private final boolean gzip;
+
+    private StandInServer(double medianLatencyMs, double latencySigma, boolean binary, boolean gzip) throws IOException {
+        this.medianLatencyMs = medianLatencyMs;
+        this.latencySigma = latencySigma;
+        this.binary = binary;
+        this.gzip = gzip;
+
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/mandelbrot/", this::handle);
+        httpServer.start();
+    }
+
+    /**
+     * Starts a server on a free port.
+     *
+     * @param medianLatencyMs the median delay before a response is sent
+     * @param latencySigma the sigma of the log-normal delay, 0 for a constant delay
+     */
+    public static StandInServer start(double medianLatencyMs, double latencySigma) throws IOException {
+        return start(medianLatencyMs, latencySigma, false, false);
+    }
+
+    /**
+     * Starts a server on a free port.
+     *
+     * @param binary answer with the binary encoding when the client accepts it
+     * @param gzip gzip the response when the client accepts it
+     */
+    public static StandInServer start(double medianLatencyMs, double latencySigma, boolean binary, boolean gzip) throws IOException {
+        return new StandInServer(medianLatencyMs, latencySigma, binary, gzip);
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/";
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean binaryResponse = binary && accept != null && accept.contains(MandelbrotBinaryCodec.MEDIA_TYPE);
+            boolean gzipResponse = gzip && acceptEncoding != null && acceptEncoding.contains("gzip");
+
+            String key = (binaryResponse ? "binary" : "json") + (gzipResponse ? "+gzip:" : ":") + path;
+            byte[] body = responses.computeIfAbsent(key, ignored -> calculate(path, binaryResponse, gzipResponse));
+
+            sleep();
+
+            exchange.getResponseHeaders().set("Content-Type", binaryResponse ? MandelbrotBinaryCodec.MEDIA_TYPE : "application/json");
+            if (gzipResponse) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sleep() {
+        double latency = medianLatencyMs * Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian());
+        try {
+            TimeUnit.MICROSECONDS.sleep((long) (latency * 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Calculates the response for /mandelbrot/mincre/mincim/maxcre/maxcim/xres/yres/infn
+     */
+    private byte[] calculate(String path, boolean binaryResponse, boolean gzipResponse) {
+        String[] parts = path.split("/");
+        int n = parts.length;
+
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(Integer.parseInt(parts[n - 3]), Integer.parseInt(parts[n - 2])),
+                new Complex(Double.parseDouble(parts[n - 7]), Double.parseDouble(parts[n - 6])),
+                new Complex(Double.parseDouble(parts[n - 5]), Double.parseDouble(parts[n - 4])),
+                Integer.parseInt(parts[n - 1]));
+
+        Dimension size = mandelbrotPart.getSize();
+        int[] pixels = backend.mandelbrot(mandelbrotPart).blockingGet().getPixels();
+        byte[] body = binaryResponse ? MandelbrotBinaryCodec.encode(pixels, size.getWidth(), size.getHeight()) : json(pixels);
+
+        return gzipResponse ? gzip(body) : body;
+    }
+
+    public static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The json the mandelbrot server would return for the pixels.
+     */
+    public static byte[] json(int[] pixels) {
+        StringBuilder json = new StringBuilder(pixels.length * 4 + 16);
+        json.append("{\"pixels\":[");
+        for (int i = 0; i < pixels.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(pixels[i]);
+        }
+        json.append("]}");
+
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,121 @@
+package org.marre.mandelbrot.benchmark;
+
+import io.reactivex.Flowable;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thousands of small tiles in flight at once, with the okhttp transport and the http2 one.
+ *
+ * The http2 transport is only there when its jar is on the classpath and the JVM is 21 or newer, e.g.
+ * java -cp target/benchmarks.jar:../http2/target/mandelbrot-client-java-http2-0.0.1-SNAPSHOT.jar
+ * org.openjdk.jmh.Main TransportBenchmark -prof gc
+ *
+ * The peak number of client threads, those not serving the stand-in, and the peak heap are printed
+ * after each trial. The stand-in only speaks HTTP/1.1, so both transports need a connection per
+ * request in flight, only the threads waiting for them differ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransportBenchmark {
+    @Param({"okhttp", "http2"})
+    public String transport;
+
+    @Param({"1024"})
+    public int concurrency;
+
+    @Param({"2048"})
+    public int canvasSize;
+
+    @Param({"32"})
+    public int partSize;
+
+    @Param({"50"})
+    public double latencyMedianMs;
+
+    private StandInServer server;
+    private MandelbrotClient client;
+    private MandelbrotPart whole;
+    private Thread sampler;
+    private volatile int peakThreads;
+    private volatile long peakHeap;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = StandInServer.start(latencyMedianMs, 0.5, true, true);
+        client = MandelbrotClient.create(transport, server.getUrl(), concurrency, MandelbrotMetrics.NOOP);
+        whole = MandelbrotPart.create(
+                new Dimension(canvasSize, canvasSize),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                256);
+
+        // Let the server calculate every part once
+        render();
+
+        sampler = new Thread(this::sample, "transport-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        sampler.interrupt();
+        sampler.join();
+        server.close();
+
+        System.out.println();
+        System.out.println(transport + " peak client threads " + peakThreads + ", peak heap " + (peakHeap >> 20) + " MiB");
+    }
+
+    @Benchmark
+    public long render() {
+        return Flowable.fromIterable(whole.splitLazily(partSize))
+                .flatMapSingle(client::mandelbrot, false, concurrency)
+                .count()
+                .blockingGet();
+    }
+
+    private void sample() {
+        while (!Thread.currentThread().isInterrupted()) {
+            int threads = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (!thread.getName().startsWith("stand-in-server")) {
+                    threads++;
+                }
+            }
+            peakThreads = Math.max(peakThreads, threads);
+            peakHeap = Math.max(peakHeap, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
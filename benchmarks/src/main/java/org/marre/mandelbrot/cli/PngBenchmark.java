@@ -0,0 +1,87 @@
+package org.marre.mandelbrot.cli;
+
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding large canvases as png.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PngBenchmark {
+    @Param({"2000", "4000"})
+    public int canvasSize;
+
+    private ImageCanvas canvas;
+
+    @Setup
+    public void setup() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(canvasSize, canvasSize),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                1024);
+
+        canvas = Canvas.create(whole.getSize());
+        LocalMandelbrotBackend backend = LocalMandelbrotBackend.create();
+        for (MandelbrotPart part : whole.split(1000)) {
+            MandelbrotResult result = backend.mandelbrot(part).blockingGet();
+            canvas.draw(result);
+        }
+    }
+
+    @Benchmark
+    public long toPng() {
+        CountingOutputStream os = new CountingOutputStream();
+        PngUtil.toPng(canvas.getImage(), os);
+        return os.count;
+    }
+
+    /**
+     * The whole canvas at once with the streaming writer, bands compressed in parallel.
+     */
+    @Benchmark
+    public long streaming() throws IOException {
+        CountingOutputStream os = new CountingOutputStream();
+        StreamingPngWriter.write(os, canvas, 100);
+        return os.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
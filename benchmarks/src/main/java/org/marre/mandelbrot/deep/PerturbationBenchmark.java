@@ -0,0 +1,81 @@
+package org.marre.mandelbrot.deep;
+
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of perturbation compared to iterating every pixel in doubles, on one thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PerturbationBenchmark {
+    private static final double RE = -0.7436438870371587;
+    private static final double IM = 0.1318259042053119;
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final int MAX_STEPS = 2000;
+
+    private MandelbrotPart part;
+    private DeepView view;
+    private DeepView deepView;
+    private LocalMandelbrotBackend backend;
+    private PerturbationRenderer renderer;
+
+    @Setup
+    public void setup() {
+        double pixelSize = 1e-6;
+        part = MandelbrotPart.create(
+                new Dimension(WIDTH, HEIGHT),
+                new Complex(RE - WIDTH / 2.0 * pixelSize, IM - HEIGHT / 2.0 * pixelSize),
+                new Complex(RE + WIDTH / 2.0 * pixelSize, IM + HEIGHT / 2.0 * pixelSize),
+                MAX_STEPS);
+        view = DeepView.create(new BigDecimal(RE), new BigDecimal(IM), pixelSize, new Dimension(WIDTH, HEIGHT), MAX_STEPS);
+        deepView = DeepView.create(
+                new BigDecimal("-0.743643887037158704752191506114774"),
+                new BigDecimal("0.131825904205311970493132056385139"),
+                1e-18,
+                new Dimension(WIDTH / 4, HEIGHT / 4),
+                20000);
+
+        backend = LocalMandelbrotBackend.create(1);
+        renderer = PerturbationRenderer.create(1);
+    }
+
+    @Benchmark
+    public MandelbrotResult doubles() {
+        return backend.mandelbrot(part).blockingGet();
+    }
+
+    @Benchmark
+    public int[] perturbation() {
+        return renderer.render(view);
+    }
+
+    /**
+     * A view where the pixels are 1e-18 apart, out of reach of doubles.
+     */
+    @Benchmark
+    public int[] deep() {
+        return renderer.render(deepView);
+    }
+}
@@ -0,0 +1,104 @@
+package org.marre.mandelbrot.render;
+
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Colourizing the iterations of a part and compositing it onto the canvas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColourizeBenchmark {
+    @Param({"250", "1000"})
+    public int partSize;
+
+    @Param({"grey", "smooth", "histogram"})
+    public String palette;
+
+    private int[] iterations;
+    private int[] rgbPixels;
+    private MandelbrotResult result;
+    private Palette colours;
+    private Canvas canvas;
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(17);
+        iterations = new int[partSize * partSize];
+        for (int i = 0; i < iterations.length; i++) {
+            iterations[i] = random.nextInt(1025);
+        }
+        rgbPixels = new int[iterations.length];
+
+        MandelbrotPart part = MandelbrotPart.create(
+                new Dimension(partSize, partSize),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                1024);
+        result = new MandelbrotResult(part, iterations);
+
+        colours = palette.equals("grey") ? Palette.grey() : palette.equals("smooth") ? Palette.smooth(1024) : Palette.histogram(1024);
+        colours.record(iterations);
+
+        canvas = Canvas.create(new Dimension(partSize, partSize), colours);
+        image = new BufferedImage(partSize, partSize, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Benchmark
+    public int[] colourize() {
+        colours.colourize(iterations, 0, rgbPixels, 0, iterations.length);
+        return rgbPixels;
+    }
+
+    @Benchmark
+    public int packRgb() {
+        int rgb = 0;
+        for (int i = 0; i < iterations.length; i++) {
+            int grey = iterations[i] & 0xff;
+            rgb ^= Canvas.packRgb(grey, grey, grey);
+        }
+        return rgb;
+    }
+
+    /**
+     * Colourizing straight into the raster, as the canvas does, and recording the iterations.
+     */
+    @Benchmark
+    public Canvas canvasDraw() {
+        canvas.draw(result);
+        return canvas;
+    }
+
+    /**
+     * Colourizing into an array and copying it with setRGB, as the canvas used to do.
+     */
+    @Benchmark
+    public BufferedImage setRgb() {
+        int[] rgb = new int[iterations.length];
+        colours.colourize(iterations, 0, rgb, 0, iterations.length);
+        image.setRGB(0, 0, partSize, partSize, rgb, 0, partSize);
+        return image;
+    }
+}
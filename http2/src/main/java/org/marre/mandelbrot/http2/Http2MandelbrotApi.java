@@ -0,0 +1,193 @@
+package org.marre.mandelbrot.http2;
+
+import io.reactivex.Single;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Okio;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import retrofit2.Response;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The mandelbrot api on {@link HttpClient}.
+ *
+ * Each request blocks a virtual thread of its own, so thousands of parts can wait for a permit or a
+ * response without a platform thread each. At most maxConcurrency requests are sent at a time, a
+ * permit is held until the body is closed. An HTTP/2 connection carries many requests at once, so
+ * only one client, and connection, is made per {@link #STREAMS_PER_CONNECTION} concurrent requests.
+ * Servers that only speak HTTP/1.1 get a connection per concurrent request instead.
+ *
+ * Responses are adapted to retrofit's, so the {@link MandelbrotClient} decodes, splits and retries
+ * them the same way as with okhttp.
+ */
+final class Http2MandelbrotApi implements MandelbrotClient.MandelbrotApi {
+    /**
+     * Concurrent streams per connection, below the 100 most servers allow.
+     */
+    static final int STREAMS_PER_CONNECTION = 96;
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(45);
+
+    private final URI baseUri;
+    private final HttpClient[] clients;
+    private final AtomicInteger nextClient = new AtomicInteger();
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    private Http2MandelbrotApi(URI baseUri, HttpClient[] clients, Semaphore permits, ExecutorService executor) {
+        this.baseUri = baseUri;
+        this.clients = clients;
+        this.permits = permits;
+        this.executor = executor;
+    }
+
+    static Http2MandelbrotApi create(String mandelbrotServerBaseUrl, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be a positive integer. [" + maxConcurrency + "]");
+        }
+
+        if (!mandelbrotServerBaseUrl.endsWith("/")) {
+            mandelbrotServerBaseUrl += "/";
+        }
+
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mandelbrot-http2-", 0).factory());
+
+        HttpClient[] clients = new HttpClient[(maxConcurrency + STREAMS_PER_CONNECTION - 1) / STREAMS_PER_CONNECTION];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(CONNECT_TIMEOUT)
+                    .executor(executor)
+                    .build();
+        }
+
+        return new Http2MandelbrotApi(URI.create(mandelbrotServerBaseUrl), clients, new Semaphore(maxConcurrency), executor);
+    }
+
+    @Override
+    public Single<Response<ResponseBody>> mandelbrot(double mincre, double mincim, double maxcre, double maxcim, int xres, int yres, int infn) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("mandelbrot/" + mincre + "/" + mincim + "/" + maxcre + "/" + maxcim + "/" + xres + "/" + yres + "/" + infn))
+                .header("Accept", ACCEPT)
+                .header("Accept-Encoding", "gzip")
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+
+        // Disposing interrupts the virtual thread, which cancels the exchange. A response that arrives
+        // anyway is dropped by the disposed emitter, so its body is closed here to release the permit.
+        // Whether it was dropped is only known after onSuccess returns, it is delivered synchronously.
+        return Single.defer(() -> {
+            AtomicBoolean delivered = new AtomicBoolean();
+            return Single.<Response<ResponseBody>>create(emitter -> {
+                Future<?> future = executor.submit(() -> {
+                    Response<ResponseBody> response;
+                    try {
+                        response = send(request);
+                    } catch (Throwable err) {
+                        emitter.tryOnError(err);
+                        return;
+                    }
+
+                    emitter.onSuccess(response);
+                    if (!delivered.get()) {
+                        close(response);
+                    }
+                });
+                emitter.setCancellable(() -> future.cancel(true));
+            }).doOnSuccess(response -> delivered.set(true));
+        });
+    }
+
+    private static void close(Response<ResponseBody> response) {
+        ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+        if (body != null) {
+            body.close();
+        }
+    }
+
+    private Response<ResponseBody> send(HttpRequest request) throws IOException, InterruptedException {
+        permits.acquire();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+
+        try {
+            HttpResponse<InputStream> response = exchange(request);
+
+            InputStream body = response.body();
+            if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+                body = new GZIPInputStream(body);
+            }
+            MediaType contentType = response.headers().firstValue("Content-Type").map(MediaType::parse).orElse(null);
+
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                // The permit is released when the client is done decoding
+                InputStream releasing = new FilterInputStream(body) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            release.run();
+                        }
+                    }
+                };
+                return Response.success(ResponseBody.create(contentType, -1, Okio.buffer(Okio.source(releasing))));
+            }
+
+            byte[] error;
+            try (InputStream in = body) {
+                error = in.readAllBytes();
+            } finally {
+                release.run();
+            }
+            if (status < 400) {
+                throw new IOException("Unexpected response. [" + status + "]");
+            }
+            return Response.error(status, ResponseBody.create(contentType, error));
+        } catch (HttpTimeoutException e) {
+            release.run();
+            // Timeouts split the part, as okhttp's do
+            SocketTimeoutException timeout = new SocketTimeoutException(e.getMessage());
+            timeout.initCause(e);
+            throw timeout;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    private HttpResponse<InputStream> exchange(HttpRequest request) throws IOException, InterruptedException {
+        HttpClient client = clients[Math.floorMod(nextClient.getAndIncrement(), clients.length)];
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            throw e;
+        } catch (IOException e) {
+            // Most likely a pooled connection the server had closed, retried once like okhttp does
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        }
+    }
+}
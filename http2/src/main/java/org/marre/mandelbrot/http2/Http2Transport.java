@@ -0,0 +1,22 @@
+package org.marre.mandelbrot.http2;
+
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.api.MandelbrotTransport;
+
+/**
+ * Requests on {@link java.net.http.HttpClient}, multiplexed over a few HTTP/2 connections, each
+ * request on a virtual thread.
+ */
+public final class Http2Transport implements MandelbrotTransport {
+    static final String NAME = "http2";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public MandelbrotClient.MandelbrotApi create(String mandelbrotServerBaseUrl, int maxConcurrency) {
+        return Http2MandelbrotApi.create(mandelbrotServerBaseUrl, maxConcurrency);
+    }
+}
@@ -0,0 +1,159 @@
+package org.marre.mandelbrot.http2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.reactivex.disposables.Disposable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBinaryCodec;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.metrics.RecordingMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+public class TestHttp2Transport {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final CountDownLatch unstall = new CountDownLatch(1);
+    private final AtomicReference<CountDownLatch> answered = new AtomicReference<>(new CountDownLatch(1));
+
+    private HttpServer server;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/mandelbrot/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        unstall.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSplitAndGzip() {
+        RecordingMetrics metrics = RecordingMetrics.create();
+        MandelbrotClient client = MandelbrotClient.create(Http2Transport.NAME, baseUrl(), 4, metrics);
+
+        MandelbrotPart part = MandelbrotPart.create(new Dimension(200, 100), new Complex(0, 0), new Complex(200, 100), 100);
+        MandelbrotResult result = client.mandelbrot(part).blockingGet();
+
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 200; x++) {
+                Assert.assertEquals(x + 1000 * y, result.getPixels()[y * 200 + x]);
+            }
+        }
+
+        // 200x100 -> 2 x 100x100 -> 8 x 50x50, the 502s are split like okhttp's
+        Assert.assertEquals(1 + 2 + 8, metrics.getRequests());
+        Assert.assertEquals(1 + 2, metrics.getErrors(502));
+        Assert.assertTrue(maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void testDisposeReleasesPermit() throws InterruptedException {
+        MandelbrotClient client = MandelbrotClient.create(Http2Transport.NAME, baseUrl(), 1, RecordingMetrics.create());
+
+        // The only permit is taken by a request the server never answers
+        Disposable stalledRequest = client.mandelbrot(MandelbrotPart.create(new Dimension(1, 1), new Complex(-1, 0), new Complex(0, 1), 100)).subscribe(result -> { }, err -> { });
+        Assert.assertTrue(stalled.await(10, TimeUnit.SECONDS));
+        stalledRequest.dispose();
+
+        MandelbrotPart part = MandelbrotPart.create(new Dimension(10, 10), new Complex(0, 0), new Complex(10, 10), 100);
+        MandelbrotResult result = client.mandelbrot(part).timeout(10, TimeUnit.SECONDS).blockingGet();
+        Assert.assertEquals(1000 * 9 + 9, result.getPixels()[99]);
+    }
+
+    @Test
+    public void testDisposeAfterResponseReleasesPermit() throws InterruptedException {
+        MandelbrotClient client = MandelbrotClient.create(Http2Transport.NAME, baseUrl(), 1, RecordingMetrics.create());
+        MandelbrotPart part = MandelbrotPart.create(new Dimension(10, 10), new Complex(0, 0), new Complex(10, 10), 100);
+
+        // Disposed while the response arrives, sometimes after it has been received but before it is
+        // delivered. Each of those would keep the only permit if the body wasn't closed.
+        for (int i = 0; i < 200; i++) {
+            answered.set(new CountDownLatch(1));
+            Disposable request = client.mandelbrot(part).subscribe(result -> { }, err -> { });
+            Assert.assertTrue(answered.get().await(10, TimeUnit.SECONDS));
+            request.dispose();
+        }
+
+        MandelbrotResult result = client.mandelbrot(part).timeout(10, TimeUnit.SECONDS).blockingGet();
+        Assert.assertEquals(1000 * 9 + 9, result.getPixels()[99]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoConcurrency() {
+        new Http2Transport().create(baseUrl(), 0);
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Fails with 502 for anything larger than 50 x 50 pixels, stalls on parts left of the origin and
+     * otherwise answers with the gzipped binary encoding where each pixel is x + 1000 * y.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            int x0 = (int) Math.round(Double.parseDouble(path[2]));
+            int y0 = (int) Math.round(Double.parseDouble(path[3]));
+            int xres = Integer.parseInt(path[6]);
+            int yres = Integer.parseInt(path[7]);
+
+            if (x0 < 0) {
+                stalled.countDown();
+                unstall.await();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            if (xres * yres > 50 * 50) {
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+
+            int[] pixels = new int[xres * yres];
+            for (int y = 0; y < yres; y++) {
+                for (int x = 0; x < xres; x++) {
+                    pixels[y * xres + x] = (x0 + x) + 1000 * (y0 + y);
+                }
+            }
+
+            Assert.assertTrue(exchange.getRequestHeaders().getFirst("Accept").startsWith(MandelbrotBinaryCodec.MEDIA_TYPE));
+            exchange.getResponseHeaders().set("Content-Type", MandelbrotBinaryCodec.MEDIA_TYPE);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                MandelbrotBinaryCodec.encode(pixels, xres, yres, out);
+            }
+            answered.get().countDown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
@@ -4,8 +4,11 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Value;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Represents the mandelbrot parameters for a part of the mandelbrot image.
@@ -68,60 +71,113 @@ public class MandelbrotPart {
                 new Position(0, 0));
     }
 
+    /**
+     * Splits this part into parts that are at most partSize x partSize pixels.
+     *
+     * The offsets of the returned parts are relative to the same canvas as the offset of this part.
+     */
     public List<MandelbrotPart> split(int partSize) {
-        if (partSize <= 0) {
-            throw new IllegalArgumentException("partSize must be positive integer [" + partSize + "]");
-        }
+        List<MandelbrotPart> mandelbrotParts = new ArrayList<>(splitCount(partSize));
 
-        if ( (offset.getX() != 0) || (offset.getY() != 0) ) {
-            // LIMITATION: Can only split of offset is 0
-            throw new IllegalArgumentException("offset must be zero [" + offset + "]");
+        for (MandelbrotPart mandelbrotPart : splitLazily(partSize)) {
+            mandelbrotParts.add(mandelbrotPart);
         }
 
-        List<MandelbrotPart> mandelbrotParts = new LinkedList<>();
+        return mandelbrotParts;
+    }
+
+    /**
+     * Same as {@link #split(int)} but the parts are created when iterated, in row order.
+     *
+     * Use this when the number of parts is large and they are consumed one at a time.
+     */
+    public Iterable<MandelbrotPart> splitLazily(int partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("partSize must be positive integer [" + partSize + "]");
+        }
 
         if ( (partSize >= size.getWidth()) && (partSize >= size.getHeight()) ) {
             // No need to split this
-            mandelbrotParts.add(this);
-            return mandelbrotParts;
+            return Collections.singletonList(this);
         }
 
-        double sizeRe = maxc.getRe() - minc.getRe();
-        double pixelSizeRe = sizeRe / size.getWidth();
-        double sizeIm = maxc.getIm() - minc.getIm();
-        double pixelSizeIm = sizeIm / size.getHeight();
+        double pixelSizeRe = getPixelSizeRe();
+        double pixelSizeIm = getPixelSizeIm();
 
-        int tilesX = size.getWidth() / partSize;
-        int newCanvasWidth = tilesX * partSize;
-        int tilesY = size.getHeight() / partSize;
-        int newCanvasHeight = tilesY * partSize;
+        return () -> new Iterator<MandelbrotPart>() {
+            private int x = 0;
+            private int y = 0;
 
-        for (int y=0; y < newCanvasHeight; y = y + partSize) {
-            for (int x=0; x < newCanvasWidth; x = x + partSize) {
-                mandelbrotParts.add(getMandelbrotPart(x, y, partSize, partSize, pixelSizeRe, pixelSizeIm));
+            @Override
+            public boolean hasNext() {
+                return y < size.getHeight();
             }
-        }
 
-        int xRest = size.getWidth() % partSize;
-        int yRest = size.getHeight() % partSize;
+            @Override
+            public MandelbrotPart next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                int width = Math.min(partSize, size.getWidth() - x);
+                int height = Math.min(partSize, size.getHeight() - y);
+                MandelbrotPart mandelbrotPart = getMandelbrotPart(x, y, width, height, pixelSizeRe, pixelSizeIm);
 
-        if (xRest > 0) {
-            for (int y=0; y < newCanvasHeight; y = y + partSize) {
-                mandelbrotParts.add(getMandelbrotPart(newCanvasWidth, y, xRest, partSize, pixelSizeRe, pixelSizeIm));
+                x += partSize;
+                if (x >= size.getWidth()) {
+                    x = 0;
+                    y += partSize;
+                }
+
+                return mandelbrotPart;
             }
+        };
+    }
+
+    /**
+     * Returns the number of parts {@link #split(int)} would return.
+     */
+    public int splitCount(int partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("partSize must be positive integer [" + partSize + "]");
         }
 
-        if (yRest > 0) {
-            for (int x=0; x < newCanvasWidth; x = x + partSize) {
-                mandelbrotParts.add(getMandelbrotPart(x, newCanvasHeight, partSize, yRest, pixelSizeRe, pixelSizeIm));
-            }
+        long tilesX = (size.getWidth() + (long) partSize - 1) / partSize;
+        long tilesY = (size.getHeight() + (long) partSize - 1) / partSize;
+
+        return Math.toIntExact(tilesX * tilesY);
+    }
+
+    /**
+     * Returns the part of this part that starts at the pixel x, y and is width x height pixels.
+     *
+     * The offset of the returned part is relative to the same canvas as the offset of this part.
+     */
+    public MandelbrotPart subPart(int x, int y, int width, int height) {
+        if ((x < 0) || (y < 0) || (width <= 0) || (height <= 0)
+                || (x + width > size.getWidth()) || (y + height > size.getHeight())) {
+            throw new IllegalArgumentException("sub part outside of part [x=" + x + ", y=" + y + ", width=" + width + ", height=" + height + ", size=" + size + "]");
         }
 
-        if ((xRest > 0) && (yRest > 0)) {
-            mandelbrotParts.add(getMandelbrotPart(newCanvasWidth, newCanvasHeight, xRest, yRest, pixelSizeRe, pixelSizeIm));
+        if ((x == 0) && (y == 0) && (width == size.getWidth()) && (height == size.getHeight())) {
+            return this;
         }
 
-        return mandelbrotParts;
+        return getMandelbrotPart(x, y, width, height, getPixelSizeRe(), getPixelSizeIm());
+    }
+
+    /**
+     * Size of a pixel along the real axis.
+     */
+    public double getPixelSizeRe() {
+        return (maxc.getRe() - minc.getRe()) / size.getWidth();
+    }
+
+    /**
+     * Size of a pixel along the imaginary axis.
+     */
+    public double getPixelSizeIm() {
+        return (maxc.getIm() - minc.getIm()) / size.getHeight();
     }
 
     private MandelbrotPart getMandelbrotPart(int x, int y, int width, int height, double rePixelSize, double imPixelSize) {
@@ -130,6 +186,6 @@ public class MandelbrotPart {
                             new Complex(minc.getRe() + x * rePixelSize, minc.getIm() + y * imPixelSize),
                             new Complex(minc.getRe() + (x + width) * rePixelSize, minc.getIm() + (y + height) * imPixelSize),
                             maxSteps,
-                            new Position(x, y));
+                            new Position(offset.getX() + x, offset.getY() + y));
     }
 }
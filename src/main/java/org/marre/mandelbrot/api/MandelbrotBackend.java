@@ -0,0 +1,16 @@
+package org.marre.mandelbrot.api;
+
+import io.reactivex.Single;
+import org.marre.mandelbrot.MandelbrotPart;
+
+/**
+ * Something that can calculate the number of iterations for each pixel in a mandelbrot part.
+ */
+public interface MandelbrotBackend {
+    /**
+     * Calculates the iterations for the given part.
+     *
+     * The returned pixels are in row order and have the same size as the part.
+     */
+    Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart);
+}
@@ -0,0 +1,182 @@
+package org.marre.mandelbrot.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact binary encoding of the pixels of a part, an alternative to the json response.
+ *
+ * <pre>
+ * magic    4 bytes 'MBR1'
+ * width    varint
+ * height   varint
+ * rows     height rows of runs
+ * </pre>
+ *
+ * Each row is a sequence of runs of equal pixels covering exactly width pixels. A run is its length
+ * as a varint followed by the difference to the value of the previous run, zigzag encoded as a varint.
+ * Neighbouring pixels tend to be equal or close, so most runs take two or three bytes.
+ */
+public final class MandelbrotBinaryCodec {
+    /**
+     * The content type of encoded responses.
+     */
+    public static final String MEDIA_TYPE = "application/x-mandelbrot-rle";
+
+    static final int MAGIC = 0x4d425231;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private MandelbrotBinaryCodec() {}
+
+    public static byte[] encode(int[] pixels, int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height / 2 + 16);
+        try {
+            encode(pixels, width, height, out);
+        } catch (IOException e) {
+            // Never thrown by ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static void encode(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        if (width < 1 || height < 1 || pixels.length != width * height) {
+            throw new IllegalArgumentException("pixels must be width x height. [" + pixels.length + ", " + width + ", " + height + "]");
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int position = 0;
+
+        buffer[position++] = (byte) (MAGIC >>> 24);
+        buffer[position++] = (byte) (MAGIC >>> 16);
+        buffer[position++] = (byte) (MAGIC >>> 8);
+        buffer[position++] = (byte) MAGIC;
+        position = writeVarint(buffer, position, width);
+        position = writeVarint(buffer, position, height);
+
+        int previous = 0;
+        for (int y = 0; y < height; y++) {
+            int rowEnd = (y + 1) * width;
+            int i = y * width;
+            while (i < rowEnd) {
+                int value = pixels[i];
+                int run = 1;
+                while (i + run < rowEnd && pixels[i + run] == value) {
+                    run++;
+                }
+
+                // Two varints are at most ten bytes
+                if (position > BUFFER_SIZE - 10) {
+                    out.write(buffer, 0, position);
+                    position = 0;
+                }
+
+                position = writeVarint(buffer, position, run);
+                position = writeVarint(buffer, position, zigzag(value - previous));
+
+                previous = value;
+                i += run;
+            }
+        }
+
+        out.write(buffer, 0, position);
+    }
+
+    /**
+     * Decodes a part that must be width x height pixels.
+     */
+    public static int[] decode(InputStream in, int width, int height) throws IOException {
+        Reader reader = new Reader(in);
+
+        int magic = (reader.readByte() << 24) | (reader.readByte() << 16) | (reader.readByte() << 8) | reader.readByte();
+        if (magic != MAGIC) {
+            throw new IOException("Not an encoded part [magic=" + Integer.toHexString(magic) + "]");
+        }
+
+        int encodedWidth = reader.readVarint();
+        int encodedHeight = reader.readVarint();
+        if (encodedWidth != width || encodedHeight != height) {
+            throw new IOException("Wrong size [expected=" + width + "x" + height + ", actual=" + encodedWidth + "x" + encodedHeight + "]");
+        }
+
+        int[] pixels = new int[width * height];
+        int previous = 0;
+        for (int y = 0; y < height; y++) {
+            int rowEnd = (y + 1) * width;
+            int i = y * width;
+            while (i < rowEnd) {
+                int run = reader.readVarint();
+                if (run < 1 || run > rowEnd - i) {
+                    throw new IOException("Run outside row [row=" + y + ", run=" + run + "]");
+                }
+
+                int value = previous + unzigzag(reader.readVarint());
+                for (int end = i + run; i < end; i++) {
+                    pixels[i] = value;
+                }
+                previous = value;
+            }
+        }
+
+        return pixels;
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads bytes through its own buffer, InputStream.read() per byte is too slow.
+     */
+    private static final class Reader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        Reader(InputStream in) {
+            this.in = in;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    throw new EOFException("Encoded part ended early");
+                }
+            }
+            return buffer[position++] & 0xff;
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint too long");
+        }
+    }
+}
@@ -1,86 +1,236 @@
 package org.marre.mandelbrot.api;
 
 import io.reactivex.Single;
+import io.reactivex.SingleSource;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
-import okhttp3.Dispatcher;
-import okhttp3.OkHttpClient;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
 import org.marre.mandelbrot.Complex;
 import org.marre.mandelbrot.Dimension;
 import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import retrofit2.HttpException;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
-import retrofit2.converter.jackson.JacksonConverterFactory;
 import retrofit2.http.GET;
+import retrofit2.http.Headers;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
 
-import java.util.concurrent.TimeUnit;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 @AllArgsConstructor(access = AccessLevel.PACKAGE)
-public final class MandelbrotClient {
+public final class MandelbrotClient implements MandelbrotBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(MandelbrotClient.class);
+
+    /**
+     * Parts where both sides are at most this many pixels are never split after a failure.
+     */
+    static final int MIN_SPLIT_SIZE = 16;
+
     @NonNull
     private final MandelbrotApi mandelbrotApi;
 
+    @NonNull
+    private final MandelbrotMetrics metrics;
+
     public static MandelbrotClient create(String mandelbrotServerBaseUrl, int maxConcurrency) {
+        return create(mandelbrotServerBaseUrl, maxConcurrency, MandelbrotMetrics.NOOP);
+    }
+
+    public static MandelbrotClient create(String mandelbrotServerBaseUrl, int maxConcurrency, MandelbrotMetrics metrics) {
+        return create(OkHttpTransport.NAME, mandelbrotServerBaseUrl, maxConcurrency, metrics);
+    }
+
+    /**
+     * A client sending its requests with the named {@link MandelbrotTransport}, okhttp or one found on
+     * the classpath.
+     */
+    public static MandelbrotClient create(String transportName, String mandelbrotServerBaseUrl, int maxConcurrency, MandelbrotMetrics metrics) {
         if (maxConcurrency < 1) {
             throw new IllegalArgumentException("maxConcurrency must be a positive integer. [" + maxConcurrency + "]");
         }
 
-        // Retrofit complains if the base URI doesn't end with '/'
-        if (!mandelbrotServerBaseUrl.endsWith("/")) {
-            mandelbrotServerBaseUrl += "/";
-        }
+        MandelbrotTransport transport = transport(transportName);
+        return create(transport.create(mandelbrotServerBaseUrl, maxConcurrency), metrics);
+    }
 
-        Dispatcher dispatcher = new Dispatcher();
-        dispatcher.setMaxRequests(maxConcurrency);
-        dispatcher.setMaxRequestsPerHost(maxConcurrency);
+    /**
+     * A client sending its requests with any implementation of the api.
+     */
+    public static MandelbrotClient create(MandelbrotApi mandelbrotApi, MandelbrotMetrics metrics) {
+        return new MandelbrotClient(mandelbrotApi, metrics);
+    }
+
+    /**
+     * The names of the transports, okhttp and those found on the classpath.
+     */
+    public static List<String> transports() {
+        List<String> names = new ArrayList<>();
+        names.add(OkHttpTransport.NAME);
+        for (MandelbrotTransport transport : loadTransports()) {
+            names.add(transport.getName());
+        }
+        return names;
+    }
 
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
-                .dispatcher(dispatcher)
-                .readTimeout(45, TimeUnit.SECONDS)
-                .build();
+    private static MandelbrotTransport transport(String name) {
+        if (OkHttpTransport.NAME.equals(name)) {
+            return new OkHttpTransport();
+        }
 
-        Retrofit retrofit = new Retrofit.Builder()
-                .client(okHttpClient)
-                .baseUrl(mandelbrotServerBaseUrl)
-                .addConverterFactory(JacksonConverterFactory.create())
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.createAsync())
-                .build();
+        for (MandelbrotTransport transport : loadTransports()) {
+            if (transport.getName().equals(name)) {
+                return transport;
+            }
+        }
 
-        MandelbrotApi mandelbrotApi = retrofit.create(MandelbrotApi.class);
+        throw new IllegalArgumentException("Unknown transport, not one of " + transports() + ". [" + name + "]");
+    }
 
-        return new MandelbrotClient(mandelbrotApi);
+    /**
+     * The transports on the classpath that can be loaded. Those that fail to load, such as those built
+     * for a newer JDK, are skipped. The JDK throws an {@link UnsupportedClassVersionError} for those
+     * rather than a {@link ServiceConfigurationError}.
+     */
+    private static List<MandelbrotTransport> loadTransports() {
+        List<MandelbrotTransport> transports = new ArrayList<>();
+        Iterator<MandelbrotTransport> iterator = ServiceLoader.load(MandelbrotTransport.class).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    return transports;
+                }
+                transports.add(iterator.next());
+            } catch (ServiceConfigurationError | LinkageError e) {
+                LOG.warn("Skipping transport : {}", e.toString());
+            }
+        }
     }
 
     /**
      * Sends a request to the mandelbrot server.
      *
+     * If the server fails with a bad gateway (the response was too large) or the request times out
+     * (the server ran out of execution time) the part is split in four and each sub part is
+     * requested separately. This is repeated until the requests succeed or the parts can't be
+     * split any further.
      */
+    @Override
     public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return request(mandelbrotPart)
+                .onErrorResumeNext(err -> {
+                    Dimension size = mandelbrotPart.getSize();
+                    int largestSide = Math.max(size.getWidth(), size.getHeight());
+
+                    if (!isSplittable(err) || (largestSide <= MIN_SPLIT_SIZE)) {
+                        return Single.error(err);
+                    }
+
+                    List<MandelbrotPart> subParts = mandelbrotPart.split((largestSide + 1) / 2);
+
+                    metrics.retried();
+                    LOG.warn("Splitting {} {} into {} parts after : {}", mandelbrotPart.getOffset(), size, subParts.size(), err.toString());
+
+                    return resplit(mandelbrotPart, subParts);
+                });
+    }
+
+    private Single<MandelbrotResult> resplit(MandelbrotPart mandelbrotPart, List<MandelbrotPart> subParts) {
+        List<SingleSource<MandelbrotResult>> subResults = new ArrayList<>(subParts.size());
+        for (MandelbrotPart subPart : subParts) {
+            subResults.add(mandelbrot(subPart));
+        }
+
+        return Single.merge(subResults)
+                .toList()
+                .map(results -> MandelbrotResult.merge(mandelbrotPart, results));
+    }
+
+    /**
+     * Returns true if the error might go away if the part is made smaller.
+     */
+    private static boolean isSplittable(Throwable err) {
+        if (err instanceof HttpException) {
+            int code = ((HttpException) err).code();
+            return (code == 502) || (code == 504);
+        }
+
+        // Timeouts
+        return err instanceof InterruptedIOException;
+    }
+
+    private Single<MandelbrotResult> request(MandelbrotPart mandelbrotPart) {
         Dimension size = mandelbrotPart.getSize();
         Complex minc = mandelbrotPart.getMinc();
         Complex maxc = mandelbrotPart.getMaxc();
         int maxSteps = mandelbrotPart.getMaxSteps();
 
-        return mandelbrotApi.mandelbrot(minc.getRe(), minc.getIm(), maxc.getRe(), maxc.getIm(), size.getWidth(), size.getHeight(), maxSteps)
-                .map(response -> {
-                    if (response.isSuccessful()) {
-                        return response.body();
-                    }
-                    throw new HttpException(response);
-                })
-                .map(response -> new MandelbrotResult(mandelbrotPart, response.getPixels()));
+        // Latency is measured until the headers arrive, reading the body is part of decoding
+        return Single.defer(() -> {
+            long start = System.nanoTime();
+            metrics.requestStarted();
+
+            return mandelbrotApi.mandelbrot(minc.getRe(), minc.getIm(), maxc.getRe(), maxc.getIm(), size.getWidth(), size.getHeight(), maxSteps)
+                    .map(response -> {
+                        long headersReceived = System.nanoTime();
+                        metrics.latency(headersReceived - start);
+
+                        if (!response.isSuccessful()) {
+                            throw new HttpException(response);
+                        }
+
+                        try (ResponseBody body = response.body()) {
+                            CountingInputStream is = new CountingInputStream(body.byteStream());
+                            int[] pixels = isBinary(body.contentType())
+                                    ? MandelbrotBinaryCodec.decode(is, size.getWidth(), size.getHeight())
+                                    : MandelbrotResponseDecoder.decode(is, size.getWidth() * size.getHeight()).getPixels();
+
+                            metrics.decoded(System.nanoTime() - headersReceived);
+                            metrics.bytesReceived(is.getCount());
+
+                            return pixels;
+                        }
+                    })
+                    .doOnError(err -> metrics.failed(err instanceof HttpException ? ((HttpException) err).code() : 0))
+                    .doFinally(metrics::requestFinished);
+        }).map(pixels -> new MandelbrotResult(mandelbrotPart, pixels));
+    }
+
+    /**
+     * Returns true if the server answered with {@link MandelbrotBinaryCodec} instead of json.
+     */
+    private static boolean isBinary(MediaType contentType) {
+        return contentType != null
+                && MandelbrotBinaryCodec.MEDIA_TYPE.equals(contentType.type() + "/" + contentType.subtype());
     }
 
     /**
      * The mandelbrot HTTP API for retrofit.
+     *
+     * The binary encoding is preferred, servers that don't know it answer with json. OkHttp asks for
+     * gzip and unzips transparently. The body is streamed and decoded by {@link MandelbrotBinaryCodec}
+     * or {@link MandelbrotResponseDecoder}.
+     *
+     * Other transports implement it the same way. Error statuses are responses, not errors, the body
+     * is unzipped and is streamed until it is closed, and timeouts fail with an
+     * {@link java.io.InterruptedIOException} so that the part is split.
      */
-    interface MandelbrotApi {
+    public interface MandelbrotApi {
+        String ACCEPT = MandelbrotBinaryCodec.MEDIA_TYPE + ", application/json;q=0.5";
+
         @GET("mandelbrot/{mincre}/{mincim}/{maxcre}/{maxcim}/{xres}/{yres}/{infn}")
-        Single<Response<MandelbrotResponseJson>> mandelbrot(
+        @Headers("Accept: " + ACCEPT)
+        @Streaming
+        Single<Response<ResponseBody>> mandelbrot(
                 @Path("mincre") double mincre,
                 @Path("mincim") double mincim,
                 @Path("maxcre") double maxcre,
@@ -0,0 +1,76 @@
+package org.marre.mandelbrot.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the response from the mandelbrot server token by token.
+ *
+ * The number of pixels is known from the request, so the pixels are written straight into an array of
+ * the right size instead of being collected by Jackson databind and copied.
+ */
+final class MandelbrotResponseDecoder {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private MandelbrotResponseDecoder() {}
+
+    /**
+     * Decodes a response that must contain exactly expectedPixels pixels.
+     */
+    static MandelbrotResponseJson decode(InputStream in, int expectedPixels) throws IOException {
+        int[] pixels = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a json object [" + parser.getCurrentLocation() + "]");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if ("pixels".equals(fieldName)) {
+                    if (token != JsonToken.START_ARRAY) {
+                        throw new IOException("Expected pixels to be an array [" + parser.getCurrentLocation() + "]");
+                    }
+                    pixels = readPixels(parser, expectedPixels);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        if (pixels == null) {
+            throw new IOException("No pixels in response");
+        }
+
+        return new MandelbrotResponseJson(pixels);
+    }
+
+    private static int[] readPixels(JsonParser parser, int expectedPixels) throws IOException {
+        int[] pixels = new int[expectedPixels];
+        int count = 0;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.VALUE_NUMBER_INT) {
+            if (count == expectedPixels) {
+                throw new IOException("Too many pixels in response [expected=" + expectedPixels + "]");
+            }
+            pixels[count++] = parser.getIntValue();
+        }
+
+        if (token != JsonToken.END_ARRAY) {
+            throw new IOException("Expected pixel to be an int [" + parser.getCurrentLocation() + "]");
+        }
+
+        if (count != expectedPixels) {
+            throw new IOException("Too few pixels in response [expected=" + expectedPixels + ", actual=" + count + "]");
+        }
+
+        return pixels;
+    }
+}
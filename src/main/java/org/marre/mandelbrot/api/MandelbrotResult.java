@@ -1,11 +1,50 @@
 package org.marre.mandelbrot.api;
 
 import lombok.Value;
+import org.marre.mandelbrot.Dimension;
 import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+
+import java.util.List;
 
 @Value
 public final class MandelbrotResult {
     private final MandelbrotPart mandelbrotPart;
 
     private final int[] pixels;
+
+    /**
+     * Merges the results of the sub parts of a part into a single result for the part.
+     *
+     * The sub parts must cover the part, e.g. the parts returned by {@link MandelbrotPart#split(int)}.
+     */
+    public static MandelbrotResult merge(MandelbrotPart mandelbrotPart, List<MandelbrotResult> subResults) {
+        Dimension size = mandelbrotPart.getSize();
+        Position offset = mandelbrotPart.getOffset();
+        int[] pixels = new int[size.getWidth() * size.getHeight()];
+
+        for (MandelbrotResult subResult : subResults) {
+            Dimension subSize = subResult.getMandelbrotPart().getSize();
+            Position subOffset = subResult.getMandelbrotPart().getOffset();
+            int x = subOffset.getX() - offset.getX();
+            int y = subOffset.getY() - offset.getY();
+
+            if ((x < 0) || (y < 0)
+                    || (x + subSize.getWidth() > size.getWidth())
+                    || (y + subSize.getHeight() > size.getHeight())) {
+                throw new IllegalArgumentException("sub result outside of part [" + subOffset + ", " + subSize + "]");
+            }
+
+            for (int row = 0; row < subSize.getHeight(); row++) {
+                System.arraycopy(
+                        subResult.getPixels(),
+                        row * subSize.getWidth(),
+                        pixels,
+                        (y + row) * size.getWidth() + x,
+                        subSize.getWidth());
+            }
+        }
+
+        return new MandelbrotResult(mandelbrotPart, pixels);
+    }
 }
@@ -0,0 +1,21 @@
+package org.marre.mandelbrot.api;
+
+/**
+ * The http client a {@link MandelbrotClient} sends its requests with.
+ *
+ * Splitting, decoding and metrics are the same for every transport, a transport only makes the
+ * requests of a {@link MandelbrotClient.MandelbrotApi}. Transports other than okhttp are found with
+ * {@link java.util.ServiceLoader}, so one that needs a newer JDK can be added to the classpath at
+ * runtime.
+ */
+public interface MandelbrotTransport {
+    /**
+     * The name the transport is selected by.
+     */
+    String getName();
+
+    /**
+     * @param maxConcurrency the max number of requests at the same time
+     */
+    MandelbrotClient.MandelbrotApi create(String mandelbrotServerBaseUrl, int maxConcurrency);
+}
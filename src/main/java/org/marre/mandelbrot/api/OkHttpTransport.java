@@ -0,0 +1,45 @@
+package org.marre.mandelbrot.api;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests on OkHttp through retrofit, at most maxConcurrency at a time by the dispatcher.
+ */
+final class OkHttpTransport implements MandelbrotTransport {
+    static final String NAME = "okhttp";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public MandelbrotClient.MandelbrotApi create(String mandelbrotServerBaseUrl, int maxConcurrency) {
+        // Retrofit complains if the base URI doesn't end with '/'
+        if (!mandelbrotServerBaseUrl.endsWith("/")) {
+            mandelbrotServerBaseUrl += "/";
+        }
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConcurrency);
+        dispatcher.setMaxRequestsPerHost(maxConcurrency);
+
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .readTimeout(45, TimeUnit.SECONDS)
+                .build();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .client(okHttpClient)
+                .baseUrl(mandelbrotServerBaseUrl)
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.createAsync())
+                .build();
+
+        return retrofit.create(MandelbrotClient.MandelbrotApi.class);
+    }
+}
@@ -0,0 +1,70 @@
+package org.marre.mandelbrot.autotune;
+
+/**
+ * An additive increase, multiplicative decrease concurrency limit.
+ *
+ * The limit grows by one for every limit successful requests while the limit is in use, and is
+ * multiplied by {@link #BACKOFF_RATIO} when a request is dropped. Drops of requests that were started
+ * before the last decrease don't decrease the limit again, so a burst of throttled requests only
+ * counts once.
+ */
+final class AimdLimiter implements ConcurrencyLimit {
+    static final double BACKOFF_RATIO = 0.5;
+
+    private final int maxLimit;
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+    private int epoch;
+
+    AimdLimiter(int initialLimit, int maxLimit) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("limits must be in [1, maxLimit]. [" + initialLimit + ", " + maxLimit + "]");
+        }
+
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+
+        inFlight++;
+        return true;
+    }
+
+    @Override
+    public synchronized int getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public synchronized void release(int startEpoch, boolean dropped) {
+        // The limit is only grown while it is in use
+        boolean saturated = inFlight * 2 >= (int) limit;
+        inFlight--;
+
+        if (dropped) {
+            if (startEpoch == epoch) {
+                limit = Math.max(1.0, limit * BACKOFF_RATIO);
+                epoch++;
+            }
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    @Override
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,25 @@
+package org.marre.mandelbrot.autotune;
+
+/**
+ * The number of requests a {@link LimitedMandelbrotBackend} may have in flight.
+ */
+interface ConcurrencyLimit {
+    /**
+     * Returns true, and counts the request as in flight, if the limit allows one more request.
+     */
+    boolean tryAcquire();
+
+    /**
+     * The epoch to pass to {@link #release(int, boolean)} for a request started now.
+     */
+    int getEpoch();
+
+    /**
+     * @param dropped whether the request failed because the server is overloaded
+     */
+    void release(int startEpoch, boolean dropped);
+
+    int getLimit();
+
+    int getInFlight();
+}
@@ -0,0 +1,49 @@
+package org.marre.mandelbrot.autotune;
+
+/**
+ * A limit that stays the same whatever happens to the requests.
+ */
+final class FixedLimit implements ConcurrencyLimit {
+    private final int limit;
+
+    // Guarded by this
+    private int inFlight;
+
+    FixedLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be a positive integer. [" + limit + "]");
+        }
+
+        this.limit = limit;
+    }
+
+    @Override
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= limit) {
+            return false;
+        }
+
+        inFlight++;
+        return true;
+    }
+
+    @Override
+    public int getEpoch() {
+        return 0;
+    }
+
+    @Override
+    public synchronized void release(int startEpoch, boolean dropped) {
+        inFlight--;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
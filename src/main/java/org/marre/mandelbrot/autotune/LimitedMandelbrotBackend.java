@@ -0,0 +1,195 @@
+package org.marre.mandelbrot.autotune;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.Disposable;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.HttpException;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the concurrent requests to the delegate, to a fixed number or with an {@link AimdLimiter}.
+ * Requests above the limit wait in a queue, in the order they were made.
+ *
+ * Throttling, unavailable servers and timeouts decrease an adaptive limit. Other errors are passed on
+ * without changing it.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class LimitedMandelbrotBackend implements MandelbrotBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(LimitedMandelbrotBackend.class);
+
+    @NonNull
+    private final MandelbrotBackend delegate;
+
+    @NonNull
+    private final ConcurrencyLimit limit;
+
+    /**
+     * Guarded by itself.
+     */
+    @NonNull
+    private final Queue<Pending> queue;
+
+    /**
+     * The number of drains asked for while one was running, only the first caller drains.
+     */
+    @NonNull
+    private final AtomicInteger drains;
+
+    public static LimitedMandelbrotBackend fixed(MandelbrotBackend delegate, int limit) {
+        return new LimitedMandelbrotBackend(delegate, new FixedLimit(limit), new ArrayDeque<>(), new AtomicInteger());
+    }
+
+    public static LimitedMandelbrotBackend adaptive(MandelbrotBackend delegate, int initialLimit, int maxLimit) {
+        return new LimitedMandelbrotBackend(delegate, new AimdLimiter(initialLimit, maxLimit), new ArrayDeque<>(), new AtomicInteger());
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return Single.create(emitter -> {
+            Pending pending = new Pending(mandelbrotPart, emitter);
+            emitter.setCancellable(pending::cancel);
+
+            synchronized (queue) {
+                queue.add(pending);
+            }
+
+            drain();
+        });
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return limit.getInFlight();
+    }
+
+    /**
+     * Starts queued requests while the limit allows. Requests are started outside the lock since they
+     * may complete right away, a cache hit for example. The drain they ask for is then left to the
+     * caller already draining, so that a long queue of such requests doesn't recurse once per request.
+     */
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            while (true) {
+                Pending pending;
+                synchronized (queue) {
+                    if (queue.isEmpty() || !limit.tryAcquire()) {
+                        break;
+                    }
+                    pending = queue.poll();
+                }
+
+                pending.start();
+            }
+
+            missed = drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Returns true for errors that mean the server is overloaded.
+     */
+    static boolean isDropped(Throwable err) {
+        if (err instanceof HttpException) {
+            int code = ((HttpException) err).code();
+            return code == 429 || code == 503;
+        }
+
+        return err instanceof InterruptedIOException || err instanceof TimeoutException;
+    }
+
+    private final class Pending {
+        private final MandelbrotPart mandelbrotPart;
+        private final SingleEmitter<MandelbrotResult> emitter;
+
+        /**
+         * Set when the limit has been released, so that it is released once.
+         */
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private volatile boolean cancelled;
+        private volatile Disposable disposable;
+        private volatile int epoch;
+
+        Pending(MandelbrotPart mandelbrotPart, SingleEmitter<MandelbrotResult> emitter) {
+            this.mandelbrotPart = mandelbrotPart;
+            this.emitter = emitter;
+        }
+
+        void start() {
+            if (cancelled) {
+                releaseOnce(false);
+                return;
+            }
+
+            epoch = limit.getEpoch();
+            Disposable current = delegate.mandelbrot(mandelbrotPart).subscribe(
+                    result -> {
+                        releaseOnce(false);
+                        emitter.onSuccess(result);
+                    },
+                    err -> {
+                        int before = limit.getLimit();
+                        if (releaseOnce(isDropped(err)) && limit.getLimit() < before) {
+                            LOG.info("Concurrency limit {} after : {}", limit.getLimit(), err.toString());
+                        }
+                        emitter.onError(err);
+                    });
+            disposable = current;
+
+            // Cancelled while starting
+            if (cancelled) {
+                current.dispose();
+                releaseOnce(false);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+
+            synchronized (queue) {
+                if (queue.remove(this)) {
+                    return;
+                }
+            }
+
+            // Started, otherwise start() sees the cancellation
+            Disposable current = disposable;
+            if (current != null) {
+                current.dispose();
+                releaseOnce(false);
+            }
+        }
+
+        private boolean releaseOnce(boolean dropped) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+
+            limit.release(epoch, dropped);
+            drain();
+            return true;
+        }
+    }
+}
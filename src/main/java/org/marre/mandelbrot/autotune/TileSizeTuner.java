@@ -0,0 +1,136 @@
+package org.marre.mandelbrot.autotune;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Chooses the size of the parts from the observed response time per pixel, so that each part takes
+ * about the target time.
+ *
+ * Parts are created lazily, as the pipeline asks for them, in bands of rows. The height of a band and
+ * the width of each part in it are the size at the time they are created, so later parts use what was
+ * learned from earlier responses. Larger parts spread the fixed cost of each request over more pixels,
+ * the target time keeps them away from the server's execution time and response size limits.
+ *
+ * Only the parts the tuner created are timed. Other requests, such as coarse passes or the border strips
+ * of traced parts, have a different cost per pixel.
+ */
+public final class TileSizeTuner {
+    /**
+     * The weight of the latest response in the moving average.
+     */
+    static final double ALPHA = 0.2;
+
+    private final int initialSize;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetNanos;
+
+    /**
+     * The parts created and not yet garbage collected.
+     */
+    private final Set<MandelbrotPart> created = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    // Guarded by this
+    private double nanosPerPixel;
+    private long samples;
+
+    private TileSizeTuner(int initialSize, int minSize, int maxSize, long targetNanos) {
+        this.initialSize = initialSize;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetNanos = targetNanos;
+    }
+
+    public static TileSizeTuner create(int initialSize, int minSize, int maxSize, long targetMillis) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("sizes must be in [1, maxSize]. [" + minSize + ", " + maxSize + "]");
+        }
+
+        if (targetMillis < 1) {
+            throw new IllegalArgumentException("targetMillis must be a positive integer. [" + targetMillis + "]");
+        }
+
+        int clampedInitialSize = Math.max(minSize, Math.min(maxSize, initialSize));
+
+        return new TileSizeTuner(clampedInitialSize, minSize, maxSize, targetMillis * 1_000_000);
+    }
+
+    /**
+     * Wraps a backend so that its response times for the parts created by the tuner are observed.
+     */
+    public MandelbrotBackend observe(MandelbrotBackend delegate) {
+        return mandelbrotPart -> !created.contains(mandelbrotPart) ? delegate.mandelbrot(mandelbrotPart) : Single.defer(() -> {
+            long start = System.nanoTime();
+            return delegate.mandelbrot(mandelbrotPart)
+                    .doOnSuccess(result -> observe(mandelbrotPart, System.nanoTime() - start));
+        });
+    }
+
+    synchronized void observe(MandelbrotPart mandelbrotPart, long nanos) {
+        Dimension size = mandelbrotPart.getSize();
+        double pixelNanos = (double) nanos / ((long) size.getWidth() * size.getHeight());
+
+        nanosPerPixel = samples == 0 ? pixelNanos : ALPHA * pixelNanos + (1 - ALPHA) * nanosPerPixel;
+        samples++;
+    }
+
+    /**
+     * The side of the next part.
+     */
+    public synchronized int nextSize() {
+        if (samples == 0) {
+            return initialSize;
+        }
+
+        double side = Math.sqrt(targetNanos / Math.max(nanosPerPixel, 1e-3));
+        return (int) Math.max(minSize, Math.min(maxSize, side));
+    }
+
+    /**
+     * Splits the regions into parts, lazily, each sized by {@link #nextSize()} when created.
+     */
+    public Flowable<MandelbrotPart> parts(List<MandelbrotPart> regions) {
+        return Flowable.fromIterable(regions)
+                .concatMap(region -> Flowable.generate(() -> new int[3], (state, emitter) -> {
+                    // state = { x, y, band height }
+                    Dimension size = region.getSize();
+                    if (state[1] >= size.getHeight()) {
+                        emitter.onComplete();
+                        return;
+                    }
+
+                    if (state[0] == 0) {
+                        state[2] = extent(size.getHeight() - state[1]);
+                    }
+
+                    int width = extent(size.getWidth() - state[0]);
+                    MandelbrotPart part = region.subPart(state[0], state[1], width, state[2]);
+                    created.add(part);
+                    emitter.onNext(part);
+
+                    state[0] += width;
+                    if (state[0] >= size.getWidth()) {
+                        state[0] = 0;
+                        state[1] += state[2];
+                    }
+                }));
+    }
+
+    /**
+     * The next size, or all of what is left if that would leave a sliver smaller than half the min
+     * size.
+     */
+    private int extent(int left) {
+        int extent = nextSize();
+        return (left - extent < minSize / 2) ? left : extent;
+    }
+}
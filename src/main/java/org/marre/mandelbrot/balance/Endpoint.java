@@ -0,0 +1,122 @@
+package org.marre.mandelbrot.balance;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A backend in a {@link LoadBalancingMandelbrotBackend} with its outstanding requests, latency and
+ * ejection state.
+ */
+final class Endpoint {
+    /**
+     * The weight of the latest latency in the moving average.
+     */
+    static final double ALPHA = 0.3;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final MandelbrotBackend backend;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    // Guarded by this
+    private double ewmaNanos;
+    private long samples;
+    private int consecutiveFailures;
+    private long requests;
+    private long failures;
+    private int ejections;
+    private boolean ejected;
+    private long ejectedUntil;
+
+    Endpoint(@NonNull String name, @NonNull MandelbrotBackend backend) {
+        this.name = name;
+        this.backend = backend;
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+    }
+
+    void finished() {
+        outstanding.decrementAndGet();
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Lower is better, the expected latency times the requests already waiting.
+     */
+    synchronized double score() {
+        return (ewmaNanos + 1) * (outstanding.get() + 1);
+    }
+
+    synchronized void record(long nanos, boolean success) {
+        requests++;
+        if (success) {
+            consecutiveFailures = 0;
+        } else {
+            failures++;
+            consecutiveFailures++;
+        }
+
+        ewmaNanos = samples == 0 ? nanos : ALPHA * nanos + (1 - ALPHA) * ewmaNanos;
+        samples++;
+    }
+
+    synchronized double getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    synchronized long getSamples() {
+        return samples;
+    }
+
+    synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    synchronized long getRequests() {
+        return requests;
+    }
+
+    synchronized long getFailures() {
+        return failures;
+    }
+
+    synchronized int getEjections() {
+        return ejections;
+    }
+
+    synchronized boolean isEjected() {
+        return ejected;
+    }
+
+    synchronized void eject(long until) {
+        ejected = true;
+        ejectedUntil = until;
+        ejections++;
+    }
+
+    /**
+     * Returns true if the endpoint may be used. An endpoint whose ejection has ended is reinstated
+     * with its latency forgotten, so that it is tried again.
+     */
+    synchronized boolean isAvailable(long now) {
+        if (ejected && now - ejectedUntil >= 0) {
+            ejected = false;
+            ewmaNanos = 0;
+            samples = 0;
+            consecutiveFailures = 0;
+        }
+
+        return !ejected;
+    }
+}
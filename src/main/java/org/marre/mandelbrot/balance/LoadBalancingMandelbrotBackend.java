@@ -0,0 +1,181 @@
+package org.marre.mandelbrot.balance;
+
+import io.reactivex.Single;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads parts over several endpoints, sending each part to the endpoint with the lowest moving
+ * average latency times outstanding requests.
+ *
+ * Endpoints that fail several requests in a row, or are much slower than the others, are ejected for
+ * a while. The ejection time grows each time an endpoint is ejected. At most half of the endpoints
+ * are ejected at the same time.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class LoadBalancingMandelbrotBackend implements MandelbrotBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadBalancingMandelbrotBackend.class);
+
+    /**
+     * An endpoint is ejected after this many failures in a row.
+     */
+    static final int MAX_CONSECUTIVE_FAILURES = 5;
+
+    /**
+     * An endpoint is ejected if its latency is this many times the median of the other endpoints.
+     */
+    static final double SLOW_FACTOR = 3.0;
+
+    /**
+     * Latencies are not compared until an endpoint has this many samples.
+     */
+    static final int MIN_SAMPLES = 10;
+
+    static final long BASE_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    static final int MAX_EJECTION_MULTIPLIER = 10;
+
+    @NonNull
+    private final List<Endpoint> endpoints;
+
+    @NonNull
+    private final LongSupplier clock;
+
+    /**
+     * @param endpoints the backends by name, the name is only used for logging
+     */
+    public static LoadBalancingMandelbrotBackend create(Map<String, ? extends MandelbrotBackend> endpoints) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is needed. [" + endpoints.size() + "]");
+        }
+
+        List<Endpoint> endpointList = new ArrayList<>(endpoints.size());
+        endpoints.forEach((name, backend) -> endpointList.add(new Endpoint(name, backend)));
+
+        return new LoadBalancingMandelbrotBackend(Collections.unmodifiableList(endpointList), System::nanoTime);
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return Single.defer(() -> {
+            long start = clock.getAsLong();
+            Endpoint endpoint = select(start);
+            endpoint.started();
+
+            // Cancelled requests, like the losing side of a hedge, don't count
+            return endpoint.getBackend().mandelbrot(mandelbrotPart)
+                    .doOnSuccess(ignored -> completed(endpoint, clock.getAsLong() - start, true))
+                    .doOnError(ignored -> completed(endpoint, clock.getAsLong() - start, false))
+                    .doFinally(endpoint::finished);
+        });
+    }
+
+    /**
+     * Logs the requests, failures, latency and ejections of each endpoint.
+     */
+    public void logStats() {
+        for (Endpoint endpoint : endpoints) {
+            LOG.info("Endpoint {} : {} requests, {} failures, {} ms average latency, ejected {} times",
+                    endpoint.getName(),
+                    endpoint.getRequests(),
+                    endpoint.getFailures(),
+                    (long) endpoint.getEwmaNanos() / 1_000_000,
+                    endpoint.getEjections());
+        }
+    }
+
+    /**
+     * Returns the available endpoint with the lowest score. Ties are broken by starting at a random
+     * endpoint.
+     */
+    Endpoint select(long now) {
+        int count = endpoints.size();
+        int first = ThreadLocalRandom.current().nextInt(count);
+
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Endpoint endpoint = endpoints.get((first + i) % count);
+            if (!endpoint.isAvailable(now)) {
+                continue;
+            }
+
+            double score = endpoint.score();
+            if (score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+
+        // Never happens as long as at most half of the endpoints are ejected
+        return best != null ? best : endpoints.get(first);
+    }
+
+    private void completed(Endpoint endpoint, long nanos, boolean success) {
+        endpoint.record(nanos, success);
+
+        if (endpoint.getConsecutiveFailures() >= MAX_CONSECUTIVE_FAILURES) {
+            eject(endpoint, endpoint.getConsecutiveFailures() + " failures in a row");
+        } else if (endpoint.getSamples() >= MIN_SAMPLES) {
+            double median = medianOfOthers(endpoint);
+            if (median > 0 && endpoint.getEwmaNanos() > SLOW_FACTOR * median) {
+                eject(endpoint, (long) endpoint.getEwmaNanos() / 1_000_000 + " ms latency, others " + (long) median / 1_000_000 + " ms");
+            }
+        }
+    }
+
+    private synchronized void eject(Endpoint endpoint, String reason) {
+        long now = clock.getAsLong();
+
+        int ejected = 0;
+        for (Endpoint other : endpoints) {
+            if (!other.isAvailable(now)) {
+                ejected++;
+            }
+        }
+
+        if (endpoint.isEjected() || (ejected + 1) * 2 > endpoints.size()) {
+            return;
+        }
+
+        long duration = BASE_EJECTION_NANOS * Math.min(endpoint.getEjections() + 1, MAX_EJECTION_MULTIPLIER);
+        endpoint.eject(now + duration);
+
+        LOG.warn("Ejecting endpoint {} for {} s after {}", endpoint.getName(), TimeUnit.NANOSECONDS.toSeconds(duration), reason);
+    }
+
+    /**
+     * The median latency of the other available endpoints with enough samples, 0 if there are none.
+     */
+    private double medianOfOthers(Endpoint endpoint) {
+        long now = clock.getAsLong();
+
+        List<Double> latencies = new ArrayList<>(endpoints.size());
+        for (Endpoint other : endpoints) {
+            if (other != endpoint && other.isAvailable(now) && other.getSamples() >= MIN_SAMPLES) {
+                latencies.add(other.getEwmaNanos());
+            }
+        }
+
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() / 2);
+    }
+}
@@ -0,0 +1,37 @@
+package org.marre.mandelbrot.cache;
+
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+/**
+ * Returns parts from a {@link TileCache} when possible and caches the parts calculated by the
+ * delegate.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class CachingMandelbrotBackend implements MandelbrotBackend {
+    @NonNull
+    private final MandelbrotBackend delegate;
+
+    @NonNull
+    private final TileCache tileCache;
+
+    public static CachingMandelbrotBackend create(MandelbrotBackend delegate, TileCache tileCache) {
+        return new CachingMandelbrotBackend(delegate, tileCache);
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return Maybe.fromCallable(() -> tileCache.get(mandelbrotPart))
+                .map(pixels -> new MandelbrotResult(mandelbrotPart, pixels))
+                .switchIfEmpty(delegate.mandelbrot(mandelbrotPart)
+                        .doOnSuccess(result -> tileCache.put(mandelbrotPart, result.getPixels()))
+                        .toMaybe())
+                .toSingle();
+    }
+}
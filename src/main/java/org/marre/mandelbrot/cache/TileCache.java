@@ -0,0 +1,356 @@
+package org.marre.mandelbrot.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A directory of calculated parts, keyed by the size, min c, max c and max steps of the part.
+ *
+ * Each part is stored in its own file. The file starts with a header repeating the key, followed by
+ * the pixels using 1, 2 or 4 bytes per pixel depending on max steps. Files are read memory-mapped.
+ *
+ * Several processes may share the same directory. Files are written to a temporary file and atomically
+ * renamed, so a reader never sees a partial file. The least recently used files are removed when the
+ * directory grows beyond maxBytes. Only one process at a time evicts, coordinated through a lock file.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class TileCache {
+    private static final Logger LOG = LoggerFactory.getLogger(TileCache.class);
+
+    private static final int MAGIC = 0x4d425431; // MBT1
+    private static final int HEADER_SIZE = 4 + 3 * 4 + 4 * 8 + 1;
+    private static final String SUFFIX = ".tile";
+    private static final String LOCK_FILE = ".lock";
+
+    /**
+     * Eviction removes files until the directory is below this fraction of maxBytes.
+     */
+    private static final double EVICT_TO = 0.9;
+
+    @NonNull
+    private final Path directory;
+
+    private final long maxBytes;
+
+    /**
+     * Approximate size of the directory. Other processes may add files too.
+     */
+    @NonNull
+    private final AtomicLong bytes;
+
+    @NonNull
+    private final AtomicLong hits;
+
+    @NonNull
+    private final AtomicLong misses;
+
+    public static TileCache create(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be a positive integer. [" + maxBytes + "]");
+        }
+
+        Files.createDirectories(directory);
+
+        TileCache tileCache = new TileCache(directory, maxBytes, new AtomicLong(), new AtomicLong(), new AtomicLong());
+        tileCache.bytes.set(tileCache.directorySize());
+
+        return tileCache;
+    }
+
+    /**
+     * Returns the cached pixels for the part or null if the part isn't cached.
+     */
+    public int[] get(MandelbrotPart mandelbrotPart) {
+        Path file = file(mandelbrotPart);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int[] pixels = read(buffer, mandelbrotPart);
+
+            if (pixels == null) {
+                LOG.warn("Ignoring cache file not matching {} : {}", mandelbrotPart, file);
+                misses.incrementAndGet();
+                return null;
+            }
+
+            // The modification time is what decides which files are evicted first
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+
+            hits.incrementAndGet();
+            return pixels;
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Failed to read cache file {}", file, e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the pixels of the part. Failures are logged, a cache is allowed to forget.
+     */
+    public void put(MandelbrotPart mandelbrotPart, int[] pixels) {
+        Path file = file(mandelbrotPart);
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            ByteBuffer buffer = write(mandelbrotPart, pixels);
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                move(tmp, file);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            if (bytes.addAndGet(buffer.capacity()) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write cache file {}", file, e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes the least recently used files until the directory is below its max size.
+     */
+    void evict() throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockChannel.tryLock()) {
+
+            if (lock == null) {
+                // Another process is already evicting
+                return;
+            }
+
+            List<CacheFile> cacheFiles = cacheFiles();
+            cacheFiles.sort(Comparator.comparing(CacheFile::getLastModified));
+
+            long total = 0;
+            for (CacheFile cacheFile : cacheFiles) {
+                total += cacheFile.getSize();
+            }
+
+            long target = (long) (maxBytes * EVICT_TO);
+            int evicted = 0;
+            for (CacheFile cacheFile : cacheFiles) {
+                if (total <= target) {
+                    break;
+                }
+
+                if (Files.deleteIfExists(cacheFile.getPath())) {
+                    evicted++;
+                }
+                total -= cacheFile.getSize();
+            }
+
+            bytes.set(total);
+            LOG.info("Evicted {} parts from the cache, {} bytes left", evicted, total);
+        }
+    }
+
+    private long directorySize() throws IOException {
+        long total = 0;
+        for (CacheFile cacheFile : cacheFiles()) {
+            total += cacheFile.getSize();
+        }
+        return total;
+    }
+
+    private List<CacheFile> cacheFiles() throws IOException {
+        List<CacheFile> cacheFiles = new ArrayList<>();
+
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            paths.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(path -> {
+                        try {
+                            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                            cacheFiles.add(new CacheFile(path, attributes.size(), attributes.lastModifiedTime()));
+                        } catch (IOException e) {
+                            // Removed by someone else
+                        }
+                    });
+        }
+
+        return cacheFiles;
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The file for a part. Files are spread over 256 sub directories.
+     */
+    Path file(MandelbrotPart mandelbrotPart) {
+        String key = key(mandelbrotPart);
+        return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    static String key(MandelbrotPart mandelbrotPart) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        writeHeader(buffer, mandelbrotPart, (byte) 0);
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(buffer.array());
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static ByteBuffer write(MandelbrotPart mandelbrotPart, int[] pixels) {
+        byte bytesPerPixel = bytesPerPixel(mandelbrotPart.getMaxSteps());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pixels.length * bytesPerPixel);
+
+        writeHeader(buffer, mandelbrotPart, bytesPerPixel);
+
+        for (int pixel : pixels) {
+            switch (bytesPerPixel) {
+                case 1:
+                    buffer.put((byte) pixel);
+                    break;
+                case 2:
+                    buffer.putShort((short) pixel);
+                    break;
+                default:
+                    buffer.putInt(pixel);
+                    break;
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the pixels or null if the buffer doesn't contain the given part.
+     */
+    static int[] read(ByteBuffer buffer, MandelbrotPart mandelbrotPart) {
+        Dimension size = mandelbrotPart.getSize();
+        byte bytesPerPixel = bytesPerPixel(mandelbrotPart.getMaxSteps());
+        int pixelCount = size.getWidth() * size.getHeight();
+
+        if (buffer.remaining() != HEADER_SIZE + (long) pixelCount * bytesPerPixel) {
+            return null;
+        }
+
+        ByteBuffer expectedHeader = ByteBuffer.allocate(HEADER_SIZE);
+        writeHeader(expectedHeader, mandelbrotPart, bytesPerPixel);
+        expectedHeader.flip();
+
+        ByteBuffer header = buffer.duplicate();
+        header.limit(header.position() + HEADER_SIZE);
+        if (!header.equals(expectedHeader)) {
+            return null;
+        }
+
+        int position = buffer.position() + HEADER_SIZE;
+        int[] pixels = new int[pixelCount];
+
+        switch (bytesPerPixel) {
+            case 1:
+                for (int i = 0; i < pixelCount; i++) {
+                    pixels[i] = buffer.get(position + i) & 0xff;
+                }
+                break;
+            case 2:
+                for (int i = 0; i < pixelCount; i++) {
+                    pixels[i] = buffer.getShort(position + 2 * i) & 0xffff;
+                }
+                break;
+            default:
+                for (int i = 0; i < pixelCount; i++) {
+                    pixels[i] = buffer.getInt(position + 4 * i);
+                }
+                break;
+        }
+
+        return pixels;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, MandelbrotPart mandelbrotPart, byte bytesPerPixel) {
+        Dimension size = mandelbrotPart.getSize();
+        Complex minc = mandelbrotPart.getMinc();
+        Complex maxc = mandelbrotPart.getMaxc();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(size.getWidth());
+        buffer.putInt(size.getHeight());
+        buffer.putInt(mandelbrotPart.getMaxSteps());
+        buffer.putDouble(minc.getRe());
+        buffer.putDouble(minc.getIm());
+        buffer.putDouble(maxc.getRe());
+        buffer.putDouble(maxc.getIm());
+        buffer.put(bytesPerPixel);
+    }
+
+    private static byte bytesPerPixel(int maxSteps) {
+        if (maxSteps <= 0xff) {
+            return 1;
+        }
+        if (maxSteps <= 0xffff) {
+            return 2;
+        }
+        return 4;
+    }
+
+    @Value
+    private static class CacheFile {
+        private final Path path;
+        private final long size;
+        private final FileTime lastModified;
+    }
+}
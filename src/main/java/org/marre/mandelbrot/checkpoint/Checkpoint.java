@@ -0,0 +1,455 @@
+package org.marre.mandelbrot.checkpoint;
+
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotBinaryCodec;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of the parts of a render that are done, so that a render can be resumed after
+ * the process dies.
+ *
+ * <pre>
+ * header   record with the whole part and the regions that are requested
+ * parts    one record per part that is done, its offset and size and its pixels encoded with
+ *          {@link MandelbrotBinaryCodec}
+ * </pre>
+ *
+ * A record is its length, the payload and the CRC32 of the payload. The header is the manifest of the
+ * render, the parts that are outstanding are the regions minus the parts that are done.
+ *
+ * Parts are encoded and appended on a thread of their own, so a slow disk never stalls the results.
+ * The file is forced to disk at most every {@link #FORCE_INTERVAL_MILLIS}. A record that was half
+ * written when the process died fails its CRC and is cut off when the render is resumed.
+ */
+public final class Checkpoint implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(Checkpoint.class);
+
+    private static final int MAGIC = 0x4d424b31; // MBK1
+
+    private static final long FORCE_INTERVAL_MILLIS = 5000;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Larger payloads don't fit in one buffer with the length and the CRC.
+     */
+    private static final int MAX_RECORD_SIZE = Integer.MAX_VALUE - 16;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MandelbrotPart whole;
+    private final List<MandelbrotPart> remaining;
+    private final ExecutorService writer;
+
+    /**
+     * The end of the records of the parts that were done when the checkpoint was resumed.
+     */
+    private final long doneEnd;
+    private final int doneCount;
+
+    // Only used on the writer thread
+    private long lastForced;
+    private boolean failed;
+
+    private Checkpoint(Path file, FileChannel channel, MandelbrotPart whole, List<MandelbrotPart> remaining, long doneEnd, int doneCount) {
+        this.file = file;
+        this.channel = channel;
+        this.whole = whole;
+        this.remaining = remaining;
+        this.doneEnd = doneEnd;
+        this.doneCount = doneCount;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastForced = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts a new checkpoint, replacing the file if it exists.
+     *
+     * @param whole the whole part that is rendered
+     * @param regions the regions of the whole part that are requested
+     */
+    public static Checkpoint create(Path file, MandelbrotPart whole, List<MandelbrotPart> regions) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = record(header(whole, regions));
+            writeFully(channel, header);
+            channel.force(false);
+
+            return new Checkpoint(file, channel, whole, new ArrayList<>(regions), header.limit(), 0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing checkpoint of the same render to continue it.
+     *
+     * @throws IOException if the file isn't a checkpoint of this whole part and these regions
+     */
+    public static Checkpoint resume(Path file, MandelbrotPart whole, List<MandelbrotPart> regions) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+
+            byte[] header = readRecord(in, size);
+            if ((header == null) || !Arrays.equals(header, header(whole, regions))) {
+                throw new IOException("Not a checkpoint of this render [" + file + "]");
+            }
+            long end = 8L + header.length;
+
+            List<int[]> done = new ArrayList<>();
+            byte[] payload;
+            while ((payload = readRecord(in, size - end)) != null) {
+                DataInputStream part = new DataInputStream(new ByteArrayInputStream(payload));
+                done.add(new int[] { part.readInt(), part.readInt(), part.readInt(), part.readInt() });
+                end += 8L + payload.length;
+            }
+
+            if (end < size) {
+                LOG.warn("Cutting off {} bytes of a partly written part at the end of {}", size - end, file);
+                channel.truncate(end);
+            }
+            channel.position(end);
+
+            return new Checkpoint(file, channel, whole, remaining(regions, done), end, done.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the parts that were done when the checkpoint was resumed, in the order they were appended.
+     */
+    public void replay(Consumer<MandelbrotResult> done) throws IOException {
+        try (InputStream file = Files.newInputStream(this.file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE));
+            byte[] header = readRecord(in, doneEnd);
+            if (header == null) {
+                throw new IOException("Checkpoint changed while replaying [" + this.file + "]");
+            }
+
+            long position = 8L + header.length;
+            while (position < doneEnd) {
+                byte[] payload = readRecord(in, doneEnd - position);
+                if (payload == null) {
+                    throw new IOException("Checkpoint changed while replaying [" + this.file + "]");
+                }
+
+                done.accept(readPart(whole, payload));
+                position += 8L + payload.length;
+            }
+        }
+    }
+
+    /**
+     * The number of parts that were done when the checkpoint was resumed.
+     */
+    public int getDoneCount() {
+        return doneCount;
+    }
+
+    /**
+     * The parts of the regions that were not done when the checkpoint was opened, as few rectangles as
+     * possible. All of the regions for a checkpoint that was just created.
+     */
+    public List<MandelbrotPart> getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Appends a part that is done, later on the writer thread. Failures are logged and stop the
+     * checkpoint, the render goes on.
+     */
+    public void append(MandelbrotResult result) {
+        writer.execute(() -> {
+            if (failed) {
+                return;
+            }
+
+            try {
+                writeFully(channel, record(part(result)));
+
+                long now = System.currentTimeMillis();
+                if (now - lastForced >= FORCE_INTERVAL_MILLIS) {
+                    channel.force(false);
+                    lastForced = now;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Failed to append to checkpoint {}, no more parts are saved", file, e);
+                failed = true;
+            }
+        });
+    }
+
+    /**
+     * Waits for the parts appended so far to be written and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing checkpoint " + file);
+        }
+
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Subtracts done (x, y, width, height) from the regions. The done rectangles must each be within
+     * a region and must not overlap.
+     */
+    static List<MandelbrotPart> remaining(List<MandelbrotPart> regions, List<int[]> done) {
+        List<MandelbrotPart> remaining = new ArrayList<>();
+
+        for (MandelbrotPart region : regions) {
+            int[] bounds = rectangle(region);
+            List<int[]> inside = new ArrayList<>();
+            for (int[] rectangle : done) {
+                if (rectangle[0] >= bounds[0] && rectangle[1] >= bounds[1]
+                        && rectangle[0] + rectangle[2] <= bounds[0] + bounds[2]
+                        && rectangle[1] + rectangle[3] <= bounds[1] + bounds[3]) {
+                    inside.add(rectangle);
+                }
+            }
+
+            for (int[] gap : subtract(bounds, inside)) {
+                remaining.add(region.subPart(gap[0] - bounds[0], gap[1] - bounds[1], gap[2], gap[3]));
+            }
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Sweeps down the bounds a slab of rows at a time, where no rectangle starts or ends within a slab.
+     * The gaps between the rectangles in a slab are extended downwards while the next slab has the
+     * same gap.
+     */
+    private static List<int[]> subtract(int[] bounds, List<int[]> rectangles) {
+        int[] ys = new int[2 * rectangles.size() + 2];
+        int n = 0;
+        ys[n++] = bounds[1];
+        ys[n++] = bounds[1] + bounds[3];
+        for (int[] rectangle : rectangles) {
+            ys[n++] = rectangle[1];
+            ys[n++] = rectangle[1] + rectangle[3];
+        }
+        Arrays.sort(ys);
+
+        rectangles.sort(Comparator.comparingInt(rectangle -> rectangle[1]));
+
+        List<int[]> gaps = new ArrayList<>();
+        Map<Long, int[]> open = new LinkedHashMap<>();
+        List<int[]> active = new ArrayList<>();
+        int next = 0;
+
+        for (int i = 0; i + 1 < ys.length; i++) {
+            int top = ys[i];
+            int bottom = ys[i + 1];
+            if (top == bottom) {
+                continue;
+            }
+
+            while (next < rectangles.size() && rectangles.get(next)[1] <= top) {
+                active.add(rectangles.get(next++));
+            }
+            active.removeIf(rectangle -> rectangle[1] + rectangle[3] <= top);
+            active.sort(Comparator.comparingInt(rectangle -> rectangle[0]));
+
+            Map<Long, int[]> stillOpen = new LinkedHashMap<>();
+            int x = bounds[0];
+            for (int[] rectangle : active) {
+                if (rectangle[0] > x) {
+                    extend(open, stillOpen, gaps, x, rectangle[0] - x, top, bottom);
+                }
+                x = Math.max(x, rectangle[0] + rectangle[2]);
+            }
+            if (x < bounds[0] + bounds[2]) {
+                extend(open, stillOpen, gaps, x, bounds[0] + bounds[2] - x, top, bottom);
+            }
+
+            // Gaps that didn't continue into this slab are finished
+            gaps.addAll(open.values());
+            open = stillOpen;
+        }
+
+        gaps.addAll(open.values());
+        return gaps;
+    }
+
+    private static void extend(Map<Long, int[]> open, Map<Long, int[]> stillOpen, List<int[]> gaps, int x, int width, int top, int bottom) {
+        long key = ((long) x << 32) | width;
+        int[] gap = open.remove(key);
+        if (gap == null || gap[1] + gap[3] != top) {
+            if (gap != null) {
+                gaps.add(gap);
+            }
+            gap = new int[] { x, top, width, 0 };
+        }
+
+        gap[3] = bottom - gap[1];
+        stillOpen.put(key, gap);
+    }
+
+    private static int[] rectangle(MandelbrotPart part) {
+        return new int[] { part.getOffset().getX(), part.getOffset().getY(), part.getSize().getWidth(), part.getSize().getHeight() };
+    }
+
+    static byte[] header(MandelbrotPart whole, List<MandelbrotPart> regions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        writeRectangle(out, whole);
+        out.writeDouble(whole.getMinc().getRe());
+        out.writeDouble(whole.getMinc().getIm());
+        out.writeDouble(whole.getMaxc().getRe());
+        out.writeDouble(whole.getMaxc().getIm());
+        out.writeInt(whole.getMaxSteps());
+
+        out.writeInt(regions.size());
+        for (MandelbrotPart region : regions) {
+            writeRectangle(out, region);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The max steps of the render in a header, or -1 if it isn't the header of a checkpoint.
+     */
+    static int maxSteps(byte[] header) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        if (in.readInt() != MAGIC) {
+            return -1;
+        }
+
+        // Skip the rectangle and the corners of the whole part
+        in.readFully(new byte[4 * 4 + 4 * 8]);
+        return in.readInt();
+    }
+
+    private static byte[] part(MandelbrotResult result) throws IOException {
+        MandelbrotPart part = result.getMandelbrotPart();
+        Dimension size = part.getSize();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size.getWidth() * size.getHeight() / 4 + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeRectangle(out, part);
+        MandelbrotBinaryCodec.encode(result.getPixels(), size.getWidth(), size.getHeight(), out);
+
+        return bytes.toByteArray();
+    }
+
+    static MandelbrotResult readPart(MandelbrotPart whole, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Position offset = whole.getOffset();
+        int x = in.readInt();
+        int y = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+
+        MandelbrotPart part = whole.subPart(x - offset.getX(), y - offset.getY(), width, height);
+        return new MandelbrotResult(part, MandelbrotBinaryCodec.decode(in, width, height));
+    }
+
+    private static void writeRectangle(DataOutputStream out, MandelbrotPart part) throws IOException {
+        out.writeInt(part.getOffset().getX());
+        out.writeInt(part.getOffset().getY());
+        out.writeInt(part.getSize().getWidth());
+        out.writeInt(part.getSize().getHeight());
+    }
+
+    private static ByteBuffer record(byte[] payload) {
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record too large. [" + payload.length + "]");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(payload.length + 8);
+        record.putInt(payload.length);
+        record.put(payload);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Returns the payload of the next record or null at the end of the file or a record that is
+     * incomplete or corrupt.
+     *
+     * @param left the number of bytes left in the file
+     */
+    static byte[] readRecord(DataInputStream in, long left) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length < 0 || length > left - 8) {
+                return null;
+            }
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            int expected = in.readInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.marre.mandelbrot.checkpoint;
+
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Continues the render in a checkpoint with more max steps, reusing every pixel that escaped.
+ *
+ * A pixel that escaped within the max steps of the checkpoint escapes at the same step with more max
+ * steps, only the pixels that reached the max steps are unresolved. The parts in the checkpoint are
+ * divided into tiles and only the tiles with unresolved pixels are requested again, runs of them along
+ * a row as one part. The regions the checkpoint never got to are requested whole.
+ *
+ * The checkpoint is only read, the parts it is reused from are read once to find the tiles and once
+ * more when they are replayed.
+ */
+public final class Deepening {
+    private final Path file;
+    private final MandelbrotPart whole;
+    private final int previousMaxSteps;
+    private final int tileSize;
+    private final long doneEnd;
+    private final List<MandelbrotPart> deeper;
+    private final long reusedPixels;
+
+    private Deepening(Path file, MandelbrotPart whole, int previousMaxSteps, int tileSize, long doneEnd, List<MandelbrotPart> deeper, long reusedPixels) {
+        this.file = file;
+        this.whole = whole;
+        this.previousMaxSteps = previousMaxSteps;
+        this.tileSize = tileSize;
+        this.doneEnd = doneEnd;
+        this.deeper = deeper;
+        this.reusedPixels = reusedPixels;
+    }
+
+    /**
+     * Finds the tiles to request again.
+     *
+     * @param file a checkpoint of the same view, size and regions with fewer max steps
+     * @param whole the whole part, with the new max steps
+     * @param tileSize the width and height of the tiles that are requested again
+     * @throws IOException if the file isn't a checkpoint of this render with fewer max steps
+     */
+    public static Deepening open(Path file, MandelbrotPart whole, List<MandelbrotPart> regions, int tileSize) throws IOException {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize must be a positive integer. [" + tileSize + "]");
+        }
+
+        long size = Files.size(file);
+        try (InputStream stream = Files.newInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, Checkpoint.BUFFER_SIZE));
+
+            byte[] header = Checkpoint.readRecord(in, size);
+            int previousMaxSteps = header != null ? Checkpoint.maxSteps(header) : -1;
+            MandelbrotPart previous = MandelbrotPart.create(whole.getSize(), whole.getMinc(), whole.getMaxc(), Math.max(1, previousMaxSteps));
+            if ((previousMaxSteps < 1) || !Arrays.equals(header, Checkpoint.header(previous, regions))) {
+                throw new IOException("Not a checkpoint of this render [" + file + "]");
+            }
+            if (previousMaxSteps >= whole.getMaxSteps()) {
+                throw new IOException("Checkpoint already has " + previousMaxSteps + " max steps [" + file + "]");
+            }
+            long end = 8L + header.length;
+
+            List<MandelbrotPart> deeper = new ArrayList<>();
+            List<int[]> done = new ArrayList<>();
+            long reusedPixels = 0;
+            byte[] payload;
+            while ((payload = Checkpoint.readRecord(in, size - end)) != null) {
+                MandelbrotResult result = Checkpoint.readPart(whole, payload);
+                MandelbrotPart part = result.getMandelbrotPart();
+                done.add(new int[] { part.getOffset().getX(), part.getOffset().getY(), part.getSize().getWidth(), part.getSize().getHeight() });
+
+                reusedPixels += result.getPixels().length;
+                for (int[] tiles : unresolved(result, tileSize, previousMaxSteps)) {
+                    deeper.add(whole.subPart(tiles[0] - whole.getOffset().getX(), tiles[1] - whole.getOffset().getY(), tiles[2], tiles[3]));
+                    reusedPixels -= (long) tiles[2] * tiles[3];
+                }
+                end += 8L + payload.length;
+            }
+
+            deeper.addAll(Checkpoint.remaining(regions, done));
+
+            return new Deepening(file, whole, previousMaxSteps, tileSize, end, deeper, reusedPixels);
+        }
+    }
+
+    /**
+     * Reads the pixels that are reused from the checkpoint, as the parts of the parts in it that are
+     * outside the tiles that are requested again.
+     */
+    public void replay(Consumer<MandelbrotResult> reused) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, Checkpoint.BUFFER_SIZE));
+            byte[] header = Checkpoint.readRecord(in, doneEnd);
+            if (header == null) {
+                throw new IOException("Checkpoint changed while replaying [" + file + "]");
+            }
+
+            long position = 8L + header.length;
+            while (position < doneEnd) {
+                byte[] payload = Checkpoint.readRecord(in, doneEnd - position);
+                if (payload == null) {
+                    throw new IOException("Checkpoint changed while replaying [" + file + "]");
+                }
+
+                MandelbrotResult result = Checkpoint.readPart(whole, payload);
+                List<int[]> tiles = unresolved(result, tileSize, previousMaxSteps);
+                if (tiles.isEmpty()) {
+                    reused.accept(result);
+                } else {
+                    for (MandelbrotPart part : Checkpoint.remaining(Collections.singletonList(result.getMandelbrotPart()), tiles)) {
+                        reused.accept(crop(result, part));
+                    }
+                }
+                position += 8L + payload.length;
+            }
+        }
+    }
+
+    /**
+     * The max steps of the checkpoint.
+     */
+    public int getPreviousMaxSteps() {
+        return previousMaxSteps;
+    }
+
+    /**
+     * The parts to request with the new max steps, the tiles with unresolved pixels and the regions
+     * that are not in the checkpoint.
+     */
+    public List<MandelbrotPart> getDeeper() {
+        return deeper;
+    }
+
+    /**
+     * The number of pixels that are reused from the checkpoint.
+     */
+    public long getReusedPixels() {
+        return reusedPixels;
+    }
+
+    /**
+     * The tiles of the result with pixels that reached maxSteps as (x, y, width, height) on the canvas.
+     * Tiles next to each other along a row are one rectangle.
+     */
+    static List<int[]> unresolved(MandelbrotResult result, int tileSize, int maxSteps) {
+        MandelbrotPart part = result.getMandelbrotPart();
+        Position offset = part.getOffset();
+        int width = part.getSize().getWidth();
+        int height = part.getSize().getHeight();
+        int[] pixels = result.getPixels();
+
+        List<int[]> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += tileSize) {
+            int tileHeight = Math.min(tileSize, height - y);
+            int runStart = -1;
+
+            for (int x = 0; x < width; x += tileSize) {
+                boolean unresolved = reaches(pixels, width, x, y, Math.min(tileSize, width - x), tileHeight, maxSteps);
+                if (unresolved && runStart < 0) {
+                    runStart = x;
+                } else if (!unresolved && runStart >= 0) {
+                    tiles.add(new int[] { offset.getX() + runStart, offset.getY() + y, x - runStart, tileHeight });
+                    runStart = -1;
+                }
+            }
+
+            if (runStart >= 0) {
+                tiles.add(new int[] { offset.getX() + runStart, offset.getY() + y, width - runStart, tileHeight });
+            }
+        }
+
+        return tiles;
+    }
+
+    private static boolean reaches(int[] pixels, int stride, int x, int y, int width, int height, int maxSteps) {
+        for (int row = y; row < y + height; row++) {
+            int start = row * stride + x;
+            for (int i = start; i < start + width; i++) {
+                if (pixels[i] >= maxSteps) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static MandelbrotResult crop(MandelbrotResult result, MandelbrotPart part) {
+        Dimension size = part.getSize();
+        int stride = result.getMandelbrotPart().getSize().getWidth();
+        int x = part.getOffset().getX() - result.getMandelbrotPart().getOffset().getX();
+        int y = part.getOffset().getY() - result.getMandelbrotPart().getOffset().getY();
+
+        int[] pixels = new int[size.getWidth() * size.getHeight()];
+        for (int row = 0; row < size.getHeight(); row++) {
+            System.arraycopy(result.getPixels(), (y + row) * stride + x, pixels, row * size.getWidth(), size.getWidth());
+        }
+        return new MandelbrotResult(part, pixels);
+    }
+}
@@ -0,0 +1,44 @@
+package org.marre.mandelbrot.cli;
+
+import picocli.CommandLine;
+
+import java.util.Locale;
+
+/**
+ * The backends that can be selected from the command line.
+ */
+enum BackendType {
+    /**
+     * The mandelbrot server.
+     */
+    REMOTE,
+
+    /**
+     * All cores of the local machine.
+     */
+    LOCAL,
+
+    /**
+     * Small parts locally, large parts on the server.
+     */
+    HYBRID,
+
+    /**
+     * Worker processes that connect to the Cli, see {@link WorkerCli}.
+     */
+    WORKERS;
+
+    /**
+     * If the backend sends requests to the mandelbrot server.
+     */
+    boolean usesServer() {
+        return this == REMOTE || this == HYBRID;
+    }
+
+    static final class Converter implements CommandLine.ITypeConverter<BackendType> {
+        @Override
+        public BackendType convert(String value) {
+            return BackendType.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -1,23 +1,103 @@
 package org.marre.mandelbrot.cli;
 
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Timed;
 import io.reactivex.schedulers.Schedulers;
-import io.reactivex.subjects.UnicastSubject;
 import org.marre.mandelbrot.Complex;
 import org.marre.mandelbrot.Dimension;
 import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.balance.LoadBalancingMandelbrotBackend;
+import org.marre.mandelbrot.cache.CachingMandelbrotBackend;
+import org.marre.mandelbrot.cache.TileCache;
+import org.marre.mandelbrot.checkpoint.Checkpoint;
+import org.marre.mandelbrot.checkpoint.Deepening;
+import org.marre.mandelbrot.distributed.Coordinator;
 import org.marre.mandelbrot.api.MandelbrotClient;
 import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.autotune.LimitedMandelbrotBackend;
+import org.marre.mandelbrot.autotune.TileSizeTuner;
 import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.local.HybridMandelbrotBackend;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.marre.mandelbrot.metrics.RecordingMetrics;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.CoarseGrid;
+import org.marre.mandelbrot.render.MarianiSilverRenderer;
+import org.marre.mandelbrot.render.Palette;
+import org.marre.mandelbrot.render.SymmetryPlan;
+import org.marre.mandelbrot.render.TilePyramidWriter;
+import org.marre.mandelbrot.resilience.ResiliencePolicy;
+import org.marre.mandelbrot.resilience.ResilientMandelbrotBackend;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public final class Cli {
     private static final Logger LOG = LoggerFactory.getLogger(Cli.class);
 
+    /**
+     * The resolutions rendered before the full resolution in progressive mode, as fractions.
+     */
+    private static final int[] PROGRESSIVE_SCALES = { 8, 4 };
+
+    /**
+     * The resolution, as a fraction, used to predict the cost of each part.
+     */
+    static final int COST_PROBE_SCALE = 16;
+
+    /**
+     * The quantile of the observed latencies after which slow requests are hedged.
+     */
+    private static final double HEDGE_QUANTILE = 0.95;
+
+    /**
+     * Retry backoffs never grow beyond this many milliseconds.
+     */
+    private static final long MAX_RETRY_BACKOFF = 10_000;
+
+    /**
+     * The part sizes autotuning chooses from. Larger parts don't fit in a lambda response.
+     */
+    private static final int AUTOTUNE_MIN_PART_SIZE = 50;
+    private static final int AUTOTUNE_MAX_PART_SIZE = 1000;
+
+    /**
+     * Rows compressed together when a whole preview is written at once.
+     */
+    private static final int PREVIEW_BAND_HEIGHT = 64;
+
+    /**
+     * The size of the tiles of a deepened checkpoint that are requested again if any pixel in them
+     * reached the previous max steps.
+     */
+    private static final int DEEPEN_TILE_SIZE = 16;
+
     public static void main(String ... args) {
         CliOptions params = parseArguments(args);
 
@@ -31,74 +111,297 @@ public final class Cli {
                 params.getSteps());
         int partSize = Math.max(1, params.getDivisions());
         int maxConcurrency = Math.max(1, params.getConcurrent());
-        String mandelbrotServerBaseUrl = params.getUrl().toASCIIString();
+        List<String> mandelbrotServerBaseUrls = new ArrayList<>();
+        for (URI url : params.getUrls().isEmpty() ? Collections.singletonList(CliOptions.DEFAULT_URL) : params.getUrls()) {
+            mandelbrotServerBaseUrls.add(url.toASCIIString());
+        }
 
-        // Split into parts
-        List<MandelbrotPart> mandelbrotParts = mandelbrotPartComplete.split(partSize);
+        // Rows that mirror other rows are never requested
+        SymmetryPlan symmetryPlan = params.isMirror() ? SymmetryPlan.create(mandelbrotPartComplete) : SymmetryPlan.none(mandelbrotPartComplete);
+        if (symmetryPlan.getMirroredRows() > 0) {
+            LOG.info("Mirroring {} of {} rows", symmetryPlan.getMirroredRows(), canvasSize.getHeight());
+        }
 
-        BufferedImage canvas = new BufferedImage(canvasSize.getWidth(), canvasSize.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        // Transports other than okhttp are found on the classpath
+        if (params.getBackend().usesServer() && !MandelbrotClient.transports().contains(params.getTransport())) {
+            System.err.println("Unknown --transport " + params.getTransport() + ", not one of " + MandelbrotClient.transports());
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+        }
 
-        UnicastSubject<MandelbrotResult> mandelbrotResults = UnicastSubject.create();
+        // Workers connect to the port and hold each part for the lease
+        if (params.getBackend() == BackendType.WORKERS && (params.getListen() < 0 || params.getListen() > 65535 || params.getLease() < 1)) {
+            System.err.println("--listen must be a port [0 ... 65535] and --lease at least a second [" + params.getListen() + ", " + params.getLease() + "]");
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+        }
+
+        // Parts that are done are appended to the checkpoint. A resumed render only requests what is left.
+        if (params.isResume() && params.getCheckpoint() == null) {
+            System.err.println("--resume needs --checkpoint");
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+        }
+        // A deepened render reuses the escaped pixels of a checkpoint with fewer max steps. A new
+        // checkpoint gets the reused pixels too, so it is resumed without --deepen.
+        if (params.getDeepen() != null && (params.isResume() || (params.getCheckpoint() != null && sameFile(params.getDeepen(), params.getCheckpoint())))) {
+            System.err.println("--deepen needs a new --checkpoint and can't be resumed, resume the new checkpoint instead");
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+        }
+        // Autotuned parts are sized as they are requested, sorted parts are all created up front
+        if (params.isAutotune() && (params.isLpt() || params.getProgressive() != null)) {
+            System.err.println("--autotune can't be combined with --lpt or --progressive, those sort the parts before any has been timed");
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+        }
+        Deepening deepening = params.getDeepen() != null ? openDeepening(params, mandelbrotPartComplete, symmetryPlan.regions()) : null;
 
-        mandelbrotResults
-                .subscribeOn(Schedulers.single())
-                .observeOn(Schedulers.single())
+        Checkpoint checkpoint = params.getCheckpoint() != null ? openCheckpoint(params, mandelbrotPartComplete, symmetryPlan.regions()) : null;
+        List<MandelbrotPart> regions = deepening != null
+                ? deepening.getDeeper()
+                : checkpoint != null ? checkpoint.getRemaining() : symmetryPlan.regions();
+
+        // Parts are created lazily as the pipeline asks for them, unless they are sorted
+        boolean autotune = params.isAutotune() && params.getBackend().usesServer();
+        TileSizeTuner tileSizeTuner = autotune ? createTileSizeTuner(params, partSize) : null;
+        Flowable<MandelbrotPart> mandelbrotParts;
+        if (tileSizeTuner != null) {
+            mandelbrotParts = tileSizeTuner.parts(regions);
+            LOG.info("Requesting parts of {} pixels and up to {} concurrent requests per endpoint, adapting both", tileSizeTuner.nextSize(), params.getAutotuneMax());
+        } else {
+            mandelbrotParts = Flowable.fromIterable(regions)
+                    .concatMap(region -> Flowable.fromIterable(region.splitLazily(partSize)));
+            LOG.info("Requesting {} parts", regions.stream().mapToLong(region -> region.splitCount(partSize)).sum());
+        }
+
+        // Autotuned limits queue their own requests, so keep enough parts coming for the max limits
+        int maxRequests = autotune ? Math.max(maxConcurrency, params.getAutotuneMax()) : maxConcurrency;
+        int inFlight = Math.max(1, params.getInFlight() > 0 ? params.getInFlight() : 2 * maxRequests * mandelbrotServerBaseUrls.size());
+        int resultBuffer = Math.max(1, params.getResultBuffer());
+
+        Canvas canvas = createCanvas(params, canvasSize, params.getPalette().create(params.getSteps()));
+
+        // Results are colourized onto the canvas in parallel, apart from the thread receiving them
+        int colourThreads = params.getColourThreads() > 0 ? params.getColourThreads() : Runtime.getRuntime().availableProcessors();
+        Scheduler colourScheduler = createColourScheduler(colourThreads);
+
+        // Bands of rows are compressed and written to stdout as soon as all parts in them are drawn
+        StreamingPngWriter pngWriter = params.getTiles() == null ? startPng(canvas, partSize) : null;
+
+        TileCache tileCache = params.getCache() != null ? createTileCache(params.getCache(), params.getCacheSize()) : null;
+
+        RecordingMetrics recordingMetrics = params.getMetrics() != null ? RecordingMetrics.create() : null;
+        MandelbrotMetrics metrics = recordingMetrics != null ? recordingMetrics : MandelbrotMetrics.NOOP;
+
+        ResiliencePolicy resiliencePolicy = createResiliencePolicy(params);
+
+        // Each endpoint has its own client and concurrency limit, fixed or adaptive
+        boolean remote = params.getBackend().usesServer();
+        Map<String, MandelbrotBackend> endpoints = new LinkedHashMap<>();
+        List<LimitedMandelbrotBackend> limiters = new ArrayList<>();
+        if (remote) {
+            for (String mandelbrotServerBaseUrl : mandelbrotServerBaseUrls) {
+                MandelbrotBackend endpoint = MandelbrotClient.create(params.getTransport(), mandelbrotServerBaseUrl, maxRequests, metrics);
+                if (tileSizeTuner != null) {
+                    LimitedMandelbrotBackend limiter = LimitedMandelbrotBackend.adaptive(
+                            tileSizeTuner.observe(endpoint), maxConcurrency, maxRequests);
+                    limiters.add(limiter);
+                    endpoint = limiter;
+                }
+                endpoints.put(mandelbrotServerBaseUrl, endpoint);
+            }
+        }
+
+        // Several endpoints are load balanced
+        LoadBalancingMandelbrotBackend loadBalancer = endpoints.size() > 1 ? createLoadBalancer(endpoints) : null;
+        MandelbrotBackend remoteBackend = remote
+                ? ResilientMandelbrotBackend.create(
+                        loadBalancer != null ? loadBalancer : endpoints.get(mandelbrotServerBaseUrls.get(0)),
+                        resiliencePolicy,
+                        metrics)
+                : null;
+
+        // Worker processes pull the parts from the coordinator
+        Coordinator coordinator = params.getBackend() == BackendType.WORKERS ? startCoordinator(params) : null;
+        MandelbrotBackend mandelbrotBackend = coordinator != null
+                ? coordinator
+                : createBackend(params.getBackend(), remoteBackend, params.getLocalPixels());
+        MandelbrotBackend cachedBackend = tileCache != null
+                ? CachingMandelbrotBackend.create(mandelbrotBackend, tileCache)
+                : mandelbrotBackend;
+
+        // Either request each part as a whole or trace the borders of regions within it. Traced parts
+        // fan out into many requests, so those are bounded by inFlight too.
+        MarianiSilverRenderer marianiSilverRenderer = params.getMarianiSilver() > 0
+                ? MarianiSilverRenderer.create(cachedBackend, Math.max(3, params.getMarianiSilver()), inFlight)
+                : null;
+        Function<MandelbrotPart, Flowable<MandelbrotResult>> partRenderer = marianiSilverRenderer != null
+                ? marianiSilverRenderer::render
+                : part -> cachedBackend.mandelbrot(part).toFlowable();
+        Function<MandelbrotPart, Flowable<MandelbrotResult>> checkpointedRenderer = checkpoint != null
+                ? part -> checkpointed(checkpoint, part, partRenderer.apply(part))
+                : partRenderer;
+
+        // Coarse passes that give a quick preview and decide in which order the parts are requested
+        CoarseGrid coarseGrid = null;
+        if (params.getProgressive() != null) {
+            for (int scale : PROGRESSIVE_SCALES) {
+                coarseGrid = renderCoarse(cachedBackend, mandelbrotPartComplete, scale, partSize, inFlight);
+                coarseGrid.sample(canvas.getPalette());
+                coarseGrid.drawOn(canvas);
+                writePreview(canvas, params.getProgressive(), scale);
+            }
+        }
+
+        // The histogram is seeded with a sample of the whole view, so that the first parts get about
+        // the same colours as the last
+        CoarseGrid costProbe = null;
+        if (params.getPalette() == PaletteType.HISTOGRAM && coarseGrid == null) {
+            costProbe = renderCoarse(cachedBackend, mandelbrotPartComplete, COST_PROBE_SCALE, partSize, inFlight);
+            costProbe.sample(canvas.getPalette());
+        }
+
+        // Only counted on the single scheduler thread
+        long[] pixelsLeft = { (long) canvasSize.getWidth() * (canvasSize.getHeight() - symmetryPlan.getMirroredRows()) };
+
+        Consumer<MandelbrotResult> drawDone = result -> {
+            canvas.draw(result);
+            symmetryPlan.mirror(canvas, result.getMandelbrotPart());
+            if (pngWriter != null) {
+                markDrawn(pngWriter, symmetryPlan, result.getMandelbrotPart());
+            }
+            pixelsLeft[0] -= result.getPixels().length;
+        };
+
+        if (checkpoint != null && checkpoint.getDoneCount() > 0) {
+            replay(checkpoint, drawDone);
+            LOG.info("Resumed {} parts that were done, {} pixels left", checkpoint.getDoneCount(), pixelsLeft[0]);
+        }
+
+        if (deepening != null) {
+            replay(deepening, checkpoint != null ? drawDone.andThen(checkpoint::append) : drawDone);
+            LOG.info("Deepening from {} to {} max steps, reused {} pixels, {} pixels left",
+                    deepening.getPreviousMaxSteps(), params.getSteps(), deepening.getReusedPixels(), pixelsLeft[0]);
+        }
+
+        // Without a progressive pass the costs are predicted from the cost probe
+        if (params.isLpt() && coarseGrid == null) {
+            coarseGrid = costProbe != null
+                    ? costProbe
+                    : renderCoarse(cachedBackend, mandelbrotPartComplete, COST_PROBE_SCALE, partSize, inFlight);
+        }
+        if (coarseGrid != null) {
+            mandelbrotParts = sortParts(mandelbrotParts, coarseGrid, params.isLpt());
+        }
+
+        // From the first part requested until the last result received
+        AtomicLong firstRequested = new AtomicLong();
+        long[] lastReceived = new long[1];
+
+        // At most inFlight parts are outstanding and at most resultBuffer results per colour thread wait
+        // to be drawn. A new part is only created and requested when an earlier one has been received.
+        // Every stage after the requests prefetches resultBuffer, not RxJava's default of 128.
+        mandelbrotParts
+                .doOnNext(part -> {
+                    firstRequested.compareAndSet(0, System.currentTimeMillis());
+                    LOG.info("Enqueing request for: {}", part);
+                })
+                .flatMap(checkpointedRenderer, false, inFlight)
+                .map(response -> new Timed<>(response, System.nanoTime(), TimeUnit.NANOSECONDS))
+                .parallel(colourThreads, resultBuffer)
+                .runOn(colourScheduler, resultBuffer)
+                .map(timedResponse -> {
+                    // Parts don't overlap, so they are drawn concurrently
+                    long drawStart = System.nanoTime();
+                    metrics.queueWait(drawStart - timedResponse.time());
+
+                    MandelbrotResult response = timedResponse.value();
+                    canvas.draw(response);
+                    symmetryPlan.mirror(canvas, response.getMandelbrotPart());
+
+                    metrics.colourized(System.nanoTime() - drawStart);
+                    return response;
+                })
+                .sequential(resultBuffer)
+                .observeOn(Schedulers.single(), false, resultBuffer)
                 .subscribe(
                         response -> {
-                            // A new response has been received. Add pixels to the canvas
+                            // A new response has been drawn on the canvas
                             MandelbrotPart part = response.getMandelbrotPart();
 
                             Dimension size = part.getSize();
                             Position offset = part.getOffset();
 
                             int[] pixelIterations = response.getPixels();
-                            int[] packedRgbPixels = colourize(pixelIterations);
-
-                            // Remove the part from the mandelbrotParts list
-                            mandelbrotParts.remove(part);
 
-                            LOG.info("Received : {} {} {} pixels, {} parts left", offset, size, packedRgbPixels.length, mandelbrotParts.size());
+                            pixelsLeft[0] -= pixelIterations.length;
+                            lastReceived[0] = System.currentTimeMillis();
 
-                            canvas.setRGB(
-                                    offset.getX(),
-                                    offset.getY(),
-                                    size.getWidth(),
-                                    size.getHeight(),
-                                    packedRgbPixels,
-                                    0,
-                                    size.getWidth());
+                            LOG.info("Received : {} {} {} pixels, {} pixels left", offset, size, pixelIterations.length, pixelsLeft[0]);
 
-                            // Is this the final part?
-                            if (mandelbrotParts.isEmpty()) {
-                                mandelbrotResults.onComplete();
+                            if (pngWriter != null) {
+                                markDrawn(pngWriter, symmetryPlan, part);
                             }
                         },
                         err -> {
                             // Something went spectacularly wrong
                             LOG.error("Failed to retrieve mandelbrot from server", err);
+                            if (checkpoint != null) {
+                                closeCheckpoint(checkpoint);
+                            }
+                            if (coordinator != null) {
+                                closeCoordinator(coordinator);
+                            }
                             System.exit(1);
                         },
                         () -> {
-                            // All responses received. Write out the canvas as a png file to stdout
-                            PngUtil.toPng(canvas, System.out);
-                            System.out.flush();
+                            // All responses received. Write out the rest of the png file to stdout, or the tiles
+                            if (checkpoint != null) {
+                                closeCheckpoint(checkpoint);
+                            }
+                            if (coordinator != null) {
+                                LOG.info("Workers : {} parts leased, {} leased again", coordinator.getLeased(), coordinator.getRedelivered());
+                                closeCoordinator(coordinator);
+                            }
+                            if (pngWriter != null) {
+                                finishPng(pngWriter, canvas);
+                            } else {
+                                writeTiles(canvas, params.getTiles(), params.getTileSize());
+                            }
 
                             long duration = System.currentTimeMillis() - start;
 
-                            LOG.info("Done in {} ms!", duration);
+                            if (marianiSilverRenderer != null) {
+                                LOG.info("Mariani-Silver : {} pixels requested, {} pixels filled", marianiSilverRenderer.getRequestedPixels(), marianiSilverRenderer.getFilledPixels());
+                            }
 
-                            System.exit(0);
-                        });
+                            if (tileCache != null) {
+                                LOG.info("Cache : {} hits, {} misses", tileCache.getHits(), tileCache.getMisses());
+                            }
+
+                            if (loadBalancer != null) {
+                                loadBalancer.logStats();
+                            }
 
-        MandelbrotClient mandelbrotClient = MandelbrotClient.create(mandelbrotServerBaseUrl, maxConcurrency);
+                            if (tileSizeTuner != null) {
+                                List<Integer> limits = new ArrayList<>();
+                                limiters.forEach(limiter -> limits.add(limiter.getLimit()));
+                                LOG.info("Autotune : part size {}, concurrency limits {}", tileSizeTuner.nextSize(), limits);
+                            }
 
-        // Just send all requests to retrofit and let it send it as efficient as possible
-        for (MandelbrotPart part : mandelbrotParts) {
-            LOG.info("Enqueing request for: {}", part);
-            mandelbrotClient.mandelbrot(part)
-                    .toObservable()
-                    .subscribe(mandelbrotResults::onNext, mandelbrotResults::onError);
-        }
+                            if (recordingMetrics != null) {
+                                LOG.info("Latency : p50 {} ms, p99 {} ms, p99.9 {} ms",
+                                        recordingMetrics.getLatency().quantile(0.5) / 1_000_000,
+                                        recordingMetrics.getLatency().quantile(0.99) / 1_000_000,
+                                        recordingMetrics.getLatency().quantile(0.999) / 1_000_000);
+                                writeMetrics(recordingMetrics, params.getMetrics());
+                            }
+
+                            LOG.info("Done in {} ms! Makespan {} ms", duration, lastReceived[0] - firstRequested.get());
+
+                            System.exit(0);
+                        });
 
         // Just to keep this thread from terminating
         try {
@@ -108,33 +411,306 @@ public final class Cli {
         }
     }
 
-    private static CliOptions parseArguments(String ... args) {
+    static MandelbrotBackend createBackend(
+            BackendType backendType,
+            MandelbrotBackend remoteBackend,
+            long localPixels) {
+
+        switch (backendType) {
+            case LOCAL:
+                return LocalMandelbrotBackend.create();
+            case HYBRID:
+                return HybridMandelbrotBackend.create(
+                        remoteBackend,
+                        LocalMandelbrotBackend.create(),
+                        localPixels);
+            case WORKERS:
+                throw new IllegalArgumentException("Workers are only coordinated by the Cli. [" + backendType + "]");
+            case REMOTE:
+            default:
+                return remoteBackend;
+        }
+    }
+
+    /**
+     * Sorts the parts by the coarse grid. With lpt the longest processing time comes first, so that no
+     * expensive part is started last, otherwise the parts with the most detail come first.
+     */
+    static Flowable<MandelbrotPart> sortParts(Flowable<MandelbrotPart> mandelbrotParts, CoarseGrid coarseGrid, boolean lpt) {
+        List<MandelbrotPart> sortedParts = mandelbrotParts.toList().blockingGet();
+        sortedParts.sort(Comparator.comparingDouble(lpt ? coarseGrid::iterations : coarseGrid::variance).reversed());
+        return Flowable.fromIterable(sortedParts);
+    }
+
+    private static LoadBalancingMandelbrotBackend createLoadBalancer(Map<String, MandelbrotBackend> endpoints) {
+        LOG.info("Balancing requests over {} endpoints", endpoints.size());
+
+        return LoadBalancingMandelbrotBackend.create(endpoints);
+    }
+
+    private static TileSizeTuner createTileSizeTuner(CliOptions params, int partSize) {
         try {
-            return CommandLine.populateCommand(new CliOptions(), args);
-        } catch (CommandLine.ParameterException pe) {
-            System.err.println(pe.getMessage());
+            return TileSizeTuner.create(partSize, AUTOTUNE_MIN_PART_SIZE, AUTOTUNE_MAX_PART_SIZE, params.getAutotunePartTime());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static ResiliencePolicy createResiliencePolicy(CliOptions params) {
+        try {
+            return ResiliencePolicy.create(
+                    params.getRetries(),
+                    params.getRetryBackoff(),
+                    Math.max(MAX_RETRY_BACKOFF, params.getRetryBackoff()),
+                    params.getDeadline(),
+                    params.isHedge() ? HEDGE_QUANTILE : 0.0,
+                    params.getRetryBudget());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
             CommandLine.usage(new CliOptions(), System.err);
             System.exit(1);
             return null;
         }
     }
 
-    private static int[] colourize(int[] pixelIterations) {
-        int[] rgbPixels = new int[pixelIterations.length];
+    private static CoarseGrid renderCoarse(MandelbrotBackend mandelbrotBackend, MandelbrotPart whole, int scale, int partSize, int inFlight) {
+        try {
+            long start = System.currentTimeMillis();
+            CoarseGrid coarseGrid = CoarseGrid.render(mandelbrotBackend, whole, scale, partSize, inFlight).blockingGet();
+            LOG.info("Rendered 1/{} resolution in {} ms", scale, System.currentTimeMillis() - start);
+            return coarseGrid;
+        } catch (RuntimeException e) {
+            LOG.error("Failed to retrieve mandelbrot from server", e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static Canvas createCanvas(CliOptions params, Dimension canvasSize, Palette palette) {
+        if (params.getCanvasFile() == null) {
+            return Canvas.create(canvasSize, palette);
+        }
 
-        for(int i=0; i < pixelIterations.length; i++) {
-            int pixel = pixelIterations[i];
-            int grey = pixel % 256;
-            rgbPixels[i] =  packRgb(grey, grey, grey);
+        try {
+            return Canvas.mapped(params.getCanvasFile().toPath(), canvasSize, palette);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to map the canvas {}", params.getCanvasFile(), e);
+            System.exit(1);
+            return null;
         }
+    }
 
-        return rgbPixels;
+    private static Scheduler createColourScheduler(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Schedulers.from(Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "colourize-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
     }
 
-    private static int packRgb(int r, int g, int b) {
-        return  (0xff000000) |
-                ((r & 0xff) << 16) |
-                ((g & 0xff) << 8)  |
-                ((b & 0xff));
+    private static Checkpoint openCheckpoint(CliOptions params, MandelbrotPart whole, List<MandelbrotPart> regions) {
+        File file = params.getCheckpoint();
+
+        try {
+            if (params.isResume() && file.exists()) {
+                return Checkpoint.resume(file.toPath(), whole, regions);
+            }
+
+            if (params.isResume()) {
+                LOG.warn("No checkpoint to resume in {}, starting from the beginning", file);
+            }
+            return Checkpoint.create(file.toPath(), whole, regions);
+        } catch (IOException e) {
+            LOG.error("Failed to open the checkpoint {}", file, e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static Coordinator startCoordinator(CliOptions params) {
+        try {
+            Coordinator coordinator = Coordinator.create(new InetSocketAddress(params.getListen()), TimeUnit.SECONDS.toMillis(params.getLease()));
+            coordinator.start();
+            LOG.info("Waiting for workers on {}", coordinator.getAddress());
+            return coordinator;
+        } catch (IOException e) {
+            LOG.error("Failed to listen for workers on port {}", params.getListen(), e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Tells the workers that the render is done.
+     */
+    private static void closeCoordinator(Coordinator coordinator) {
+        try {
+            coordinator.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the coordinator", e);
+        }
+    }
+
+    /**
+     * Whether two paths are the same file, also when written differently or through links.
+     */
+    static boolean sameFile(File file, File other) {
+        try {
+            if (file.exists() && other.exists()) {
+                return Files.isSameFile(file.toPath(), other.toPath());
+            }
+            return file.getCanonicalFile().equals(other.getCanonicalFile());
+        } catch (IOException e) {
+            return file.getAbsoluteFile().equals(other.getAbsoluteFile());
+        }
+    }
+
+    private static Deepening openDeepening(CliOptions params, MandelbrotPart whole, List<MandelbrotPart> regions) {
+        File file = params.getDeepen();
+
+        try {
+            return Deepening.open(file.toPath(), whole, regions, DEEPEN_TILE_SIZE);
+        } catch (IOException e) {
+            LOG.error("Failed to open the checkpoint to deepen {}", file, e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void replay(Deepening deepening, Consumer<MandelbrotResult> reused) {
+        try {
+            deepening.replay(reused);
+        } catch (IOException e) {
+            LOG.error("Failed to read the checkpoint to deepen", e);
+            System.exit(1);
+        }
+    }
+
+    private static void replay(Checkpoint checkpoint, Consumer<MandelbrotResult> done) {
+        try {
+            checkpoint.replay(done);
+        } catch (IOException e) {
+            LOG.error("Failed to read the checkpoint", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Appends the part to the checkpoint when all of its results have been received. The results are
+     * passed on together.
+     */
+    private static Flowable<MandelbrotResult> checkpointed(Checkpoint checkpoint, MandelbrotPart part, Flowable<MandelbrotResult> results) {
+        return results.toList()
+                .doOnSuccess(list -> checkpoint.append(list.size() == 1 && list.get(0).getMandelbrotPart().equals(part)
+                        ? list.get(0)
+                        : MandelbrotResult.merge(part, list)))
+                .flatMapPublisher(Flowable::fromIterable);
+    }
+
+    private static void closeCheckpoint(Checkpoint checkpoint) {
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the checkpoint", e);
+        }
+    }
+
+    private static StreamingPngWriter startPng(Canvas canvas, int bandHeight) {
+        try {
+            return StreamingPngWriter.start(new BufferedOutputStream(System.out), canvas, bandHeight);
+        } catch (IOException e) {
+            LOG.error("Failed to write png", e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Tells the png writer about the rows of a drawn part and the rows mirrored from them.
+     */
+    private static void markDrawn(StreamingPngWriter pngWriter, SymmetryPlan symmetryPlan, MandelbrotPart part) {
+        int wholeY = symmetryPlan.getWhole().getOffset().getY();
+        Position offset = part.getOffset();
+        Dimension size = part.getSize();
+
+        for (int y = offset.getY(); y < offset.getY() + size.getHeight(); y++) {
+            pngWriter.drawn(y, size.getWidth());
+
+            int mirrored = symmetryPlan.mirror(y - wholeY);
+            if (mirrored >= 0) {
+                pngWriter.drawn(wholeY + mirrored, size.getWidth());
+            }
+        }
+    }
+
+    private static void finishPng(StreamingPngWriter pngWriter, Canvas canvas) {
+        try {
+            long start = System.currentTimeMillis();
+            pngWriter.finish();
+            LOG.info("Finished png in {} ms", System.currentTimeMillis() - start);
+            canvas.close();
+        } catch (IOException e) {
+            LOG.error("Failed to write png", e);
+            System.exit(1);
+        }
+    }
+
+    private static void writeTiles(Canvas canvas, File directory, int tileSize) {
+        try {
+            long start = System.currentTimeMillis();
+            int tiles = TilePyramidWriter.write(canvas, directory.toPath(), Math.max(1, tileSize));
+            LOG.info("Wrote {} tiles in {} levels to {} in {} ms", tiles, TilePyramidWriter.levels(canvas.getSize(), Math.max(1, tileSize)), directory, System.currentTimeMillis() - start);
+            canvas.close();
+        } catch (IOException e) {
+            LOG.error("Failed to write tiles to {}", directory, e);
+            System.exit(1);
+        }
+    }
+
+    private static void writePreview(Canvas canvas, String prefix, int scale) {
+        File file = new File(prefix + "-" + scale + ".png");
+
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+            StreamingPngWriter.write(os, canvas, PREVIEW_BAND_HEIGHT);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to write preview {}", file, e);
+        }
+    }
+
+    private static void writeMetrics(RecordingMetrics metrics, File file) {
+        try (Writer writer = new FileWriter(file)) {
+            if (file.getName().endsWith(".prom")) {
+                metrics.writePrometheus(writer);
+            } else {
+                metrics.writeJson(writer);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write metrics {}", file, e);
+        }
+    }
+
+    static TileCache createTileCache(File directory, long maxMegabytes) {
+        try {
+            return TileCache.create(directory.toPath(), Math.max(1, maxMegabytes) * 1024 * 1024);
+        } catch (IOException e) {
+            LOG.error("Failed to open the cache {}", directory, e);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static CliOptions parseArguments(String ... args) {
+        try {
+            return CommandLine.populateCommand(new CliOptions(), args);
+        } catch (CommandLine.ParameterException pe) {
+            System.err.println(pe.getMessage());
+            CommandLine.usage(new CliOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
     }
 }
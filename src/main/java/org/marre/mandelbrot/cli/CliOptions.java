@@ -4,24 +4,122 @@ import lombok.Data;
 import lombok.NonNull;
 import picocli.CommandLine;
 
+import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @CommandLine.Command(showDefaultValues = true, description = "Mandelbrot client")
 final class CliOptions {
-    @CommandLine.Option(names = "-u", description = "the mandelbrot server url")
+    static final URI DEFAULT_URL = URI.create("https://qfvdee5mse.execute-api.us-east-1.amazonaws.com/dev/");
+
+    @CommandLine.Option(names = "-u", type = URI.class, description = "the mandelbrot server url, repeat to balance requests over several endpoints, the default server if not set")
     @NonNull
-    private URI url = URI.create("https://qfvdee5mse.execute-api.us-east-1.amazonaws.com/dev/");
+    private List<URI> urls = new ArrayList<>();
 
-    @CommandLine.Option(names = "-c", description = "the number of concurrent requests [>0]")
+    @CommandLine.Option(names = "-c", description = "the number of concurrent requests per endpoint [>0]")
     private int concurrent = 10;
 
+    @CommandLine.Option(names = "-w", description = "the max number of parts requested but not yet received, 0 for twice the concurrent requests [>=0]")
+    private int inFlight = 0;
+
+    @CommandLine.Option(names = "--result-buffer", description = "the max number of received parts waiting to be drawn [>0]")
+    private int resultBuffer = 16;
+
+    @CommandLine.Option(names = "--colour-threads", description = "the number of threads colourizing parts onto the canvas, the number of cores if 0 [>=0]")
+    private int colourThreads = 0;
+
     @CommandLine.Option(names = "-d", description = "the size of each sub part [>100]")
     private int divisions = 1000;
 
     @CommandLine.Option(names = "-s", description = "max steps per pixel [>0]")
     private int steps = 256*4;
 
+    @CommandLine.Option(names = "--autotune", description = "adapt the concurrent requests per endpoint, starting at -c, to throttling and timeouts, and the part size, starting at -d, to the response time per pixel")
+    private boolean autotune;
+
+    @CommandLine.Option(names = "--autotune-max", description = "the max number of concurrent requests per endpoint with --autotune [>0]")
+    private int autotuneMax = 64;
+
+    @CommandLine.Option(names = "--autotune-part-time", description = "the response time in milliseconds that the part size is tuned for with --autotune [>0]")
+    private long autotunePartTime = 2000;
+
+    @CommandLine.Option(names = "--retries", description = "the number of times a failed request is retried [>=0]")
+    private int retries = 2;
+
+    @CommandLine.Option(names = "--retry-backoff", description = "milliseconds before the first retry, doubled for each retry and randomized [>=0]")
+    private long retryBackoff = 200;
+
+    @CommandLine.Option(names = "--deadline", description = "milliseconds before a request is failed and retried, 0 for no deadline [>=0]")
+    private long deadline = 0;
+
+    @CommandLine.Option(names = "--hedge", description = "send a duplicate request when a request is slower than 95% of the requests so far and use the first answer")
+    private boolean hedge;
+
+    @CommandLine.Option(names = "--retry-budget", description = "retries and duplicate requests are at most this fraction of the requests [>=0.0]")
+    private double retryBudget = 0.1;
+
+    @CommandLine.Option(names = "--transport", description = "the http client requests are sent with, okhttp or one added to the classpath [okhttp, http2]")
+    @NonNull
+    private String transport = "okhttp";
+
+    @CommandLine.Option(names = "-b", converter = BackendType.Converter.class, description = "the backend calculating the parts [remote, local, hybrid, workers]")
+    @NonNull
+    private BackendType backend = BackendType.REMOTE;
+
+    @CommandLine.Option(names = "--palette", converter = PaletteType.Converter.class, description = "the colours of the image [grey, smooth, histogram]")
+    @NonNull
+    private PaletteType palette = PaletteType.GREY;
+
+    @CommandLine.Option(names = "--local-pixels", description = "parts with at most this many pixels are calculated locally by the hybrid backend [>=0]")
+    private long localPixels = 250 * 250;
+
+    @CommandLine.Option(names = "--mirror", description = "only request one side of views spanning the real axis and mirror the other")
+    private boolean mirror;
+
+    @CommandLine.Option(names = "--mariani-silver", description = "only request the borders of regions and fill uniform regions, regions with a side of at most this many pixels are requested whole, 0 to disable [0, >=3]")
+    private int marianiSilver = 0;
+
+    @CommandLine.Option(names = "--progressive", paramLabel = "prefix", description = "render at 1/8 and 1/4 resolution first, writing previews to <prefix>-8.png and <prefix>-4.png, then the parts with most detail first")
+    private String progressive;
+
+    @CommandLine.Option(names = "--lpt", description = "request the parts with the most predicted iterations first, predicted from a 1/16 resolution probe or the progressive passes")
+    private boolean lpt;
+
+    @CommandLine.Option(names = "--cache", description = "directory where calculated parts are cached, no cache if not set")
+    private File cache;
+
+    @CommandLine.Option(names = "--cache-size", description = "max size of the cache in megabytes [>0]")
+    private long cacheSize = 1024;
+
+    @CommandLine.Option(names = "--canvas-file", description = "draw on a memory-mapped file instead of the heap, for canvases larger than the heap")
+    private File canvasFile;
+
+    @CommandLine.Option(names = "--tiles", description = "write a pyramid of png tiles, <tiles>/z/x/y.png, instead of one png to stdout")
+    private File tiles;
+
+    @CommandLine.Option(names = "--tile-size", description = "the width and height of the png tiles [>0]")
+    private int tileSize = 256;
+
+    @CommandLine.Option(names = "--metrics", description = "file where request latencies and counters are written when done, in the prometheus text format if the name ends with .prom, otherwise json")
+    private File metrics;
+
+    @CommandLine.Option(names = "--checkpoint", description = "file where the parts that are done are appended, so that the render can be resumed")
+    private File checkpoint;
+
+    @CommandLine.Option(names = "--resume", description = "continue the render in --checkpoint, only requesting the parts that are not done")
+    private boolean resume;
+
+    @CommandLine.Option(names = "--listen", description = "the port workers connect to with -b workers, 0 for any free port [0 ... 65535]")
+    private int listen = 7070;
+
+    @CommandLine.Option(names = "--lease", description = "seconds a worker has to return a part before it is handed to another worker [>0]")
+    private int lease = 60;
+
+    @CommandLine.Option(names = "--deepen", description = "checkpoint of the same render with fewer max steps, only the tiles with pixels that reached them are requested again")
+    private File deepen;
+
     @CommandLine.Parameters(index = "0", paramLabel = "min_c_re", arity = "1", description = "min_c_re [-2.0 ... 2.0]")
     private double mincre;
 
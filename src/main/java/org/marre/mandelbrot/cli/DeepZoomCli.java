@@ -0,0 +1,83 @@
+package org.marre.mandelbrot.cli;
+
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.deep.DeepView;
+import org.marre.mandelbrot.deep.PerturbationRenderer;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders a view deeper than doubles reach with perturbation, on the local machine, and writes it as
+ * a png to stdout.
+ */
+public final class DeepZoomCli {
+    private static final Logger LOG = LoggerFactory.getLogger(DeepZoomCli.class);
+
+    /**
+     * Rows compressed together in the png.
+     */
+    private static final int BAND_HEIGHT = 64;
+
+    public static void main(String ... args) {
+        DeepZoomOptions params = parseArguments(args);
+
+        long start = System.currentTimeMillis();
+
+        DeepView view = createView(params);
+        int threads = params.getThreads() > 0 ? params.getThreads() : Runtime.getRuntime().availableProcessors();
+        PerturbationRenderer renderer = PerturbationRenderer.create(threads);
+
+        LOG.info("Rendering with pixels {} apart, reference orbits in {} digits", view.getPixelSize(), view.mathContext().getPrecision());
+        int[] pixels = renderer.render(view);
+
+        ImageCanvas canvas = Canvas.create(view.getSize(), params.getPalette().create(params.getSteps()));
+        canvas.draw(new Position(0, 0), view.getSize(), pixels);
+
+        try (OutputStream os = new BufferedOutputStream(System.out)) {
+            StreamingPngWriter.write(os, canvas, BAND_HEIGHT);
+        } catch (IOException e) {
+            LOG.error("Failed to write the png", e);
+            System.exit(1);
+        }
+
+        LOG.info("Perturbation : {} references, {} pixels left glitched", renderer.getReferences(), renderer.getGlitchedPixels());
+        LOG.info("Done in {} ms!", System.currentTimeMillis() - start);
+
+        System.exit(0);
+    }
+
+    private static DeepView createView(DeepZoomOptions params) {
+        try {
+            return DeepView.create(
+                    params.getCenterre(),
+                    params.getCenterim(),
+                    params.getSpan() / params.getWidth(),
+                    new Dimension(params.getWidth(), params.getHeight()),
+                    params.getSteps());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            CommandLine.usage(new DeepZoomOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static DeepZoomOptions parseArguments(String ... args) {
+        try {
+            return CommandLine.populateCommand(new DeepZoomOptions(), args);
+        } catch (CommandLine.ParameterException pe) {
+            System.err.println(pe.getMessage());
+            CommandLine.usage(new DeepZoomOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+}
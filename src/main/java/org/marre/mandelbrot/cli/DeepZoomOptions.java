@@ -0,0 +1,36 @@
+package org.marre.mandelbrot.cli;
+
+import lombok.Data;
+import lombok.NonNull;
+import picocli.CommandLine;
+
+import java.math.BigDecimal;
+
+@Data
+@CommandLine.Command(showDefaultValues = true, description = "Mandelbrot deep zoom, calculated locally")
+final class DeepZoomOptions {
+    @CommandLine.Option(names = "-s", description = "max steps per pixel [>0]")
+    private int steps = 256*4;
+
+    @CommandLine.Option(names = "--threads", description = "the number of threads calculating pixels, the number of cores if 0 [>=0]")
+    private int threads = 0;
+
+    @CommandLine.Option(names = "--palette", converter = PaletteType.Converter.class, description = "the colours of the image [grey, smooth, histogram]")
+    @NonNull
+    private PaletteType palette = PaletteType.GREY;
+
+    @CommandLine.Parameters(index = "0", paramLabel = "center_re", arity = "1", description = "center_re, in any number of digits [-2.0 ... 2.0]")
+    private BigDecimal centerre;
+
+    @CommandLine.Parameters(index = "1", paramLabel = "center_im", arity = "1", description = "center_im, in any number of digits [-2.0 ... 2.0]")
+    private BigDecimal centerim;
+
+    @CommandLine.Parameters(index = "2", paramLabel = "span", arity = "1", description = "width along the real axis [>0.0]")
+    private double span;
+
+    @CommandLine.Parameters(index = "3", paramLabel = "x", arity = "1", description = "canvas width in pixels [>0]")
+    private int width;
+
+    @CommandLine.Parameters(index = "4", paramLabel = "y", arity = "1", description = "canvas height in pixels [>0]")
+    private int height;
+}
@@ -0,0 +1,44 @@
+package org.marre.mandelbrot.cli;
+
+import org.marre.mandelbrot.render.Palette;
+import picocli.CommandLine;
+
+import java.util.Locale;
+
+/**
+ * The palettes that can be selected from the command line.
+ */
+enum PaletteType {
+    /**
+     * Iterations modulo 256 as grey.
+     */
+    GREY,
+
+    /**
+     * A repeating colour gradient.
+     */
+    SMOOTH,
+
+    /**
+     * The colour gradient, histogram equalized over the whole image.
+     */
+    HISTOGRAM;
+
+    Palette create(int maxSteps) {
+        switch (this) {
+            case SMOOTH:
+                return Palette.smooth(maxSteps);
+            case HISTOGRAM:
+                return Palette.histogram(maxSteps);
+            default:
+                return Palette.grey();
+        }
+    }
+
+    static final class Converter implements CommandLine.ITypeConverter<PaletteType> {
+        @Override
+        public PaletteType convert(String value) {
+            return PaletteType.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.marre.mandelbrot.cli;
+
+import lombok.Value;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.render.Canvas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a canvas as an RGB png while it is being drawn.
+ *
+ * The canvas is divided in bands of rows. When every pixel of a band has been drawn, the band is
+ * filtered and deflated on the executor, independently of the other bands. Every band but the last
+ * ends with a sync flush, so the compressed bands can be concatenated into one zlib stream. The Adler32
+ * checksums of the bands are combined in order. Bands are written to the output as IDAT chunks in
+ * order, as soon as all bands before them are written, so little is left to do when the last part
+ * arrives.
+ *
+ * Rows use the Sub filter, which only looks at the row itself, so that a band doesn't depend on the
+ * band above.
+ */
+public final class StreamingPngWriter {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    private static final int FILTER_SUB = 1;
+
+    /**
+     * zlib header for deflate with a 32k window and the default compression level.
+     */
+    private static final byte[] ZLIB_HEADER = { 0x78, (byte) 0x9c };
+
+    private static final int ADLER_BASE = 65521;
+
+    private final OutputStream out;
+    private final Canvas canvas;
+    private final Dimension size;
+    private final int bandHeight;
+    private final int level;
+    private final Executor executor;
+
+    /**
+     * Pixels drawn in each band.
+     */
+    private final AtomicLongArray drawn;
+
+    /**
+     * 1 for the bands that have been submitted for compression.
+     */
+    private final AtomicIntegerArray submitted;
+
+    private final CompletableFuture<Band>[] bands;
+
+    // Guarded by this
+    private int written;
+    private long adler = 1;
+    private IOException failure;
+
+    @SuppressWarnings("unchecked")
+    private StreamingPngWriter(OutputStream out, Canvas canvas, int bandHeight, int level, Executor executor) {
+        this.out = out;
+        this.canvas = canvas;
+        this.size = canvas.getSize();
+        this.bandHeight = bandHeight;
+        this.level = level;
+        this.executor = executor;
+
+        int bandCount = (size.getHeight() + bandHeight - 1) / bandHeight;
+        this.drawn = new AtomicLongArray(bandCount);
+        this.submitted = new AtomicIntegerArray(bandCount);
+        this.bands = new CompletableFuture[bandCount];
+        for (int band = 0; band < bandCount; band++) {
+            bands[band] = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Starts a png of the canvas and writes the header.
+     *
+     * @param bandHeight the number of rows compressed together
+     */
+    public static StreamingPngWriter start(OutputStream out, Canvas canvas, int bandHeight) throws IOException {
+        return start(out, canvas, bandHeight, Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool());
+    }
+
+    public static StreamingPngWriter start(OutputStream out, Canvas canvas, int bandHeight, int level, Executor executor) throws IOException {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("bandHeight must be a positive integer. [" + bandHeight + "]");
+        }
+
+        StreamingPngWriter writer = new StreamingPngWriter(out, canvas, bandHeight, level, executor);
+        writer.writeHeader();
+        return writer;
+    }
+
+    /**
+     * Writes a whole canvas that has already been drawn.
+     */
+    public static void write(OutputStream out, Canvas canvas, int bandHeight) throws IOException {
+        start(out, canvas, bandHeight).finish();
+    }
+
+    /**
+     * Tells the writer that width pixels of row y have been drawn. Every pixel must be drawn once.
+     */
+    public void drawn(int y, int width) {
+        int band = y / bandHeight;
+        long pixels = (long) size.getWidth() * bandRows(band);
+
+        if (drawn.addAndGet(band, width) >= pixels) {
+            compress(band);
+        }
+    }
+
+    /**
+     * Compresses the bands that haven't been completely drawn, writes the rest of the png and flushes
+     * the output.
+     */
+    public void finish() throws IOException {
+        for (int band = 0; band < bands.length; band++) {
+            compress(band);
+        }
+
+        try {
+            CompletableFuture.allOf(bands).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing png");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress png", e.getCause());
+        }
+
+        synchronized (this) {
+            // The threads that compressed the last bands may not have written them yet
+            writeReady();
+            if (failure != null) {
+                throw failure;
+            }
+
+            writeChunk("IEND", new byte[0], 0, 0);
+            out.flush();
+        }
+    }
+
+    private int bandRows(int band) {
+        return Math.min(bandHeight, size.getHeight() - band * bandHeight);
+    }
+
+    private void compress(int band) {
+        if (!submitted.compareAndSet(band, 0, 1)) {
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> compressBand(band), executor)
+                .whenComplete((compressed, err) -> {
+                    if (err != null) {
+                        bands[band].completeExceptionally(err);
+                    } else {
+                        bands[band].complete(compressed);
+                        writeReady();
+                    }
+                });
+    }
+
+    private Band compressBand(int band) {
+        int width = size.getWidth();
+        int rows = bandRows(band);
+        int rowBytes = 1 + 3 * width;
+
+        byte[] raw = new byte[rowBytes * rows];
+        int[] rgb = new int[width];
+        for (int row = 0; row < rows; row++) {
+            canvas.getRow(band * bandHeight + row, 0, rgb, 0, width);
+            filterSub(rgb, raw, row * rowBytes);
+        }
+
+        Adler32 adler32 = new Adler32();
+        adler32.update(raw, 0, raw.length);
+
+        boolean last = band == bands.length - 1;
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(raw);
+            if (last) {
+                deflater.finish();
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (true) {
+                int n = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, n);
+                if (last ? deflater.finished() : n < buffer.length) {
+                    break;
+                }
+            }
+
+            return new Band(compressed.toByteArray(), adler32.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the IDAT chunks of the bands that are ready and have all bands before them written.
+     */
+    private synchronized void writeReady() {
+        try {
+            while (written < bands.length && bands[written].isDone() && !bands[written].isCompletedExceptionally()) {
+                Band band = bands[written].join();
+                adler = combineAdler32(adler, band.adler, band.rawLength);
+
+                ByteArrayOutputStream data = new ByteArrayOutputStream(band.compressed.length + 6);
+                if (written == 0) {
+                    data.write(ZLIB_HEADER);
+                }
+                data.write(band.compressed);
+                if (written == bands.length - 1) {
+                    new DataOutputStream(data).writeInt((int) adler);
+                }
+
+                writeChunk("IDAT", data.toByteArray(), 0, data.size());
+                written++;
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream(13);
+        DataOutputStream data = new DataOutputStream(ihdr);
+        data.writeInt(size.getWidth());
+        data.writeInt(size.getHeight());
+        data.writeByte(8); // bit depth
+        data.writeByte(2); // RGB
+        data.writeByte(0); // deflate
+        data.writeByte(0); // adaptive filtering
+        data.writeByte(0); // no interlace
+
+        synchronized (this) {
+            out.write(SIGNATURE);
+            writeChunk("IHDR", ihdr.toByteArray(), 0, ihdr.size());
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+
+        DataOutputStream chunk = new DataOutputStream(out);
+        chunk.writeInt(length);
+        chunk.write(typeBytes);
+        chunk.write(data, offset, length);
+        chunk.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes the filter byte and the row, each byte as the difference to the same channel of the pixel
+     * to the left.
+     */
+    static void filterSub(int[] rgb, byte[] raw, int offset) {
+        raw[offset] = FILTER_SUB;
+
+        int previous = 0;
+        int i = offset + 1;
+        for (int pixel : rgb) {
+            raw[i++] = (byte) ((pixel >>> 16) - (previous >>> 16));
+            raw[i++] = (byte) ((pixel >>> 8) - (previous >>> 8));
+            raw[i++] = (byte) (pixel - previous);
+            previous = pixel;
+        }
+    }
+
+    /**
+     * The Adler32 of two concatenated blocks, from the checksums of each block, as adler32_combine in
+     * zlib.
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - remainder;
+
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= (ADLER_BASE << 1)) {
+            sum2 -= (ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+
+        return sum1 | (sum2 << 16);
+    }
+
+    @Value
+    private static class Band {
+        private final byte[] compressed;
+        private final long adler;
+        private final long rawLength;
+    }
+}
@@ -0,0 +1,80 @@
+package org.marre.mandelbrot.cli;
+
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.cache.CachingMandelbrotBackend;
+import org.marre.mandelbrot.cache.TileCache;
+import org.marre.mandelbrot.server.TileGrid;
+import org.marre.mandelbrot.server.TileServer;
+import org.marre.mandelbrot.server.TileService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Serves mandelbrot tiles to web viewers until killed.
+ */
+public final class TileServerCli {
+    private static final Logger LOG = LoggerFactory.getLogger(TileServerCli.class);
+
+    public static void main(String ... args) {
+        TileServerOptions params = parseArguments(args);
+
+        if (params.getPalette() == PaletteType.HISTOGRAM) {
+            // The colours would change from tile to tile as the histogram grows
+            System.err.println("--palette histogram can't be used for tiles");
+            CommandLine.usage(new TileServerOptions(), System.err);
+            System.exit(1);
+        }
+
+        if (params.getBackend() == BackendType.WORKERS) {
+            System.err.println("-b workers can only be used by the Cli");
+            CommandLine.usage(new TileServerOptions(), System.err);
+            System.exit(1);
+        }
+
+        // One client for all viewers, so the concurrency limit holds for the whole server
+        MandelbrotBackend remoteBackend = params.getBackend() != BackendType.LOCAL
+                ? MandelbrotClient.create(params.getUrl().toASCIIString(), Math.max(1, params.getConcurrent()))
+                : null;
+        MandelbrotBackend mandelbrotBackend = Cli.createBackend(params.getBackend(), remoteBackend, params.getLocalPixels());
+        TileCache tileCache = params.getCache() != null ? Cli.createTileCache(params.getCache(), params.getCacheSize()) : null;
+        MandelbrotBackend cachedBackend = tileCache != null
+                ? CachingMandelbrotBackend.create(mandelbrotBackend, tileCache)
+                : mandelbrotBackend;
+
+        TileService tileService = TileService.create(
+                cachedBackend,
+                TileGrid.create(Math.max(1, params.getTileSize()), params.getSteps()),
+                params.getPalette().create(params.getSteps()),
+                Math.max(0, params.getMemory()) * 1024 * 1024);
+
+        try {
+            TileServer.create(tileService, new InetSocketAddress(params.getPort()), Math.max(1, params.getThreads())).start();
+        } catch (IOException e) {
+            LOG.error("Failed to listen on port {}", params.getPort(), e);
+            System.exit(1);
+        }
+
+        // Just to keep this thread from terminating
+        try {
+            Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            // Ok. Fine interrupted...
+        }
+    }
+
+    private static TileServerOptions parseArguments(String ... args) {
+        try {
+            return CommandLine.populateCommand(new TileServerOptions(), args);
+        } catch (CommandLine.ParameterException pe) {
+            System.err.println(pe.getMessage());
+            CommandLine.usage(new TileServerOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.marre.mandelbrot.cli;
+
+import lombok.Data;
+import lombok.NonNull;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.net.URI;
+
+@Data
+@CommandLine.Command(showDefaultValues = true, description = "Mandelbrot tile server, GET /z/x/y.png")
+final class TileServerOptions {
+    @CommandLine.Option(names = "-u", type = URI.class, description = "the mandelbrot server url")
+    @NonNull
+    private URI url = CliOptions.DEFAULT_URL;
+
+    @CommandLine.Option(names = "-c", description = "the number of concurrent requests to the mandelbrot server [>0]")
+    private int concurrent = 10;
+
+    @CommandLine.Option(names = "-s", description = "max steps per pixel [>0]")
+    private int steps = 256*4;
+
+    @CommandLine.Option(names = "-b", converter = BackendType.Converter.class, description = "the backend calculating the tiles [remote, local, hybrid]")
+    @NonNull
+    private BackendType backend = BackendType.REMOTE;
+
+    @CommandLine.Option(names = "--local-pixels", description = "tiles with at most this many pixels are calculated locally by the hybrid backend [>=0]")
+    private long localPixels = 250 * 250;
+
+    @CommandLine.Option(names = "--palette", converter = PaletteType.Converter.class, description = "the colours of the tiles [grey, smooth]")
+    @NonNull
+    private PaletteType palette = PaletteType.SMOOTH;
+
+    @CommandLine.Option(names = "--tile-size", description = "the width and height of the tiles [>0]")
+    private int tileSize = 256;
+
+    @CommandLine.Option(names = "--port", description = "the port to listen on [>=0]")
+    private int port = 8080;
+
+    @CommandLine.Option(names = "--threads", description = "the number of threads parsing http requests and sending responses [>0]")
+    private int threads = 4;
+
+    @CommandLine.Option(names = "--memory", description = "max size of the png tiles kept in memory in megabytes [>=0]")
+    private long memory = 256;
+
+    @CommandLine.Option(names = "--cache", description = "directory where calculated tiles are cached, no cache if not set")
+    private File cache;
+
+    @CommandLine.Option(names = "--cache-size", description = "max size of the cache in megabytes [>0]")
+    private long cacheSize = 1024;
+}
@@ -0,0 +1,97 @@
+package org.marre.mandelbrot.cli;
+
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.distributed.Worker;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Calculates parts for a Cli started with -b workers, until the render is done.
+ */
+public final class WorkerCli {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerCli.class);
+
+    public static void main(String ... args) {
+        WorkerOptions params = parseArguments(args);
+
+        if (params.getBackend() == BackendType.WORKERS) {
+            System.err.println("-b workers can only be used by the Cli");
+            CommandLine.usage(new WorkerOptions(), System.err);
+            System.exit(1);
+        }
+
+        InetSocketAddress coordinator = parseAddress(params.getCoordinator());
+        if (coordinator == null) {
+            System.err.println("Not a host:port " + params.getCoordinator());
+            CommandLine.usage(new WorkerOptions(), System.err);
+            System.exit(1);
+        }
+
+        if (params.getBackend().usesServer() && !MandelbrotClient.transports().contains(params.getTransport())) {
+            System.err.println("Unknown --transport " + params.getTransport() + ", not one of " + MandelbrotClient.transports());
+            CommandLine.usage(new WorkerOptions(), System.err);
+            System.exit(1);
+        }
+
+        int maxConcurrency = Math.max(1, params.getConcurrent());
+        MandelbrotBackend remoteBackend = params.getBackend().usesServer()
+                ? MandelbrotClient.create(params.getTransport(), params.getUrl().toASCIIString(), maxConcurrency, MandelbrotMetrics.NOOP)
+                : null;
+        MandelbrotBackend mandelbrotBackend = Cli.createBackend(params.getBackend(), remoteBackend, params.getLocalPixels());
+
+        int inFlight = params.getInFlight() > 0
+                ? params.getInFlight()
+                : params.getBackend() == BackendType.LOCAL ? Runtime.getRuntime().availableProcessors() : 2 * maxConcurrency;
+        Worker worker = Worker.create(mandelbrotBackend, Math.max(1, params.getBatch()), inFlight);
+
+        worker.work(coordinator).subscribe(
+                () -> {
+                    LOG.info("Done! {} parts calculated, {} failed", worker.getDone(), worker.getFailed());
+                    System.exit(0);
+                },
+                err -> {
+                    LOG.error("Failed to work for the coordinator {}", coordinator, err);
+                    System.exit(1);
+                });
+
+        // Just to keep this thread from terminating
+        try {
+            Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            // Ok. Fine interrupted...
+        }
+    }
+
+    /**
+     * Parses host:port, null if it isn't.
+     */
+    static InetSocketAddress parseAddress(String hostAndPort) {
+        try {
+            URI uri = new URI("worker://" + hostAndPort);
+            if (uri.getHost() == null || uri.getPort() < 0 || uri.getPath() == null || !uri.getPath().isEmpty()) {
+                return null;
+            }
+            return new InetSocketAddress(uri.getHost(), uri.getPort());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static WorkerOptions parseArguments(String ... args) {
+        try {
+            return CommandLine.populateCommand(new WorkerOptions(), args);
+        } catch (CommandLine.ParameterException pe) {
+            System.err.println(pe.getMessage());
+            CommandLine.usage(new WorkerOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.marre.mandelbrot.cli;
+
+import lombok.Data;
+import lombok.NonNull;
+import picocli.CommandLine;
+
+import java.net.URI;
+
+@Data
+@CommandLine.Command(showDefaultValues = true, description = "Mandelbrot worker, calculates parts for a Cli started with -b workers")
+final class WorkerOptions {
+    @CommandLine.Option(names = "-u", type = URI.class, description = "the mandelbrot server url")
+    @NonNull
+    private URI url = CliOptions.DEFAULT_URL;
+
+    @CommandLine.Option(names = "-c", description = "the number of concurrent requests to the mandelbrot server [>0]")
+    private int concurrent = 10;
+
+    @CommandLine.Option(names = "-b", converter = BackendType.Converter.class, description = "the backend calculating the parts [remote, local, hybrid]")
+    @NonNull
+    private BackendType backend = BackendType.REMOTE;
+
+    @CommandLine.Option(names = "--local-pixels", description = "parts with at most this many pixels are calculated locally by the hybrid backend [>=0]")
+    private long localPixels = 250 * 250;
+
+    @CommandLine.Option(names = "--transport", description = "the http client requests are sent with, okhttp or one added to the classpath [okhttp, http2]")
+    @NonNull
+    private String transport = "okhttp";
+
+    @CommandLine.Option(names = "--batch", description = "the number of parts pulled from the coordinator at a time [>0]")
+    private int batch = 4;
+
+    @CommandLine.Option(names = "-w", description = "the number of parts calculated at a time, 0 for the cores with -b local and twice the concurrent requests otherwise [>=0]")
+    private int inFlight = 0;
+
+    @CommandLine.Parameters(index = "0", paramLabel = "coordinator", arity = "1", description = "host:port of the Cli coordinating the workers")
+    private String coordinator;
+}
@@ -0,0 +1,137 @@
+package org.marre.mandelbrot.cli;
+
+import io.reactivex.schedulers.Schedulers;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotClient;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.marre.mandelbrot.render.Palette;
+import org.marre.mandelbrot.zoom.ZoomPath;
+import org.marre.mandelbrot.zoom.ZoomRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Renders a zoom sequence, one png per frame.
+ */
+public final class ZoomCli {
+    private static final Logger LOG = LoggerFactory.getLogger(ZoomCli.class);
+
+    /**
+     * Rows compressed together in each frame.
+     */
+    private static final int FRAME_BAND_HEIGHT = 64;
+
+    public static void main(String ... args) {
+        ZoomOptions params = parseArguments(args);
+
+        if (params.getBackend() == BackendType.WORKERS) {
+            System.err.println("-b workers can only be used by the Cli");
+            CommandLine.usage(new ZoomOptions(), System.err);
+            System.exit(1);
+        }
+
+        long start = System.currentTimeMillis();
+
+        ZoomPath path = createPath(params);
+        int maxConcurrency = Math.max(1, params.getConcurrent());
+        int inFlight = Math.max(1, params.getInFlight() > 0 ? params.getInFlight() : 2 * maxConcurrency);
+
+        MandelbrotBackend remoteBackend = params.getBackend().usesServer()
+                ? MandelbrotClient.create(params.getUrl().toASCIIString(), maxConcurrency)
+                : null;
+        MandelbrotBackend mandelbrotBackend = Cli.createBackend(params.getBackend(), remoteBackend, params.getLocalPixels());
+
+        // One palette for all frames, so a histogram palette keeps its colours through the zoom
+        Palette palette = params.getPalette().create(params.getSteps());
+        ZoomRenderer zoomRenderer = ZoomRenderer.create(
+                mandelbrotBackend, path, palette, Math.max(1, params.getDivisions()), inFlight, params.isMirror());
+
+        File output = params.getOutput();
+        if (!output.isDirectory() && !output.mkdirs()) {
+            LOG.error("Failed to create the directory {}", output);
+            System.exit(1);
+        }
+
+        LOG.info("Rendering {} frames from {} keyframes", path.getFrames(), path.keyframes().size());
+
+        // Frames are drawn and written on their own thread while the next keyframe is requested
+        ImageCanvas frameCanvas = Canvas.create(path.getFrameSize(), palette);
+        zoomRenderer.keyframes()
+                .observeOn(Schedulers.single(), false, 1)
+                .subscribe(
+                        keyframe -> {
+                            for (int frame = 0; frame < path.getFrames(); frame++) {
+                                if (path.keyframeOf(frame) == keyframe.getIndex()) {
+                                    zoomRenderer.drawFrame(keyframe, frame, frameCanvas);
+                                    writeFrame(frameCanvas, new File(output, String.format("frame-%05d.png", frame)));
+                                }
+                            }
+                            LOG.info("Keyframe {} done", keyframe.getIndex());
+                        },
+                        err -> {
+                            LOG.error("Failed to render the zoom", err);
+                            System.exit(1);
+                        },
+                        () -> {
+                            long framePixels = (long) path.getFrames() * path.getFrameSize().getWidth() * path.getFrameSize().getHeight();
+                            LOG.info("Zoom : {} pixels requested for {} pixels of frames", zoomRenderer.getRequestedPixels(), framePixels);
+                            LOG.info("Done in {} ms!", System.currentTimeMillis() - start);
+
+                            System.exit(0);
+                        });
+
+        // Just to keep this thread from terminating
+        try {
+            Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            // Ok. Fine interrupted...
+        }
+    }
+
+    private static ZoomPath createPath(ZoomOptions params) {
+        try {
+            return ZoomPath.create(
+                    new Complex(params.getCenterre(), params.getCenterim()),
+                    params.getSpan(),
+                    params.getZoom(),
+                    params.getFrames(),
+                    new Dimension(params.getWidth(), params.getHeight()),
+                    params.getSteps());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            CommandLine.usage(new ZoomOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void writeFrame(ImageCanvas canvas, File file) {
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            StreamingPngWriter.write(os, canvas, FRAME_BAND_HEIGHT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ZoomOptions parseArguments(String ... args) {
+        try {
+            return CommandLine.populateCommand(new ZoomOptions(), args);
+        } catch (CommandLine.ParameterException pe) {
+            System.err.println(pe.getMessage());
+            CommandLine.usage(new ZoomOptions(), System.err);
+            System.exit(1);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.marre.mandelbrot.cli;
+
+import lombok.Data;
+import lombok.NonNull;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.net.URI;
+
+@Data
+@CommandLine.Command(showDefaultValues = true, description = "Mandelbrot zoom sequence")
+final class ZoomOptions {
+    @CommandLine.Option(names = "-u", type = URI.class, description = "the mandelbrot server url")
+    @NonNull
+    private URI url = CliOptions.DEFAULT_URL;
+
+    @CommandLine.Option(names = "-c", description = "the number of concurrent requests [>0]")
+    private int concurrent = 10;
+
+    @CommandLine.Option(names = "-w", description = "the max number of parts requested but not yet received per keyframe, 0 for twice the concurrent requests [>=0]")
+    private int inFlight = 0;
+
+    @CommandLine.Option(names = "-d", description = "the size of each sub part [>100]")
+    private int divisions = 1000;
+
+    @CommandLine.Option(names = "-s", description = "max steps per pixel [>0]")
+    private int steps = 256*4;
+
+    @CommandLine.Option(names = "-b", converter = BackendType.Converter.class, description = "the backend calculating the parts [remote, local, hybrid]")
+    @NonNull
+    private BackendType backend = BackendType.REMOTE;
+
+    @CommandLine.Option(names = "--local-pixels", description = "parts with at most this many pixels are calculated locally by the hybrid backend [>=0]")
+    private long localPixels = 250 * 250;
+
+    @CommandLine.Option(names = "--palette", converter = PaletteType.Converter.class, description = "the colours of the frames [grey, smooth, histogram]")
+    @NonNull
+    private PaletteType palette = PaletteType.GREY;
+
+    @CommandLine.Option(names = "--mirror", description = "only request one side of keyframes spanning the real axis and mirror the other")
+    private boolean mirror;
+
+    @CommandLine.Option(names = "-o", description = "directory where the frames are written, as frame-00000.png and on")
+    @NonNull
+    private File output = new File("frames");
+
+    @CommandLine.Parameters(index = "0", paramLabel = "center_re", arity = "1", description = "center_re [-2.0 ... 2.0]")
+    private double centerre;
+
+    @CommandLine.Parameters(index = "1", paramLabel = "center_im", arity = "1", description = "center_im [-2.0 ... 2.0]")
+    private double centerim;
+
+    @CommandLine.Parameters(index = "2", paramLabel = "span", arity = "1", description = "width along the real axis of the first frame [>0.0]")
+    private double span;
+
+    @CommandLine.Parameters(index = "3", paramLabel = "zoom", arity = "1", description = "zoom factor from one frame to the next [>=1.0]")
+    private double zoom;
+
+    @CommandLine.Parameters(index = "4", paramLabel = "frames", arity = "1", description = "number of frames [>0]")
+    private int frames;
+
+    @CommandLine.Parameters(index = "5", paramLabel = "x", arity = "1", description = "frame width in pixels [>0]")
+    private int width;
+
+    @CommandLine.Parameters(index = "6", paramLabel = "y", arity = "1", description = "frame height in pixels [>0]")
+    private int height;
+}
@@ -0,0 +1,84 @@
+package org.marre.mandelbrot.deep;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+import org.marre.mandelbrot.Dimension;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * A view of the mandelbrot set whose center is stored in arbitrary precision.
+ *
+ * Pixel (x, y) is at center + ((x - width / 2) * pixelSize, (y - height / 2) * pixelSize), like the
+ * pixels of a {@link org.marre.mandelbrot.MandelbrotPart}. Only the pixel size is a double, so views
+ * can be zoomed until it underflows instead of until the pixel coordinates no longer differ.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DeepView {
+    /**
+     * The smallest pixel size, far enough from the smallest double for the deltas between pixels.
+     */
+    static final double MIN_PIXEL_SIZE = 1e-290;
+
+    /**
+     * Digits kept beyond the digits of the pixel size and the canvas.
+     */
+    private static final int GUARD_DIGITS = 8;
+
+    @NonNull
+    private final BigDecimal centerRe;
+
+    @NonNull
+    private final BigDecimal centerIm;
+
+    /**
+     * Width and height of a pixel.
+     */
+    private final double pixelSize;
+
+    @NonNull
+    private final Dimension size;
+
+    private final int maxSteps;
+
+    public static DeepView create(BigDecimal centerRe, BigDecimal centerIm, double pixelSize, Dimension size, int maxSteps) {
+        if (!(pixelSize >= MIN_PIXEL_SIZE) || Double.isInfinite(pixelSize)) {
+            throw new IllegalArgumentException("pixelSize must be at least " + MIN_PIXEL_SIZE + ". [" + pixelSize + "]");
+        }
+        if (size.getWidth() < 1 || size.getHeight() < 1) {
+            throw new IllegalArgumentException("size must be at least 1x1. [" + size + "]");
+        }
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be a positive integer. [" + maxSteps + "]");
+        }
+
+        return new DeepView(centerRe, centerIm, pixelSize, size, maxSteps);
+    }
+
+    /**
+     * The precision the reference orbits are calculated in, enough to tell the pixels apart.
+     */
+    public MathContext mathContext() {
+        int pixelDigits = (int) Math.ceil(-Math.log10(pixelSize));
+        int canvasDigits = (int) Math.ceil(Math.log10(Math.max(size.getWidth(), size.getHeight())));
+        return new MathContext(Math.max(MathContext.DECIMAL64.getPrecision(), pixelDigits + canvasDigits + GUARD_DIGITS));
+    }
+
+    /**
+     * The real part of the pixels in column x.
+     */
+    public BigDecimal re(double x) {
+        return centerRe.add(new BigDecimal((x - size.getWidth() / 2.0) * pixelSize), mathContext());
+    }
+
+    /**
+     * The imaginary part of the pixels in row y.
+     */
+    public BigDecimal im(double y) {
+        return centerIm.add(new BigDecimal((y - size.getHeight() / 2.0) * pixelSize), mathContext());
+    }
+}
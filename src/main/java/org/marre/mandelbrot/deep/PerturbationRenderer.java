@@ -0,0 +1,155 @@
+package org.marre.mandelbrot.deep;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.MathContext;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Renders deep views on the local machine with perturbation.
+ *
+ * One reference orbit at the center of the view is calculated in arbitrary precision and every pixel
+ * is iterated in doubles relative to it, so a pixel costs about as much as in a double precision
+ * render. Pixels that glitch are iterated again relative to a new reference among them, until none
+ * are left or {@link #MAX_REFERENCES} references have been used.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class PerturbationRenderer {
+    private static final Logger LOG = LoggerFactory.getLogger(PerturbationRenderer.class);
+
+    /**
+     * Max references per view. Pixels still glitched after that keep the iteration of their glitch.
+     */
+    private static final int MAX_REFERENCES = 64;
+
+    @NonNull
+    private final ForkJoinPool pool;
+
+    @NonNull
+    private final AtomicLong references;
+
+    @NonNull
+    private final AtomicLong glitchedPixels;
+
+    /**
+     * Creates a renderer using all available cores.
+     */
+    public static PerturbationRenderer create() {
+        return create(Runtime.getRuntime().availableProcessors());
+    }
+
+    public static PerturbationRenderer create(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be a positive integer. [" + parallelism + "]");
+        }
+
+        return new PerturbationRenderer(new ForkJoinPool(parallelism), new AtomicLong(), new AtomicLong());
+    }
+
+    /**
+     * Calculates the iterations of every pixel in the view, blocking until done.
+     *
+     * @return width * height iterations in row order
+     */
+    public int[] render(DeepView view) {
+        int width = view.getSize().getWidth();
+        int height = view.getSize().getHeight();
+        double pixelSize = view.getPixelSize();
+        MathContext mathContext = view.mathContext();
+        int[] pixels = new int[width * height];
+
+        // The first reference is the center of the view
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+        ReferenceOrbit center = ReferenceOrbit.create(view.getCenterRe(), view.getCenterIm(), view.getMaxSteps(), mathContext);
+        references.incrementAndGet();
+        run(() -> IntStream.range(0, height).parallel().forEach(y -> {
+            double dcim = (y - centerY) * pixelSize;
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = center.iterations((x - centerX) * pixelSize, dcim);
+            }
+        }));
+
+        int[] glitched = glitched(pixels, IntStream.range(0, pixels.length));
+        int viewReferences = 1;
+        while (glitched.length > 0 && viewReferences < MAX_REFERENCES) {
+            // The glitched pixel closest to the centroid of the glitched pixels, inside one of the glitches
+            int reference = closestToCentroid(glitched, width);
+            int referenceX = reference % width;
+            int referenceY = reference / width;
+
+            ReferenceOrbit orbit = ReferenceOrbit.create(view.re(referenceX), view.im(referenceY), view.getMaxSteps(), mathContext);
+            references.incrementAndGet();
+            viewReferences++;
+
+            int[] retried = glitched;
+            run(() -> IntStream.of(retried).parallel().forEach(pixel -> pixels[pixel] = orbit.iterations(
+                    (pixel % width - referenceX) * pixelSize,
+                    (pixel / width - referenceY) * pixelSize)));
+
+            glitched = glitched(pixels, IntStream.of(glitched));
+        }
+
+        if (glitched.length > 0) {
+            LOG.warn("{} pixels still glitched after {} references", glitched.length, viewReferences);
+            glitchedPixels.addAndGet(glitched.length);
+            for (int pixel : glitched) {
+                pixels[pixel] = ReferenceOrbit.glitchIteration(pixels[pixel]);
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Reference orbits calculated so far.
+     */
+    public long getReferences() {
+        return references.get();
+    }
+
+    /**
+     * Pixels left glitched so far.
+     */
+    public long getGlitchedPixels() {
+        return glitchedPixels.get();
+    }
+
+    private void run(Runnable task) {
+        pool.submit(task).join();
+    }
+
+    private static int[] glitched(int[] pixels, IntStream candidates) {
+        return candidates.filter(pixel -> pixels[pixel] < 0).toArray();
+    }
+
+    private static int closestToCentroid(int[] glitched, int width) {
+        double sumX = 0.0;
+        double sumY = 0.0;
+        for (int pixel : glitched) {
+            sumX += pixel % width;
+            sumY += pixel / width;
+        }
+        double centroidX = sumX / glitched.length;
+        double centroidY = sumY / glitched.length;
+
+        int closest = glitched[0];
+        double closestDistance = Double.MAX_VALUE;
+        for (int pixel : glitched) {
+            double dx = pixel % width - centroidX;
+            double dy = pixel / width - centroidY;
+            double distance = dx * dx + dy * dy;
+            if (distance < closestDistance) {
+                closest = pixel;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+}
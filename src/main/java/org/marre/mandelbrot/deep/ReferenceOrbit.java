@@ -0,0 +1,121 @@
+package org.marre.mandelbrot.deep;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The orbit of one point, calculated in arbitrary precision and stored as doubles, that the pixels
+ * around it are iterated relative to.
+ *
+ * A pixel at c + dc is iterated as its distance dz from the reference, dz' = 2 * Z * dz + dz^2 + dc,
+ * which stays accurate in doubles however small dc is. It fails when the pixel passes much closer to
+ * 0 than the reference, where the precision of dz is lost, or outlives a reference that escaped. Such
+ * pixels are glitched and must be iterated again relative to another reference.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class ReferenceOrbit {
+    /**
+     * A pixel is glitched when |Z + dz|^2 falls below this fraction of |Z|^2.
+     */
+    private static final double GLITCH_TOLERANCE = 1e-6;
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    @NonNull
+    private final double[] re;
+
+    @NonNull
+    private final double[] im;
+
+    @NonNull
+    private final double[] tolerance;
+
+    /**
+     * Number of iterations in the orbit, up to and including the one that escaped.
+     */
+    private final int length;
+
+    private final int maxSteps;
+
+    static ReferenceOrbit create(BigDecimal cre, BigDecimal cim, int maxSteps, MathContext mathContext) {
+        double[] re = new double[maxSteps];
+        double[] im = new double[maxSteps];
+        double[] tolerance = new double[maxSteps];
+
+        BigDecimal zre = BigDecimal.ZERO;
+        BigDecimal zim = BigDecimal.ZERO;
+        int length = 0;
+        while (length < maxSteps) {
+            re[length] = zre.doubleValue();
+            im[length] = zim.doubleValue();
+            double magnitude = re[length] * re[length] + im[length] * im[length];
+            tolerance[length] = GLITCH_TOLERANCE * magnitude;
+            length++;
+
+            if (magnitude > 4.0) {
+                break;
+            }
+
+            BigDecimal zre2 = zre.multiply(zre, mathContext);
+            BigDecimal zim2 = zim.multiply(zim, mathContext);
+            zim = zre.multiply(zim, mathContext).multiply(TWO).add(cim, mathContext);
+            zre = zre2.subtract(zim2, mathContext).add(cre, mathContext);
+        }
+
+        return new ReferenceOrbit(re, im, tolerance, length, maxSteps);
+    }
+
+    /**
+     * The iterations of the pixel at dc from the reference, the same as for
+     * {@link org.marre.mandelbrot.local.LocalMandelbrotBackend}, or {@link #glitched(int)} of the
+     * iteration where it was found to be glitched.
+     */
+    int iterations(double dcre, double dcim) {
+        double dzre = 0.0;
+        double dzim = 0.0;
+
+        for (int n = 0; n < maxSteps; n++) {
+            if (n == length) {
+                // The reference escaped before the pixel
+                return glitched(n);
+            }
+
+            double zre = re[n] + dzre;
+            double zim = im[n] + dzim;
+            double magnitude = zre * zre + zim * zim;
+            if (magnitude > 4.0) {
+                return n;
+            }
+            if (magnitude < tolerance[n]) {
+                return glitched(n);
+            }
+
+            // 2 * Z * dz + dz^2 == (Z + z) * dz
+            double sumRe = re[n] + zre;
+            double sumIm = im[n] + zim;
+            double nextDzre = sumRe * dzre - sumIm * dzim + dcre;
+            dzim = sumRe * dzim + sumIm * dzre + dcim;
+            dzre = nextDzre;
+        }
+
+        return maxSteps;
+    }
+
+    /**
+     * Glitched iterations are negative, -1 for a glitch in iteration 0 and on.
+     */
+    static int glitched(int iteration) {
+        return -1 - iteration;
+    }
+
+    /**
+     * The iteration where a pixel was found to be glitched.
+     */
+    static int glitchIteration(int glitched) {
+        return -1 - glitched;
+    }
+}
@@ -0,0 +1,524 @@
+package org.marre.mandelbrot.distributed;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotBinaryCodec;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A backend that hands the parts out to worker processes, see {@link Worker}.
+ *
+ * Parts wait in a queue until a worker pulls them. A pulled part is leased to the worker, if the
+ * result isn't back before the lease expires, or the worker disconnects or fails the part, the part
+ * goes back to the front of the queue for another worker. A part that has been leased
+ * {@link #MAX_ATTEMPTS} times fails. The first result for a part wins, late results of expired leases
+ * are dropped.
+ *
+ * Each worker has a thread of its own reading its messages. Parts are sent to a worker by whichever
+ * thread makes them available, a new part, a pull or an expired lease.
+ */
+public final class Coordinator implements MandelbrotBackend, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(Coordinator.class);
+
+    /**
+     * The number of times a part is leased before it fails.
+     */
+    static final int MAX_ATTEMPTS = 4;
+
+    private final ServerSocket serverSocket;
+    private final long leaseMillis;
+    private final ScheduledExecutorService sweeper;
+    private final AtomicInteger workerCount = new AtomicInteger();
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private final Deque<Task> pending = new ArrayDeque<>();
+    private final Deque<Pull> pulls = new ArrayDeque<>();
+    private final Map<Long, Lease> leases = new HashMap<>();
+    private final Set<Connection> connections = new LinkedHashSet<>();
+    private long nextLease;
+    private boolean closed;
+
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong redelivered = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    private Coordinator(ServerSocket serverSocket, long leaseMillis) {
+        this.serverSocket = serverSocket;
+        this.leaseMillis = leaseMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "coordinator-leases"));
+    }
+
+    /**
+     * Listens for workers on the address, they are accepted once the coordinator is started.
+     *
+     * @param leaseMillis how long a worker has to return a part before it is handed to another
+     */
+    public static Coordinator create(InetSocketAddress address, long leaseMillis) throws IOException {
+        if (leaseMillis < 1) {
+            throw new IllegalArgumentException("leaseMillis must be a positive integer. [" + leaseMillis + "]");
+        }
+
+        ServerSocket serverSocket = new ServerSocket();
+        try {
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(address);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        return new Coordinator(serverSocket, leaseMillis);
+    }
+
+    /**
+     * Starts accepting workers and expiring leases.
+     */
+    public void start() {
+        daemon(this::accept, "coordinator-accept").start();
+
+        long period = Math.max(1, leaseMillis / 4);
+        sweeper.scheduleWithFixedDelay(this::expire, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return Single.create(emitter -> {
+            Task task = new Task(mandelbrotPart, emitter);
+            synchronized (lock) {
+                if (closed) {
+                    emitter.onError(new IOException("Coordinator is closed"));
+                    return;
+                }
+                pending.addLast(task);
+            }
+            emitter.setCancellable(() -> cancel(task));
+            dispatch();
+        });
+    }
+
+    /**
+     * Stops accepting workers, tells the waiting workers that there is nothing more to do and fails the
+     * parts that are not done.
+     */
+    @Override
+    public void close() throws IOException {
+        List<Pull> waiting;
+        List<Task> failed = new ArrayList<>();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            waiting = new ArrayList<>(pulls);
+            pulls.clear();
+
+            failed.addAll(pending);
+            pending.clear();
+            for (Lease lease : leases.values()) {
+                failed.add(lease.task);
+            }
+            leases.clear();
+            failed.removeIf(task -> task.done);
+            failed.forEach(task -> task.done = true);
+        }
+
+        sweeper.shutdownNow();
+        for (Task task : failed) {
+            task.emitter.tryOnError(new IOException("Coordinator closed before " + task.part + " was done"));
+        }
+        for (Pull pull : waiting) {
+            pull.connection.send(new ArrayList<>());
+        }
+
+        serverSocket.close();
+    }
+
+    /**
+     * The number of workers connected.
+     */
+    public int getWorkers() {
+        return workerCount.get();
+    }
+
+    /**
+     * The number of times parts have been leased, including the parts leased again.
+     */
+    public long getLeased() {
+        return leased.get();
+    }
+
+    /**
+     * The number of times parts have been put back for another worker.
+     */
+    public long getRedelivered() {
+        return redelivered.get();
+    }
+
+    /**
+     * The number of parts done.
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    private void accept() {
+        int index = 0;
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                daemon(() -> serve(connection), "coordinator-worker-" + index++).start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warn("Failed to accept a worker", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the messages of a worker until it disconnects.
+     */
+    private void serve(Connection connection) {
+        try (Socket socket = connection.socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readInt() != WorkProtocol.MAGIC) {
+                LOG.warn("Not a worker {}", connection);
+                return;
+            }
+
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                connections.add(connection);
+            }
+            LOG.info("Worker {} connected, {} workers", connection, workerCount.incrementAndGet());
+
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case WorkProtocol.PULL:
+                        pull(connection, in.readInt());
+                        break;
+                    case WorkProtocol.RESULT:
+                        long lease = in.readLong();
+                        int length = in.readInt();
+                        if (length < 0 || length > WorkProtocol.MAX_RESULT_SIZE) {
+                            throw new IOException("Result too large [" + length + "]");
+                        }
+                        byte[] payload = new byte[length];
+                        in.readFully(payload);
+                        complete(lease, payload);
+                        break;
+                    case WorkProtocol.FAILURE:
+                        long failedLease = in.readLong();
+                        String message = in.readUTF();
+                        retry(connection, failedLease, message);
+                        break;
+                    default:
+                        throw new IOException("Unknown message [" + type + "]");
+                }
+            }
+        } catch (EOFException e) {
+            LOG.info("Worker {} disconnected", connection);
+        } catch (IOException e) {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+            }
+            LOG.warn("Lost worker {}", connection, e);
+        } finally {
+            disconnected(connection);
+        }
+    }
+
+    private void pull(Connection connection, int parts) {
+        if (parts < 1) {
+            connection.send(new ArrayList<>());
+            return;
+        }
+
+        synchronized (lock) {
+            if (closed) {
+                connection.send(new ArrayList<>());
+                return;
+            }
+            pulls.addLast(new Pull(connection, parts));
+        }
+        dispatch();
+    }
+
+    /**
+     * Leases waiting parts to waiting pulls, each pull is answered with as many parts as are waiting,
+     * at most as many as it asked for.
+     */
+    private void dispatch() {
+        List<Pull> answered = new ArrayList<>();
+        List<List<Lease>> batches = new ArrayList<>();
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            while (!pending.isEmpty() && !pulls.isEmpty()) {
+                Pull pull = pulls.removeFirst();
+                List<Lease> batch = new ArrayList<>();
+                while (batch.size() < pull.parts && !pending.isEmpty()) {
+                    Task task = pending.removeFirst();
+                    task.attempts++;
+                    Lease lease = new Lease(nextLease++, task, pull.connection, now + leaseMillis);
+                    leases.put(lease.id, lease);
+                    batch.add(lease);
+                }
+                leased.addAndGet(batch.size());
+
+                answered.add(pull);
+                batches.add(batch);
+            }
+        }
+
+        // Sent outside the lock, so a slow worker doesn't hold up the others
+        for (int i = 0; i < answered.size(); i++) {
+            answered.get(i).connection.send(batches.get(i));
+        }
+    }
+
+    private void complete(long id, byte[] payload) {
+        Lease lease;
+        synchronized (lock) {
+            lease = leases.get(id);
+        }
+        if (lease == null) {
+            LOG.debug("Dropping the result of lease {}, it expired", id);
+            return;
+        }
+
+        MandelbrotPart part = lease.task.part;
+        int[] pixels;
+        try {
+            pixels = MandelbrotBinaryCodec.decode(new ByteArrayInputStream(payload), part.getSize().getWidth(), part.getSize().getHeight());
+        } catch (IOException | RuntimeException e) {
+            retry(lease.connection, id, "corrupt result " + e);
+            return;
+        }
+
+        synchronized (lock) {
+            if (leases.remove(id) == null || lease.task.done) {
+                return;
+            }
+            lease.task.done = true;
+        }
+        completed.incrementAndGet();
+        lease.task.emitter.onSuccess(new MandelbrotResult(part, pixels));
+    }
+
+    /**
+     * Puts the part of a lease back in the queue, or fails it after {@link #MAX_ATTEMPTS}.
+     */
+    private void retry(Connection connection, long id, String reason) {
+        Task failed;
+        synchronized (lock) {
+            Lease lease = leases.remove(id);
+            if (lease == null) {
+                return;
+            }
+            LOG.warn("Lease {} of {} failed on {} : {}", id, lease.task.part, connection, reason);
+            failed = requeue(lease.task);
+        }
+
+        fail(failed);
+        dispatch();
+    }
+
+    private void expire() {
+        List<Task> failed = new ArrayList<>();
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            Iterator<Lease> iterator = leases.values().iterator();
+            while (iterator.hasNext()) {
+                Lease lease = iterator.next();
+                if (lease.deadline <= now) {
+                    LOG.warn("Lease {} of {} expired on {}", lease.id, lease.task.part, lease.connection);
+                    iterator.remove();
+                    failed.add(requeue(lease.task));
+                }
+            }
+        }
+
+        failed.forEach(this::fail);
+        dispatch();
+    }
+
+    private void disconnected(Connection connection) {
+        List<Task> failed = new ArrayList<>();
+        synchronized (lock) {
+            if (!connections.remove(connection)) {
+                return;
+            }
+            pulls.removeIf(pull -> pull.connection == connection);
+
+            Iterator<Lease> iterator = leases.values().iterator();
+            while (iterator.hasNext()) {
+                Lease lease = iterator.next();
+                if (lease.connection == connection) {
+                    iterator.remove();
+                    failed.add(requeue(lease.task));
+                }
+            }
+        }
+        workerCount.decrementAndGet();
+
+        failed.forEach(this::fail);
+        dispatch();
+    }
+
+    /**
+     * Puts the task first in the queue, it has already waited. Returns the task if it has been tried
+     * too many times, it is up to the caller to fail it outside the lock.
+     */
+    private Task requeue(Task task) {
+        if (task.done) {
+            return null;
+        }
+
+        if (task.attempts >= MAX_ATTEMPTS) {
+            task.done = true;
+            return task;
+        }
+
+        redelivered.incrementAndGet();
+        pending.addFirst(task);
+        return null;
+    }
+
+    private void fail(Task task) {
+        if (task != null) {
+            task.emitter.tryOnError(new IOException("Failed " + task.part + " after " + task.attempts + " attempts"));
+        }
+    }
+
+    private void cancel(Task task) {
+        synchronized (lock) {
+            task.done = true;
+            pending.remove(task);
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Task {
+        private final MandelbrotPart part;
+        private final SingleEmitter<MandelbrotResult> emitter;
+
+        // Guarded by the lock of the coordinator
+        private int attempts;
+        private boolean done;
+
+        private Task(MandelbrotPart part, SingleEmitter<MandelbrotResult> emitter) {
+            this.part = part;
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class Lease {
+        private final long id;
+        private final Task task;
+        private final Connection connection;
+        private final long deadline;
+
+        private Lease(long id, Task task, Connection connection, long deadline) {
+            this.id = id;
+            this.task = task;
+            this.connection = connection;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Pull {
+        private final Connection connection;
+        private final int parts;
+
+        private Pull(Connection connection, int parts) {
+            this.connection = connection;
+            this.parts = parts;
+        }
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Sends the parts, a worker that can't be written to is disconnected and its leases expire.
+         */
+        private void send(List<Lease> batch) {
+            synchronized (out) {
+                try {
+                    out.writeByte(WorkProtocol.PARTS);
+                    out.writeInt(batch.size());
+                    for (Lease lease : batch) {
+                        WorkProtocol.writePart(out, lease.id, lease.task.part);
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    LOG.warn("Failed to send parts to {}", this, e);
+                    try {
+                        socket.close();
+                    } catch (IOException ignored) {
+                        // Already broken
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(socket.getRemoteSocketAddress());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.marre.mandelbrot.distributed;
+
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The messages between a coordinator and its workers, over a plain socket.
+ *
+ * <pre>
+ * hello    worker      magic
+ * pull     worker      asks for up to n parts, answered by one parts message
+ * parts    coordinator lease and part for each part, none when the coordinator is closing
+ * result   worker      lease and the pixels encoded with the binary codec
+ * failure  worker      lease and why the part failed
+ * </pre>
+ *
+ * A part is sent as its size, corners and max steps, the worker doesn't need to know where it is on
+ * the canvas. The lease identifies the part when the result comes back.
+ */
+final class WorkProtocol {
+    static final int MAGIC = 0x4d425731; // MBW1
+
+    static final byte PULL = 1;
+    static final byte PARTS = 2;
+    static final byte RESULT = 3;
+    static final byte FAILURE = 4;
+
+    /**
+     * Results larger than this are not a part of any sane size.
+     */
+    static final int MAX_RESULT_SIZE = 64 * 1024 * 1024;
+
+    private WorkProtocol() {
+    }
+
+    static void writePart(DataOutputStream out, long lease, MandelbrotPart part) throws IOException {
+        out.writeLong(lease);
+        out.writeInt(part.getSize().getWidth());
+        out.writeInt(part.getSize().getHeight());
+        out.writeDouble(part.getMinc().getRe());
+        out.writeDouble(part.getMinc().getIm());
+        out.writeDouble(part.getMaxc().getRe());
+        out.writeDouble(part.getMaxc().getIm());
+        out.writeInt(part.getMaxSteps());
+    }
+
+    static MandelbrotPart readPart(DataInputStream in) throws IOException {
+        Dimension size = new Dimension(in.readInt(), in.readInt());
+        Complex minc = new Complex(in.readDouble(), in.readDouble());
+        Complex maxc = new Complex(in.readDouble(), in.readDouble());
+        return MandelbrotPart.create(size, minc, maxc, in.readInt());
+    }
+}
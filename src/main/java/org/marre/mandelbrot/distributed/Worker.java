@@ -0,0 +1,246 @@
+package org.marre.mandelbrot.distributed;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotBinaryCodec;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calculates parts for a {@link Coordinator} with any backend, locally or on the mandelbrot server.
+ *
+ * The worker pulls a batch of parts when it has room for more, so it has at most inFlight parts in
+ * progress and a batch waiting. The results are sent back as soon as they are done, encoded with
+ * {@link MandelbrotBinaryCodec}. A part that fails is reported to the coordinator, which hands it to
+ * another worker.
+ */
+public final class Worker {
+    private static final Logger LOG = LoggerFactory.getLogger(Worker.class);
+
+    /**
+     * Failure messages are cut to this length, they are only logged.
+     */
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    private final MandelbrotBackend backend;
+    private final int batchSize;
+    private final int inFlight;
+
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private Worker(MandelbrotBackend backend, int batchSize, int inFlight) {
+        this.backend = backend;
+        this.batchSize = batchSize;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * @param batchSize the number of parts pulled at a time
+     * @param inFlight the number of parts calculated at a time
+     */
+    public static Worker create(MandelbrotBackend backend, int batchSize, int inFlight) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be a positive integer. [" + batchSize + "]");
+        }
+        if (inFlight < 1) {
+            throw new IllegalArgumentException("inFlight must be a positive integer. [" + inFlight + "]");
+        }
+
+        return new Worker(backend, batchSize, inFlight);
+    }
+
+    /**
+     * Connects to the coordinator and calculates the parts it hands out, completes when the coordinator
+     * has closed the connection and the parts in progress are done.
+     */
+    public Completable work(InetSocketAddress coordinator) {
+        return Completable.using(() -> Connection.open(coordinator), this::work, Connection::close);
+    }
+
+    /**
+     * The number of parts sent back.
+     */
+    public long getDone() {
+        return done.get();
+    }
+
+    /**
+     * The number of parts that failed.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private Completable work(Connection connection) {
+        // Pulls block, on a thread of their own, until the coordinator has parts or closes
+        return Flowable.<List<Assignment>>generate(emitter -> {
+                    List<Assignment> assignments = connection.pull(batchSize);
+                    if (assignments.isEmpty()) {
+                        emitter.onComplete();
+                    } else {
+                        emitter.onNext(assignments);
+                    }
+                })
+                .subscribeOn(Schedulers.io())
+                .concatMapIterable(assignments -> assignments, 1)
+                .flatMapCompletable(assignment -> backend.mandelbrot(assignment.part)
+                                .doOnSuccess(result -> {
+                                    done.incrementAndGet();
+                                    connection.result(assignment.lease, result);
+                                })
+                                .toCompletable()
+                                .onErrorComplete(err -> {
+                                    LOG.warn("Failed {}", assignment.part, err);
+                                    failed.incrementAndGet();
+                                    connection.failure(assignment.lease, err);
+                                    return true;
+                                }),
+                        false,
+                        inFlight);
+    }
+
+    private static final class Assignment {
+        private final long lease;
+        private final MandelbrotPart part;
+
+        private Assignment(long lease, MandelbrotPart part) {
+            this.lease = lease;
+            this.part = part;
+        }
+    }
+
+    private static final class Connection implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private static Connection open(InetSocketAddress coordinator) throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(coordinator);
+
+                Connection connection = new Connection(socket);
+                synchronized (connection.out) {
+                    connection.out.writeInt(WorkProtocol.MAGIC);
+                    connection.out.flush();
+                }
+                LOG.info("Connected to coordinator {}", coordinator);
+                return connection;
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Asks for parts and waits for them, no parts when the coordinator is done or gone.
+         */
+        private List<Assignment> pull(int parts) throws IOException {
+            try {
+                synchronized (out) {
+                    out.writeByte(WorkProtocol.PULL);
+                    out.writeInt(parts);
+                    out.flush();
+                }
+
+                byte type = in.readByte();
+                if (type != WorkProtocol.PARTS) {
+                    throw new IOException("Unexpected message [" + type + "]");
+                }
+
+                int count = in.readInt();
+                List<Assignment> assignments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    assignments.add(new Assignment(in.readLong(), WorkProtocol.readPart(in)));
+                }
+                return assignments;
+            } catch (EOFException e) {
+                LOG.info("Coordinator closed the connection");
+                return Collections.emptyList();
+            } catch (IOException e) {
+                if (socket.isClosed()) {
+                    return Collections.emptyList();
+                }
+                throw e;
+            }
+        }
+
+        private void result(long lease, MandelbrotResult result) {
+            MandelbrotPart part = result.getMandelbrotPart();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(result.getPixels().length / 4 + 16);
+            try {
+                MandelbrotBinaryCodec.encode(result.getPixels(), part.getSize().getWidth(), part.getSize().getHeight(), bytes);
+
+                synchronized (out) {
+                    out.writeByte(WorkProtocol.RESULT);
+                    out.writeLong(lease);
+                    out.writeInt(bytes.size());
+                    bytes.writeTo(out);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                lost(e);
+            }
+        }
+
+        private void failure(long lease, Throwable err) {
+            try {
+                synchronized (out) {
+                    out.writeByte(WorkProtocol.FAILURE);
+                    out.writeLong(lease);
+                    String message = String.valueOf(err);
+                    out.writeUTF(message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                lost(e);
+            }
+        }
+
+        /**
+         * The coordinator can't be written to, closing the socket ends the pulls and the work.
+         */
+        private void lost(IOException e) {
+            if (!socket.isClosed()) {
+                LOG.warn("Lost the coordinator", e);
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close the connection to the coordinator", e);
+            }
+        }
+    }
+}
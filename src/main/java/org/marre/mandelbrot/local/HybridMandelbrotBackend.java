@@ -0,0 +1,55 @@
+package org.marre.mandelbrot.local;
+
+import io.reactivex.Single;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculates small parts locally and sends larger parts to the remote backend. Parts that fail remotely
+ * are calculated locally instead.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class HybridMandelbrotBackend implements MandelbrotBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(HybridMandelbrotBackend.class);
+
+    @NonNull
+    private final MandelbrotBackend remote;
+
+    @NonNull
+    private final MandelbrotBackend local;
+
+    /**
+     * Parts with at most this many pixels are calculated locally.
+     */
+    private final long maxLocalPixels;
+
+    public static HybridMandelbrotBackend create(MandelbrotBackend remote, MandelbrotBackend local, long maxLocalPixels) {
+        if (maxLocalPixels < 0) {
+            throw new IllegalArgumentException("maxLocalPixels must not be negative. [" + maxLocalPixels + "]");
+        }
+
+        return new HybridMandelbrotBackend(remote, local, maxLocalPixels);
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        Dimension size = mandelbrotPart.getSize();
+
+        if ((long) size.getWidth() * size.getHeight() <= maxLocalPixels) {
+            return local.mandelbrot(mandelbrotPart);
+        }
+
+        return remote.mandelbrot(mandelbrotPart)
+                .onErrorResumeNext(err -> {
+                    LOG.warn("Remote backend failed, calculating locally : {} {}", mandelbrotPart.getOffset(), err.toString());
+                    return local.mandelbrot(mandelbrotPart);
+                });
+    }
+}
@@ -0,0 +1,129 @@
+package org.marre.mandelbrot.local;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Calculates mandelbrot parts on the local machine using a fork-join pool.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class LocalMandelbrotBackend implements MandelbrotBackend {
+    /**
+     * Number of rows below which a task isn't split any further.
+     */
+    private static final int MIN_ROWS_PER_TASK = 4;
+
+    @NonNull
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a backend using all available cores.
+     */
+    public static LocalMandelbrotBackend create() {
+        return create(Runtime.getRuntime().availableProcessors());
+    }
+
+    public static LocalMandelbrotBackend create(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be a positive integer. [" + parallelism + "]");
+        }
+
+        return new LocalMandelbrotBackend(new ForkJoinPool(parallelism));
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return Single.create(emitter -> {
+            Dimension size = mandelbrotPart.getSize();
+            int[] pixels = new int[size.getWidth() * size.getHeight()];
+
+            pool.execute(new RowsTask(null, emitter, mandelbrotPart, pixels, 0, size.getHeight()));
+        });
+    }
+
+    /**
+     * Calculates a range of rows, splitting itself in halves until the range is small enough.
+     *
+     * The root task emits the result when all rows have been calculated.
+     */
+    private static final class RowsTask extends CountedCompleter<Void> {
+        private final SingleEmitter<MandelbrotResult> emitter;
+        private final MandelbrotPart mandelbrotPart;
+        private final int[] pixels;
+        private final int fromRow;
+        private final int toRow;
+
+        RowsTask(
+                RowsTask parent,
+                SingleEmitter<MandelbrotResult> emitter,
+                MandelbrotPart mandelbrotPart,
+                int[] pixels,
+                int fromRow,
+                int toRow) {
+            super(parent);
+            this.emitter = emitter;
+            this.mandelbrotPart = mandelbrotPart;
+            this.pixels = pixels;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        public void compute() {
+            int from = fromRow;
+            int to = toRow;
+
+            while ((to - from) > MIN_ROWS_PER_TASK && !emitter.isDisposed()) {
+                int middle = (from + to) >>> 1;
+                addToPendingCount(1);
+                new RowsTask(this, emitter, mandelbrotPart, pixels, middle, to).fork();
+                to = middle;
+            }
+
+            if (!emitter.isDisposed()) {
+                Dimension size = mandelbrotPart.getSize();
+                Complex minc = mandelbrotPart.getMinc();
+                Complex maxc = mandelbrotPart.getMaxc();
+
+                MandelbrotKernel.rows(
+                        pixels,
+                        size.getWidth(),
+                        from,
+                        to,
+                        minc.getRe(),
+                        minc.getIm(),
+                        (maxc.getRe() - minc.getRe()) / size.getWidth(),
+                        (maxc.getIm() - minc.getIm()) / size.getHeight(),
+                        mandelbrotPart.getMaxSteps());
+            }
+
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (getCompleter() == null) {
+                emitter.onSuccess(new MandelbrotResult(mandelbrotPart, pixels));
+            }
+        }
+
+        @Override
+        public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+            if (getCompleter() == null) {
+                emitter.tryOnError(ex);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.marre.mandelbrot.local;
+
+/**
+ * The escape time algorithm used by the local backends.
+ *
+ * Returns the same iteration counts as the mandelbrot server: the number of iterations performed before
+ * |z| exceeds 2, or maxSteps if the point never escapes.
+ */
+final class MandelbrotKernel {
+    private MandelbrotKernel() {}
+
+    /**
+     * Calculates the iterations for each pixel in a number of rows of a part.
+     *
+     * @param pixels destination in row order, width * height ints
+     */
+    static void rows(
+            int[] pixels,
+            int width,
+            int fromRow,
+            int toRow,
+            double mincre,
+            double mincim,
+            double pixelSizeRe,
+            double pixelSizeIm,
+            int maxSteps) {
+
+        for (int y = fromRow; y < toRow; y++) {
+            double cim = mincim + y * pixelSizeIm;
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[rowStart + x] = iterations(mincre + x * pixelSizeRe, cim, maxSteps);
+            }
+        }
+    }
+
+    static int iterations(double cre, double cim, int maxSteps) {
+        double cim2 = cim * cim;
+
+        // Points inside the main cardioid never escape
+        double q = (cre - 0.25) * (cre - 0.25) + cim2;
+        if (q * (q + (cre - 0.25)) <= 0.25 * cim2) {
+            return maxSteps;
+        }
+
+        // Neither do points inside the period-2 bulb
+        if ((cre + 1.0) * (cre + 1.0) + cim2 <= 0.0625) {
+            return maxSteps;
+        }
+
+        double zre = 0.0;
+        double zim = 0.0;
+        double zre2 = 0.0;
+        double zim2 = 0.0;
+
+        // Brent style periodicity detection. If z returns to an earlier value exactly the orbit is periodic
+        // and the point will never escape.
+        double periodRe = 0.0;
+        double periodIm = 0.0;
+        int periodLength = 8;
+        int periodStep = 0;
+
+        for (int i = 0; i < maxSteps; i++) {
+            if (zre2 + zim2 > 4.0) {
+                return i;
+            }
+
+            zim = 2.0 * zre * zim + cim;
+            zre = zre2 - zim2 + cre;
+            zre2 = zre * zre;
+            zim2 = zim * zim;
+
+            if ((zre == periodRe) && (zim == periodIm)) {
+                return maxSteps;
+            }
+
+            if (++periodStep == periodLength) {
+                periodStep = 0;
+                periodLength <<= 1;
+                periodRe = zre;
+                periodIm = zim;
+            }
+        }
+
+        return maxSteps;
+    }
+}
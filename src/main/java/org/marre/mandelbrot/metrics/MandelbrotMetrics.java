@@ -0,0 +1,66 @@
+package org.marre.mandelbrot.metrics;
+
+/**
+ * Receives measurements from the client and the compositing stage.
+ *
+ * Methods are called from many threads, for every request, and must be cheap. Implementations should
+ * not allocate.
+ */
+public interface MandelbrotMetrics {
+    /**
+     * Records nothing.
+     */
+    MandelbrotMetrics NOOP = new MandelbrotMetrics() {};
+
+    /**
+     * A request has been sent.
+     */
+    default void requestStarted() {}
+
+    /**
+     * A request has finished, successfully or not.
+     */
+    default void requestFinished() {}
+
+    /**
+     * Time from sending a request until the response headers arrived.
+     */
+    default void latency(long nanos) {}
+
+    /**
+     * Size of a response body.
+     */
+    default void bytesReceived(long bytes) {}
+
+    /**
+     * Time reading and decoding a response body.
+     */
+    default void decoded(long nanos) {}
+
+    /**
+     * Time colourizing a result onto the canvas.
+     */
+    default void colourized(long nanos) {}
+
+    /**
+     * Time a result waited before it was colourized.
+     */
+    default void queueWait(long nanos) {}
+
+    /**
+     * A part was requested again, whole or split.
+     */
+    default void retried() {}
+
+    /**
+     * A duplicate request was sent for a slow request.
+     */
+    default void hedged() {}
+
+    /**
+     * A request failed.
+     *
+     * @param httpStatus the http status or 0 if the request failed without a response
+     */
+    default void failed(int httpStatus) {}
+}
@@ -0,0 +1,239 @@
+package org.marre.mandelbrot.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps latency histograms and counters in memory and writes them as JSON or in the Prometheus
+ * text format.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class RecordingMetrics implements MandelbrotMetrics {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    /**
+     * Errors are counted per http status. Anything outside this range, and failures without a
+     * response, are counted as status 0.
+     */
+    private static final int MAX_STATUS = 600;
+
+    @Getter
+    private final Histogram latency;
+    @Getter
+    private final Histogram decode;
+    @Getter
+    private final Histogram colourize;
+    @Getter
+    private final Histogram queueWait;
+
+    private final AtomicLong requests;
+    private final AtomicLong bytes;
+    private final AtomicLong retries;
+    private final AtomicLong hedges;
+    private final AtomicLong inFlight;
+    private final AtomicLong maxInFlight;
+    private final AtomicLongArray errors;
+
+    public static RecordingMetrics create() {
+        return new RecordingMetrics(
+                new Histogram(), new Histogram(), new Histogram(), new Histogram(),
+                new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong(),
+                new AtomicLongArray(MAX_STATUS));
+    }
+
+    @Override
+    public void requestStarted() {
+        requests.incrementAndGet();
+        long current = inFlight.incrementAndGet();
+
+        long currentMax;
+        while (current > (currentMax = maxInFlight.get())) {
+            if (maxInFlight.compareAndSet(currentMax, current)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    @Override
+    public void latency(long nanos) {
+        latency.record(nanos);
+    }
+
+    @Override
+    public void bytesReceived(long bytes) {
+        this.bytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void decoded(long nanos) {
+        decode.record(nanos);
+    }
+
+    @Override
+    public void colourized(long nanos) {
+        colourize.record(nanos);
+    }
+
+    @Override
+    public void queueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    @Override
+    public void retried() {
+        retries.incrementAndGet();
+    }
+
+    @Override
+    public void hedged() {
+        hedges.incrementAndGet();
+    }
+
+    @Override
+    public void failed(int httpStatus) {
+        errors.incrementAndGet((httpStatus > 0 && httpStatus < MAX_STATUS) ? httpStatus : 0);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public long getErrors(int httpStatus) {
+        return errors.get(httpStatus);
+    }
+
+    /**
+     * Writes all metrics as one JSON object. Durations are in milliseconds.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.useDefaultPrettyPrinter();
+
+            generator.writeStartObject();
+            generator.writeNumberField("requests", requests.get());
+            generator.writeNumberField("bytesReceived", bytes.get());
+            generator.writeNumberField("retries", retries.get());
+            generator.writeNumberField("hedges", hedges.get());
+            generator.writeNumberField("inFlight", inFlight.get());
+            generator.writeNumberField("maxInFlight", maxInFlight.get());
+
+            generator.writeObjectFieldStart("errors");
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = errors.get(status);
+                if (count > 0) {
+                    generator.writeNumberField(Integer.toString(status), count);
+                }
+            }
+            generator.writeEndObject();
+
+            writeJson(generator, "latency", latency);
+            writeJson(generator, "decode", decode);
+            writeJson(generator, "colourize", colourize);
+            writeJson(generator, "queueWait", queueWait);
+
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeJson(JsonGenerator generator, String name, Histogram histogram) throws IOException {
+        generator.writeObjectFieldStart(name);
+        generator.writeNumberField("count", histogram.getCount());
+        generator.writeNumberField("sumMs", millis(histogram.getSum()));
+        generator.writeNumberField("maxMs", millis(histogram.getMax()));
+        generator.writeNumberField("p50Ms", millis(histogram.quantile(0.5)));
+        generator.writeNumberField("p90Ms", millis(histogram.quantile(0.9)));
+        generator.writeNumberField("p99Ms", millis(histogram.quantile(0.99)));
+        generator.writeNumberField("p999Ms", millis(histogram.quantile(0.999)));
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format. Durations are in seconds.
+     */
+    public void writePrometheus(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+
+        counter(out, "mandelbrot_requests_total", requests.get());
+        counter(out, "mandelbrot_received_bytes_total", bytes.get());
+        counter(out, "mandelbrot_retries_total", retries.get());
+        counter(out, "mandelbrot_hedges_total", hedges.get());
+
+        out.println("# TYPE mandelbrot_in_flight_requests gauge");
+        out.println("mandelbrot_in_flight_requests " + inFlight.get());
+        out.println("# TYPE mandelbrot_in_flight_requests_max gauge");
+        out.println("mandelbrot_in_flight_requests_max " + maxInFlight.get());
+
+        out.println("# TYPE mandelbrot_errors_total counter");
+        for (int status = 0; status < MAX_STATUS; status++) {
+            long count = errors.get(status);
+            if (count > 0) {
+                out.println("mandelbrot_errors_total{status=\"" + status + "\"} " + count);
+            }
+        }
+
+        summary(out, "mandelbrot_request_latency_seconds", latency);
+        summary(out, "mandelbrot_decode_seconds", decode);
+        summary(out, "mandelbrot_colourize_seconds", colourize);
+        summary(out, "mandelbrot_queue_wait_seconds", queueWait);
+
+        out.flush();
+    }
+
+    private static void counter(PrintWriter out, String name, long value) {
+        out.println("# TYPE " + name + " counter");
+        out.println(name + " " + value);
+    }
+
+    private static void summary(PrintWriter out, String name, Histogram histogram) {
+        out.println("# TYPE " + name + " summary");
+        for (double quantile : QUANTILES) {
+            out.println(name + "{quantile=\"" + quantile + "\"} " + seconds(histogram.quantile(quantile)));
+        }
+        out.println(name + "_sum " + seconds(histogram.getSum()));
+        out.println(name + "_count " + histogram.getCount());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
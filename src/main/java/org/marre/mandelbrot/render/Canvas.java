@@ -0,0 +1,146 @@
+package org.marre.mandelbrot.render;
+
+import lombok.NonNull;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The image the results are drawn on, as rows of ARGB pixels.
+ *
+ * Iterations are coloured with the palette of the canvas. Parts that don't overlap may be drawn by
+ * several threads at once.
+ *
+ * {@link ImageCanvas} keeps the pixels in a {@link java.awt.image.BufferedImage} on the heap,
+ * {@link MappedCanvas} in a memory-mapped file so that canvases larger than the heap, or 2^31 pixels,
+ * can be rendered.
+ */
+public abstract class Canvas implements Closeable {
+    private final Dimension size;
+
+    private final Palette palette;
+
+    Canvas(@NonNull Dimension size, @NonNull Palette palette) {
+        this.size = size;
+        this.palette = palette;
+    }
+
+    /**
+     * A canvas on the heap, in the grey palette.
+     */
+    public static ImageCanvas create(Dimension size) {
+        return create(size, Palette.grey());
+    }
+
+    /**
+     * A canvas on the heap.
+     */
+    public static ImageCanvas create(Dimension size, Palette palette) {
+        return ImageCanvas.create(size, palette);
+    }
+
+    /**
+     * A canvas in a memory-mapped file, in the grey palette. The file is created, or overwritten.
+     */
+    public static MappedCanvas mapped(Path file, Dimension size) throws IOException {
+        return mapped(file, size, Palette.grey());
+    }
+
+    /**
+     * A canvas in a memory-mapped file. The file is created, or overwritten.
+     */
+    public static MappedCanvas mapped(Path file, Dimension size, Palette palette) throws IOException {
+        return MappedCanvas.create(file, size, palette);
+    }
+
+    public Dimension getSize() {
+        return size;
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    /**
+     * Records the result in the palette, colourizes it and draws it at the offset of its part.
+     */
+    public void draw(MandelbrotResult result) {
+        MandelbrotPart part = result.getMandelbrotPart();
+        draw(part.getOffset(), part.getSize(), result.getPixels());
+    }
+
+    /**
+     * Records iterations in the palette, colourizes them and draws them at an offset.
+     *
+     * @param pixelIterations partSize.width * partSize.height iterations in row order
+     */
+    public void draw(Position offset, Dimension partSize, int[] pixelIterations) {
+        palette.record(pixelIterations);
+
+        int[] row = new int[partSize.getWidth()];
+        for (int y = 0; y < partSize.getHeight(); y++) {
+            palette.colourize(pixelIterations, y * partSize.getWidth(), row, 0, row.length);
+            setRow(offset.getY() + y, offset.getX(), row, 0, row.length);
+        }
+    }
+
+    /**
+     * Colourizes a result rendered at 1/scale of the canvas resolution and draws each pixel as a
+     * scale x scale block. The offset of the part is in coarse pixels, origin is where coarse pixel
+     * (0, 0) is drawn on the canvas.
+     */
+    public void drawScaled(MandelbrotResult result, int scale, Position origin) {
+        MandelbrotPart part = result.getMandelbrotPart();
+        Dimension partSize = part.getSize();
+        Position offset = part.getOffset();
+        int[] pixelIterations = result.getPixels();
+
+        int canvasX = origin.getX() + offset.getX() * scale;
+        int width = Math.min(partSize.getWidth() * scale, size.getWidth() - canvasX);
+        int[] row = new int[Math.max(0, width)];
+
+        for (int y = 0; y < partSize.getHeight(); y++) {
+            int canvasY = origin.getY() + (offset.getY() + y) * scale;
+            int rows = Math.min(scale, size.getHeight() - canvasY);
+
+            for (int x = 0; x < width; x++) {
+                row[x] = palette.colour(pixelIterations[y * partSize.getWidth() + x / scale]);
+            }
+
+            for (int r = 0; r < rows; r++) {
+                setRow(canvasY + r, canvasX, row, 0, width);
+            }
+        }
+    }
+
+    /**
+     * Copies width pixels starting at column x from one row to another.
+     */
+    public abstract void copyRow(int fromY, int toY, int x, int width);
+
+    /**
+     * Reads length pixels of row y, starting at column x, into rgb.
+     */
+    public abstract void getRow(int y, int x, int[] rgb, int offset, int length);
+
+    /**
+     * Writes length pixels from rgb into row y, starting at column x.
+     */
+    public abstract void setRow(int y, int x, int[] rgb, int offset, int length);
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    static int packRgb(int r, int g, int b) {
+        return  (0xff000000) |
+                ((r & 0xff) << 16) |
+                ((g & 0xff) << 8)  |
+                ((b & 0xff));
+    }
+}
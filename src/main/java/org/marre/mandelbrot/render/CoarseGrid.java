@@ -0,0 +1,164 @@
+package org.marre.mandelbrot.render;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+/**
+ * The iterations of a part rendered at a fraction of its resolution.
+ *
+ * Coarse pixel (x, y) has the same coordinate as pixel (x * scale, y * scale) of the whole part and
+ * stands for the scale x scale block of pixels starting there.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CoarseGrid {
+    @Getter
+    @NonNull
+    private final MandelbrotPart whole;
+
+    @Getter
+    private final int scale;
+
+    /**
+     * The part that was rendered. Its offset is 0, coarse pixels are relative to the whole part.
+     */
+    @Getter
+    @NonNull
+    private final MandelbrotPart coarsePart;
+
+    @NonNull
+    private final int[] pixels;
+
+    /**
+     * Renders the whole part at 1/scale of its resolution.
+     *
+     * @param partSize the max size of each request
+     * @param inFlight the max number of outstanding requests
+     */
+    public static Single<CoarseGrid> render(MandelbrotBackend mandelbrotBackend, MandelbrotPart whole, int scale, int partSize, int inFlight) {
+        MandelbrotPart coarsePart = coarsePart(whole, scale);
+
+        return Flowable.fromIterable(coarsePart.splitLazily(partSize))
+                .flatMapSingle(mandelbrotBackend::mandelbrot, false, inFlight)
+                .toList()
+                .map(results -> new CoarseGrid(whole, scale, coarsePart, MandelbrotResult.merge(coarsePart, results).getPixels()));
+    }
+
+    static MandelbrotPart coarsePart(MandelbrotPart whole, int scale) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("scale must be a positive integer [" + scale + "]");
+        }
+
+        Dimension size = whole.getSize();
+        int width = (size.getWidth() + scale - 1) / scale;
+        int height = (size.getHeight() + scale - 1) / scale;
+
+        // The last coarse pixel may reach outside the whole part
+        Complex minc = whole.getMinc();
+        Complex maxc = new Complex(
+                minc.getRe() + (double) width * scale * whole.getPixelSizeRe(),
+                minc.getIm() + (double) height * scale * whole.getPixelSizeIm());
+
+        return MandelbrotPart.create(new Dimension(width, height), minc, maxc, whole.getMaxSteps());
+    }
+
+    /**
+     * Draws every coarse pixel as a block on the canvas.
+     */
+    public void drawOn(Canvas canvas) {
+        canvas.drawScaled(new MandelbrotResult(coarsePart, pixels), scale, whole.getOffset());
+    }
+
+    /**
+     * Gives the coarse pixels to the palette as a sample of the iterations of the whole part.
+     */
+    public void sample(Palette palette) {
+        Dimension size = whole.getSize();
+        palette.sample(pixels, (long) size.getWidth() * size.getHeight());
+    }
+
+    /**
+     * The variance of the iterations in the coarse pixels covering a part of the whole part.
+     */
+    public double variance(MandelbrotPart part) {
+        double sum = 0;
+        double sumOfSquares = 0;
+        int count = 0;
+
+        int width = coarsePart.getSize().getWidth();
+        Position from = coarseFrom(part);
+        Position to = coarseTo(part);
+
+        for (int y = from.getY(); y < to.getY(); y++) {
+            for (int x = from.getX(); x < to.getX(); x++) {
+                int pixel = pixels[y * width + x];
+                sum += pixel;
+                sumOfSquares += (double) pixel * pixel;
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        double mean = sum / count;
+        return sumOfSquares / count - mean * mean;
+    }
+
+    /**
+     * The estimated total number of iterations for all pixels of a part of the whole part.
+     */
+    public double iterations(MandelbrotPart part) {
+        long sum = 0;
+        int count = 0;
+
+        int width = coarsePart.getSize().getWidth();
+        Position from = coarseFrom(part);
+        Position to = coarseTo(part);
+
+        for (int y = from.getY(); y < to.getY(); y++) {
+            for (int x = from.getX(); x < to.getX(); x++) {
+                sum += pixels[y * width + x];
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        Dimension size = part.getSize();
+        return (double) sum / count * size.getWidth() * size.getHeight();
+    }
+
+    private Position coarseFrom(MandelbrotPart part) {
+        Position offset = relativeOffset(part);
+        return new Position(offset.getX() / scale, offset.getY() / scale);
+    }
+
+    private Position coarseTo(MandelbrotPart part) {
+        Position offset = relativeOffset(part);
+        Dimension size = part.getSize();
+        Dimension coarseSize = coarsePart.getSize();
+
+        return new Position(
+                Math.min(coarseSize.getWidth(), (offset.getX() + size.getWidth() + scale - 1) / scale),
+                Math.min(coarseSize.getHeight(), (offset.getY() + size.getHeight() + scale - 1) / scale));
+    }
+
+    private Position relativeOffset(MandelbrotPart part) {
+        Position wholeOffset = whole.getOffset();
+        Position offset = part.getOffset();
+        return new Position(offset.getX() - wholeOffset.getX(), offset.getY() - wholeOffset.getY());
+    }
+}
@@ -0,0 +1,161 @@
+package org.marre.mandelbrot.render;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram equalized colours. The position of a pixel in the gradient is the fraction of the pixels
+ * outside the set with fewer iterations, so each colour covers about as many pixels whatever the
+ * view and max steps.
+ *
+ * The histogram covers every result recorded so far, plus a sample of the whole image that stands in
+ * for the pixels that haven't been recorded yet. The sample fades out as the image is recorded, so
+ * the first parts get about the colours of the last ones. The lookup table is rebuilt from the
+ * histogram whenever the number of pixels has grown by {@link #REBUILD_GROWTH}.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class HistogramPalette implements Palette {
+    private static final int BLACK = 0xff000000;
+
+    private static final double REBUILD_GROWTH = 1.25;
+
+    private final int maxSteps;
+
+    /**
+     * The number of pixels per number of iterations, maxSteps and more counted as maxSteps.
+     */
+    @NonNull
+    private final AtomicLongArray histogram;
+
+    @NonNull
+    private final AtomicLong recorded;
+
+    // Guarded by this
+    private long rebuildAt;
+
+    /**
+     * The number of sampled pixels per number of iterations. Guarded by this.
+     */
+    private long[] sample;
+
+    /**
+     * The number of pixels in the image each sampled pixel stands for. Guarded by this.
+     */
+    private double sampleWeight;
+
+    /**
+     * The number of pixels in the image. Guarded by this.
+     */
+    private long sampledPixels;
+
+    private volatile int[] table;
+
+    static HistogramPalette create(int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be a positive integer. [" + maxSteps + "]");
+        }
+
+        // Until something is recorded the iterations are spread linearly
+        int[] table = new int[maxSteps + 1];
+        for (int i = 0; i < maxSteps; i++) {
+            table[i] = LookupPalette.gradient((double) i / maxSteps);
+        }
+        table[maxSteps] = BLACK;
+
+        return new HistogramPalette(maxSteps, new AtomicLongArray(maxSteps + 1), new AtomicLong(), 1, null, 0.0, 0, table);
+    }
+
+    @Override
+    public int colour(int iterations) {
+        return table[Math.min(iterations, maxSteps)];
+    }
+
+    @Override
+    public void colourize(int[] pixelIterations, int from, int[] rgbPixels, int to, int length) {
+        int[] table = this.table;
+        for (int i = 0; i < length; i++) {
+            rgbPixels[to + i] = table[Math.min(pixelIterations[from + i], maxSteps)];
+        }
+    }
+
+    @Override
+    public synchronized void sample(int[] pixelIterations, long pixels) {
+        long[] sample = new long[maxSteps + 1];
+        for (int pixel : pixelIterations) {
+            sample[Math.min(pixel, maxSteps)]++;
+        }
+
+        this.sample = sample;
+        this.sampleWeight = pixelIterations.length > 0 ? (double) pixels / pixelIterations.length : 0.0;
+        this.sampledPixels = pixels;
+        rebuild();
+    }
+
+    @Override
+    public void record(int[] pixelIterations) {
+        if (pixelIterations.length == 0) {
+            return;
+        }
+
+        if (pixelIterations.length >= maxSteps / 4) {
+            // Count locally first, so that each counter is only contended once per result
+            int[] counts = new int[maxSteps + 1];
+            for (int pixel : pixelIterations) {
+                counts[Math.min(pixel, maxSteps)]++;
+            }
+            for (int i = 0; i <= maxSteps; i++) {
+                if (counts[i] != 0) {
+                    histogram.addAndGet(i, counts[i]);
+                }
+            }
+        } else {
+            // Runs of equal pixels are common, so count them as runs
+            int run = Math.min(pixelIterations[0], maxSteps);
+            int runLength = 0;
+            for (int pixel : pixelIterations) {
+                int iterations = Math.min(pixel, maxSteps);
+                if (iterations != run) {
+                    histogram.addAndGet(run, runLength);
+                    run = iterations;
+                    runLength = 0;
+                }
+                runLength++;
+            }
+            histogram.addAndGet(run, runLength);
+        }
+
+        long total = recorded.addAndGet(pixelIterations.length);
+        synchronized (this) {
+            if (total >= rebuildAt) {
+                rebuild();
+                rebuildAt = (long) Math.ceil(recorded.get() * REBUILD_GROWTH);
+            }
+        }
+    }
+
+    private void rebuild() {
+        // The sample stands for the pixels that are left
+        double weight = sample == null ? 0.0 : sampleWeight * Math.max(0.0, 1.0 - (double) recorded.get() / sampledPixels);
+
+        double[] counts = new double[maxSteps];
+        double outside = 0;
+        for (int i = 0; i < maxSteps; i++) {
+            counts[i] = histogram.get(i) + (weight > 0.0 ? sample[i] * weight : 0.0);
+            outside += counts[i];
+        }
+
+        int[] table = new int[maxSteps + 1];
+        double below = 0;
+        for (int i = 0; i < maxSteps; i++) {
+            table[i] = LookupPalette.gradient(outside > 0 ? below / outside : 0.0);
+            below += counts[i];
+        }
+        table[maxSteps] = BLACK;
+
+        this.table = table;
+    }
+}
@@ -0,0 +1,100 @@
+package org.marre.mandelbrot.render;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A canvas backed by a {@link BufferedImage}.
+ *
+ * Results are colourized straight into the raster of the image.
+ */
+public final class ImageCanvas extends Canvas {
+    @Getter
+    private final BufferedImage image;
+
+    private final int[] rgbPixels;
+
+    private ImageCanvas(@NonNull BufferedImage image, @NonNull int[] rgbPixels, Dimension size, Palette palette) {
+        super(size, palette);
+        this.image = image;
+        this.rgbPixels = rgbPixels;
+    }
+
+    public static ImageCanvas create(Dimension size, Palette palette) {
+        BufferedImage image = new BufferedImage(size.getWidth(), size.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int[] rgbPixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        return new ImageCanvas(image, rgbPixels, size, palette);
+    }
+
+    @Override
+    public void draw(MandelbrotResult result) {
+        MandelbrotPart part = result.getMandelbrotPart();
+        Dimension partSize = part.getSize();
+        Position offset = part.getOffset();
+        int[] pixelIterations = result.getPixels();
+        int width = getSize().getWidth();
+        Palette palette = getPalette();
+
+        palette.record(pixelIterations);
+
+        for (int y = 0; y < partSize.getHeight(); y++) {
+            palette.colourize(
+                    pixelIterations,
+                    y * partSize.getWidth(),
+                    rgbPixels,
+                    (offset.getY() + y) * width + offset.getX(),
+                    partSize.getWidth());
+        }
+    }
+
+    @Override
+    public void drawScaled(MandelbrotResult result, int scale, Position origin) {
+        MandelbrotPart part = result.getMandelbrotPart();
+        Dimension partSize = part.getSize();
+        Position offset = part.getOffset();
+        int[] pixelIterations = result.getPixels();
+        Dimension size = getSize();
+        Palette palette = getPalette();
+
+        for (int y = 0; y < partSize.getHeight(); y++) {
+            int canvasY = origin.getY() + (offset.getY() + y) * scale;
+            int rows = Math.min(scale, size.getHeight() - canvasY);
+
+            for (int x = 0; x < partSize.getWidth(); x++) {
+                int canvasX = origin.getX() + (offset.getX() + x) * scale;
+                int columns = Math.min(scale, size.getWidth() - canvasX);
+                int rgb = palette.colour(pixelIterations[y * partSize.getWidth() + x]);
+
+                for (int row = 0; row < rows; row++) {
+                    int start = (canvasY + row) * size.getWidth() + canvasX;
+                    Arrays.fill(rgbPixels, start, start + columns, rgb);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void copyRow(int fromY, int toY, int x, int width) {
+        int canvasWidth = getSize().getWidth();
+        System.arraycopy(rgbPixels, fromY * canvasWidth + x, rgbPixels, toY * canvasWidth + x, width);
+    }
+
+    @Override
+    public void getRow(int y, int x, int[] rgb, int offset, int length) {
+        System.arraycopy(rgbPixels, y * getSize().getWidth() + x, rgb, offset, length);
+    }
+
+    @Override
+    public void setRow(int y, int x, int[] rgb, int offset, int length) {
+        System.arraycopy(rgb, offset, rgbPixels, y * getSize().getWidth() + x, length);
+    }
+}
@@ -0,0 +1,90 @@
+package org.marre.mandelbrot.render;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * A palette that looks the colours up in a table that repeats every table length iterations.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class LookupPalette implements Palette {
+    private static final int BLACK = 0xff000000;
+
+    /**
+     * Positions and colours of the gradient. The last colour is the same as the first, so the gradient
+     * can repeat.
+     */
+    private static final double[] GRADIENT_POSITIONS = { 0.0, 0.16, 0.42, 0.6425, 0.8575, 1.0 };
+    private static final int[] GRADIENT_COLOURS = { 0x000764, 0x206bcb, 0xedffff, 0xffaa00, 0x000200, 0x000764 };
+
+    private static final int CYCLE = 256;
+
+    @NonNull
+    private final int[] table;
+
+    /**
+     * Pixels with at least this many iterations are inside the set.
+     */
+    private final int inside;
+
+    static LookupPalette grey() {
+        int[] table = new int[CYCLE];
+        for (int i = 0; i < CYCLE; i++) {
+            table[i] = Canvas.packRgb(i, i, i);
+        }
+
+        // maxSteps % 256 as any other pixel
+        return new LookupPalette(table, Integer.MAX_VALUE);
+    }
+
+    static LookupPalette smooth(int maxSteps) {
+        int[] table = new int[CYCLE];
+        for (int i = 0; i < CYCLE; i++) {
+            table[i] = gradient((double) i / CYCLE);
+        }
+
+        return new LookupPalette(table, maxSteps);
+    }
+
+    @Override
+    public int colour(int iterations) {
+        return iterations >= inside ? BLACK : table[iterations % table.length];
+    }
+
+    @Override
+    public void colourize(int[] pixelIterations, int from, int[] rgbPixels, int to, int length) {
+        // The table is a power of two long
+        int mask = table.length - 1;
+        for (int i = 0; i < length; i++) {
+            int iterations = pixelIterations[from + i];
+            rgbPixels[to + i] = iterations >= inside ? BLACK : table[iterations & mask];
+        }
+    }
+
+    /**
+     * The colour at position t, 0 to 1, of the gradient, interpolated between the closest colours.
+     */
+    static int gradient(double t) {
+        int i = 1;
+        while (i < GRADIENT_POSITIONS.length - 1 && GRADIENT_POSITIONS[i] < t) {
+            i++;
+        }
+
+        double fraction = (t - GRADIENT_POSITIONS[i - 1]) / (GRADIENT_POSITIONS[i] - GRADIENT_POSITIONS[i - 1]);
+        fraction = Math.max(0.0, Math.min(1.0, fraction));
+
+        int from = GRADIENT_COLOURS[i - 1];
+        int to = GRADIENT_COLOURS[i];
+        return Canvas.packRgb(
+                interpolate(from >>> 16, to >>> 16, fraction),
+                interpolate(from >>> 8, to >>> 8, fraction),
+                interpolate(from, to, fraction));
+    }
+
+    private static int interpolate(int from, int to, double fraction) {
+        from &= 0xff;
+        to &= 0xff;
+        return (int) Math.round(from + (to - from) * fraction);
+    }
+}
@@ -0,0 +1,104 @@
+package org.marre.mandelbrot.render;
+
+import org.marre.mandelbrot.Dimension;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A canvas backed by a memory-mapped file of ARGB ints, row by row.
+ *
+ * A mapping is at most 2 GB, so the file is mapped in chunks of whole rows. The heap only holds the
+ * row being drawn, the operating system pages the file in and out.
+ */
+public final class MappedCanvas extends Canvas {
+    /**
+     * The largest mapping, in bytes.
+     */
+    static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+
+    /**
+     * Each chunk holds rowsPerChunk rows, the last one maybe fewer.
+     */
+    private final IntBuffer[] chunks;
+
+    private final int rowsPerChunk;
+
+    private MappedCanvas(FileChannel channel, IntBuffer[] chunks, int rowsPerChunk, Dimension size, Palette palette) {
+        super(size, palette);
+        this.channel = channel;
+        this.chunks = chunks;
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    public static MappedCanvas create(Path file, Dimension size, Palette palette) throws IOException {
+        return create(file, size, palette, MAX_CHUNK_BYTES);
+    }
+
+    static MappedCanvas create(Path file, Dimension size, Palette palette, long maxChunkBytes) throws IOException {
+        long rowBytes = 4L * size.getWidth();
+        if (rowBytes > maxChunkBytes) {
+            throw new IllegalArgumentException("Canvas too wide to map. [" + size.getWidth() + "]");
+        }
+
+        int rowsPerChunk = (int) Math.min(size.getHeight(), maxChunkBytes / rowBytes);
+        int chunkCount = (size.getHeight() + rowsPerChunk - 1) / rowsPerChunk;
+
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            IntBuffer[] chunks = new IntBuffer[chunkCount];
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int rows = Math.min(rowsPerChunk, size.getHeight() - chunk * rowsPerChunk);
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, chunk * rowsPerChunk * rowBytes, rows * rowBytes)
+                        .order(ByteOrder.nativeOrder())
+                        .asIntBuffer();
+            }
+
+            return new MappedCanvas(channel, chunks, rowsPerChunk, size, palette);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void copyRow(int fromY, int toY, int x, int width) {
+        int[] row = new int[width];
+        getRow(fromY, x, row, 0, width);
+        setRow(toY, x, row, 0, width);
+    }
+
+    @Override
+    public void getRow(int y, int x, int[] rgb, int offset, int length) {
+        // Duplicates have their own position, so rows can be read and written concurrently
+        IntBuffer chunk = chunks[y / rowsPerChunk].duplicate();
+        chunk.position((y % rowsPerChunk) * getSize().getWidth() + x);
+        chunk.get(rgb, offset, length);
+    }
+
+    @Override
+    public void setRow(int y, int x, int[] rgb, int offset, int length) {
+        IntBuffer chunk = chunks[y / rowsPerChunk].duplicate();
+        chunk.position((y % rowsPerChunk) * getSize().getWidth() + x);
+        chunk.put(rgb, offset, length);
+    }
+
+    /**
+     * Closes the file. The mappings are released when they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
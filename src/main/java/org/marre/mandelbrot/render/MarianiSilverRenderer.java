@@ -0,0 +1,144 @@
+package org.marre.mandelbrot.render;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.autotune.LimitedMandelbrotBackend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders a part using the Mariani-Silver algorithm.
+ *
+ * Only the one pixel border of a region is requested, as four thin parts. If every border pixel has the
+ * same number of iterations the interior is filled with that number without being requested, otherwise
+ * the interior is split in four regions that are rendered the same way. Regions where a side is at most
+ * minSize pixels are requested as a whole.
+ *
+ * A part fans out into more and more regions, so the requests of all parts share a bound. Requests above
+ * it wait until an earlier one has been received.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MarianiSilverRenderer {
+    @NonNull
+    private final MandelbrotBackend mandelbrotBackend;
+
+    private final int minSize;
+
+    /**
+     * Number of pixels requested from the backend.
+     */
+    @NonNull
+    private final AtomicLong requestedPixels;
+
+    /**
+     * Number of pixels filled in without being requested.
+     */
+    @NonNull
+    private final AtomicLong filledPixels;
+
+    /**
+     * @param maxRequests the max number of concurrent requests to the backend, over all parts rendered
+     */
+    public static MarianiSilverRenderer create(MandelbrotBackend mandelbrotBackend, int minSize, int maxRequests) {
+        if (minSize < 3) {
+            throw new IllegalArgumentException("minSize must be at least 3 [" + minSize + "]");
+        }
+
+        return new MarianiSilverRenderer(LimitedMandelbrotBackend.fixed(mandelbrotBackend, maxRequests), minSize, new AtomicLong(), new AtomicLong());
+    }
+
+    /**
+     * Renders the part. The results cover the part without overlapping.
+     */
+    public Flowable<MandelbrotResult> render(MandelbrotPart region) {
+        Dimension size = region.getSize();
+        int width = size.getWidth();
+        int height = size.getHeight();
+
+        if ((width <= minSize) || (height <= minSize)) {
+            return request(region).toFlowable();
+        }
+
+        List<Single<MandelbrotResult>> border = Arrays.asList(
+                request(region.subPart(0, 0, width, 1)),
+                request(region.subPart(0, height - 1, width, 1)),
+                request(region.subPart(0, 1, 1, height - 2)),
+                request(region.subPart(width - 1, 1, 1, height - 2)));
+
+        return Single.zip(border, results -> {
+                    List<MandelbrotResult> borderResults = new ArrayList<>(results.length);
+                    for (Object result : results) {
+                        borderResults.add((MandelbrotResult) result);
+                    }
+                    return borderResults;
+                })
+                .flatMapPublisher(borderResults -> Flowable.fromIterable(borderResults)
+                        .concatWith(interior(region.subPart(1, 1, width - 2, height - 2), borderResults)));
+    }
+
+    public long getRequestedPixels() {
+        return requestedPixels.get();
+    }
+
+    public long getFilledPixels() {
+        return filledPixels.get();
+    }
+
+    private Flowable<MandelbrotResult> interior(MandelbrotPart interior, List<MandelbrotResult> borderResults) {
+        int iterations = uniformIterations(borderResults);
+        Dimension size = interior.getSize();
+
+        if (iterations >= 0) {
+            int[] pixels = new int[size.getWidth() * size.getHeight()];
+            Arrays.fill(pixels, iterations);
+            filledPixels.addAndGet(pixels.length);
+
+            return Flowable.just(new MandelbrotResult(interior, pixels));
+        }
+
+        int leftWidth = size.getWidth() / 2;
+        int topHeight = size.getHeight() / 2;
+        int rightWidth = size.getWidth() - leftWidth;
+        int bottomHeight = size.getHeight() - topHeight;
+
+        return Flowable.merge(Arrays.asList(
+                render(interior.subPart(0, 0, leftWidth, topHeight)),
+                render(interior.subPart(leftWidth, 0, rightWidth, topHeight)),
+                render(interior.subPart(0, topHeight, leftWidth, bottomHeight)),
+                render(interior.subPart(leftWidth, topHeight, rightWidth, bottomHeight))));
+    }
+
+    private Single<MandelbrotResult> request(MandelbrotPart mandelbrotPart) {
+        Dimension size = mandelbrotPart.getSize();
+
+        return mandelbrotBackend.mandelbrot(mandelbrotPart)
+                .doOnSuccess(result -> requestedPixels.addAndGet((long) size.getWidth() * size.getHeight()));
+    }
+
+    /**
+     * Returns the number of iterations shared by all border pixels, or -1 if they differ.
+     */
+    private static int uniformIterations(List<MandelbrotResult> borderResults) {
+        int iterations = borderResults.get(0).getPixels()[0];
+
+        for (MandelbrotResult result : borderResults) {
+            for (int pixel : result.getPixels()) {
+                if (pixel != iterations) {
+                    return -1;
+                }
+            }
+        }
+
+        return iterations;
+    }
+}
@@ -0,0 +1,53 @@
+package org.marre.mandelbrot.render;
+
+/**
+ * Maps the number of iterations of a pixel to an ARGB colour.
+ *
+ * Palettes are used by several threads at once, each colourizing its own parts.
+ */
+public interface Palette {
+    int colour(int iterations);
+
+    /**
+     * Colourizes length pixels.
+     */
+    default void colourize(int[] pixelIterations, int from, int[] rgbPixels, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            rgbPixels[to + i] = colour(pixelIterations[from + i]);
+        }
+    }
+
+    /**
+     * Called with the iterations of each result before it is colourized, for palettes that depend on
+     * the distribution of iterations in the whole image.
+     */
+    default void record(int[] pixelIterations) {}
+
+    /**
+     * Called with a sample of the iterations of the whole image, that stands for pixels pixels, before
+     * the results are recorded.
+     */
+    default void sample(int[] pixelIterations, long pixels) {}
+
+    /**
+     * Iterations modulo 256 as grey, the colours of the mandelbrot server.
+     */
+    static Palette grey() {
+        return LookupPalette.grey();
+    }
+
+    /**
+     * A gradient that cycles every 256 iterations, black inside the set.
+     */
+    static Palette smooth(int maxSteps) {
+        return LookupPalette.smooth(maxSteps);
+    }
+
+    /**
+     * The gradient spread over the iterations so that each colour covers about as many pixels,
+     * black inside the set.
+     */
+    static Palette histogram(int maxSteps) {
+        return HistogramPalette.create(maxSteps);
+    }
+}
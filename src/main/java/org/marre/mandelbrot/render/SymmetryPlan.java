@@ -0,0 +1,160 @@
+package org.marre.mandelbrot.render;
+
+import io.reactivex.Flowable;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which rows of a part need to be requested, using that the mandelbrot set is symmetric
+ * about the real axis.
+ *
+ * If the rows of the part are placed so that row y and row mirrorSum - y have conjugate imaginary
+ * coordinates, one of the two mirrored bands is never requested. It is filled in by flipping the rows
+ * of the other band on the canvas.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SymmetryPlan {
+    /**
+     * How far (in pixels) the real axis may be from a pixel row or between two rows.
+     */
+    private static final double TOLERANCE = 1e-6;
+
+    @Getter
+    @NonNull
+    private final MandelbrotPart whole;
+
+    /**
+     * Row y (relative to the whole part) is the mirror of row mirrorSum - y.
+     */
+    private final int mirrorSum;
+
+    /**
+     * First row (relative to the whole part) that is mirrored instead of requested.
+     */
+    @Getter
+    private final int mirroredFrom;
+
+    /**
+     * Number of rows that are mirrored instead of requested. 0 if there is no symmetry.
+     */
+    @Getter
+    private final int mirroredRows;
+
+    /**
+     * A plan that requests every row.
+     */
+    public static SymmetryPlan none(MandelbrotPart whole) {
+        return new SymmetryPlan(whole, 0, 0, 0);
+    }
+
+    /**
+     * A plan that mirrors as many rows as possible.
+     */
+    public static SymmetryPlan create(MandelbrotPart whole) {
+        Complex minc = whole.getMinc();
+        int height = whole.getSize().getHeight();
+
+        // minc.im + y * pixelSizeIm == -(minc.im + (mirrorSum - y) * pixelSizeIm)
+        double exactMirrorSum = -2.0 * minc.getIm() / whole.getPixelSizeIm();
+        long mirrorSum = Math.round(exactMirrorSum);
+
+        if ((Math.abs(exactMirrorSum - mirrorSum) > TOLERANCE) || (mirrorSum <= 0) || (mirrorSum >= 2L * (height - 1))) {
+            return none(whole);
+        }
+
+        int sum = (int) mirrorSum;
+
+        // Rows above the real axis are mirrored from the rows below it. Both bands have the same size.
+        int mirroredFrom = sum / 2 + 1;
+        int mirroredTo = Math.min(height - 1, sum);
+
+        return new SymmetryPlan(whole, sum, mirroredFrom, mirroredTo - mirroredFrom + 1);
+    }
+
+    /**
+     * The regions that must be requested, the whole part or the bands below and above the mirrored
+     * rows.
+     */
+    public List<MandelbrotPart> regions() {
+        List<MandelbrotPart> regions = new ArrayList<>(2);
+        if (mirroredRows == 0) {
+            regions.add(whole);
+            return regions;
+        }
+
+        regions.add(band(0, mirroredFrom));
+
+        int aboveFrom = mirroredFrom + mirroredRows;
+        if (aboveFrom < whole.getSize().getHeight()) {
+            regions.add(band(aboveFrom, whole.getSize().getHeight() - aboveFrom));
+        }
+
+        return regions;
+    }
+
+    /**
+     * The parts that must be requested, at most partSize x partSize pixels.
+     */
+    public Flowable<MandelbrotPart> parts(int partSize) {
+        return Flowable.fromIterable(regions())
+                .concatMap(region -> Flowable.fromIterable(region.splitLazily(partSize)));
+    }
+
+    /**
+     * The number of parts returned by {@link #parts(int)}.
+     */
+    public int partCount(int partSize) {
+        int count = 0;
+        for (MandelbrotPart region : regions()) {
+            count += region.splitCount(partSize);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the mirrored row for a requested row, relative to the whole part, or -1 if the row
+     * isn't mirrored.
+     */
+    public int mirror(int y) {
+        int mirrored = mirrorSum - y;
+        if ((mirroredRows == 0) || (mirrored < mirroredFrom) || (mirrored >= mirroredFrom + mirroredRows)) {
+            return -1;
+        }
+        return mirrored;
+    }
+
+    /**
+     * Fills in the mirrored rows of a drawn part.
+     */
+    public void mirror(Canvas canvas, MandelbrotPart part) {
+        if (mirroredRows == 0) {
+            return;
+        }
+
+        Position wholeOffset = whole.getOffset();
+        Position offset = part.getOffset();
+        Dimension size = part.getSize();
+
+        for (int y = 0; y < size.getHeight(); y++) {
+            int canvasY = offset.getY() + y;
+            int mirrored = mirror(canvasY - wholeOffset.getY());
+            if (mirrored >= 0) {
+                canvas.copyRow(canvasY, wholeOffset.getY() + mirrored, offset.getX(), size.getWidth());
+            }
+        }
+    }
+
+    private MandelbrotPart band(int y, int height) {
+        return whole.subPart(0, y, whole.getSize().getWidth(), height);
+    }
+}
@@ -0,0 +1,173 @@
+package org.marre.mandelbrot.render;
+
+import org.marre.mandelbrot.Dimension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Writes a canvas as a pyramid of png tiles, directory/z/x/y.png.
+ *
+ * The highest level z is the canvas at full resolution. Each level below is half the size of the one
+ * above, made from the tiles of that level, down to level 0 which is a single tile. Only a few tiles
+ * are on the heap at a time, so canvases of any size can be written. The tiles of a level are written
+ * in parallel.
+ */
+public final class TilePyramidWriter {
+    private TilePyramidWriter() {}
+
+    /**
+     * The number of levels, the last one is full resolution and the first one fits in one tile.
+     */
+    public static int levels(Dimension size, int tileSize) {
+        int width = size.getWidth();
+        int height = size.getHeight();
+
+        int levels = 1;
+        while (width > tileSize || height > tileSize) {
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+            levels++;
+        }
+
+        return levels;
+    }
+
+    /**
+     * Writes all tiles and returns how many were written.
+     */
+    public static int write(Canvas canvas, Path directory, int tileSize) throws IOException {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize must be a positive integer. [" + tileSize + "]");
+        }
+
+        int maxLevel = levels(canvas.getSize(), tileSize) - 1;
+        Dimension[] levelSizes = new Dimension[maxLevel + 1];
+        levelSizes[maxLevel] = canvas.getSize();
+        for (int z = maxLevel - 1; z >= 0; z--) {
+            Dimension above = levelSizes[z + 1];
+            levelSizes[z] = new Dimension((above.getWidth() + 1) / 2, (above.getHeight() + 1) / 2);
+        }
+
+        int tiles = 0;
+        for (int z = maxLevel; z >= 0; z--) {
+            int level = z;
+            Dimension levelSize = levelSizes[z];
+            int tilesX = (levelSize.getWidth() + tileSize - 1) / tileSize;
+            int tilesY = (levelSize.getHeight() + tileSize - 1) / tileSize;
+
+            try {
+                IntStream.range(0, tilesX * tilesY).parallel().forEach(tile -> {
+                    int tileX = tile % tilesX;
+                    int tileY = tile / tilesX;
+                    int width = Math.min(tileSize, levelSize.getWidth() - tileX * tileSize);
+                    int height = Math.min(tileSize, levelSize.getHeight() - tileY * tileSize);
+
+                    try {
+                        BufferedImage image = level == maxLevel
+                                ? readCanvas(canvas, tileX * tileSize, tileY * tileSize, width, height)
+                                : downsample(directory, level + 1, tileX, tileY, width, height, tileSize);
+                        writeTile(image, directory, level, tileX, tileY);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            tiles += tilesX * tilesY;
+        }
+
+        return tiles;
+    }
+
+    static Path tile(Path directory, int z, int x, int y) {
+        return directory.resolve(Integer.toString(z)).resolve(Integer.toString(x)).resolve(y + ".png");
+    }
+
+    private static BufferedImage readCanvas(Canvas canvas, int x, int y, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        for (int row = 0; row < height; row++) {
+            canvas.getRow(y + row, x, rgb, row * width, width);
+        }
+
+        return image;
+    }
+
+    /**
+     * Makes a tile from the (up to) four tiles of the level above, averaging 2x2 pixels.
+     */
+    private static BufferedImage downsample(Path directory, int levelAbove, int tileX, int tileY, int width, int height, int tileSize) throws IOException {
+        // The pixels of the level above covered by this tile
+        int sourceWidth = 2 * tileSize;
+        int[] source = new int[sourceWidth * 2 * tileSize];
+        int usedWidth = 0;
+        int usedHeight = 0;
+
+        for (int dy = 0; dy < 2; dy++) {
+            for (int dx = 0; dx < 2; dx++) {
+                File file = tile(directory, levelAbove, 2 * tileX + dx, 2 * tileY + dy).toFile();
+                if (!file.exists()) {
+                    continue;
+                }
+
+                BufferedImage child = ImageIO.read(file);
+                int childWidth = child.getWidth();
+                int childHeight = child.getHeight();
+                child.getRGB(0, 0, childWidth, childHeight, source, dy * tileSize * sourceWidth + dx * tileSize, sourceWidth);
+
+                usedWidth = Math.max(usedWidth, dx * tileSize + childWidth);
+                usedHeight = Math.max(usedHeight, dy * tileSize + childHeight);
+            }
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int a = 0;
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                int count = 0;
+
+                for (int sy = 2 * y; sy < Math.min(2 * y + 2, usedHeight); sy++) {
+                    for (int sx = 2 * x; sx < Math.min(2 * x + 2, usedWidth); sx++) {
+                        int pixel = source[sy * sourceWidth + sx];
+                        a += pixel >>> 24;
+                        r += (pixel >>> 16) & 0xff;
+                        g += (pixel >>> 8) & 0xff;
+                        b += pixel & 0xff;
+                        count++;
+                    }
+                }
+
+                if (count > 0) {
+                    rgb[y * width + x] = ((a / count) << 24) | ((r / count) << 16) | ((g / count) << 8) | (b / count);
+                }
+            }
+        }
+
+        return image;
+    }
+
+    private static void writeTile(BufferedImage image, Path directory, int z, int x, int y) throws IOException {
+        Path file = tile(directory, z, x, y);
+        Files.createDirectories(file.getParent());
+
+        if (!ImageIO.write(image, "png", file.toFile())) {
+            throw new IOException("No png writer");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.marre.mandelbrot.resilience;
+
+import lombok.Value;
+
+/**
+ * How a {@link ResilientMandelbrotBackend} retries, times out and hedges requests.
+ */
+@Value
+public class ResiliencePolicy {
+    /**
+     * Never retries, times out or hedges.
+     */
+    public static final ResiliencePolicy NONE = new ResiliencePolicy(0, 0, 0, 0, 0.0, 0.0);
+
+    /**
+     * The number of times a failed request is retried.
+     */
+    private final int maxRetries;
+
+    /**
+     * The backoff before the first retry. It doubles for every retry up to maxBackoffMillis and
+     * a random part of it is used.
+     */
+    private final long backoffMillis;
+
+    private final long maxBackoffMillis;
+
+    /**
+     * Each attempt fails with a timeout after this long, 0 for no deadline.
+     */
+    private final long deadlineMillis;
+
+    /**
+     * A duplicate request is sent if there is no answer when this quantile of the observed
+     * latencies has passed, 0 to never hedge.
+     */
+    private final double hedgeQuantile;
+
+    /**
+     * Retries and hedges together are at most this fraction of the requests.
+     */
+    private final double budget;
+
+    public static ResiliencePolicy create(int maxRetries, long backoffMillis, long maxBackoffMillis, long deadlineMillis, double hedgeQuantile, double budget) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative. [" + maxRetries + "]");
+        }
+
+        if (backoffMillis < 0 || maxBackoffMillis < backoffMillis) {
+            throw new IllegalArgumentException("backoff must be in [0, maxBackoffMillis]. [" + backoffMillis + ", " + maxBackoffMillis + "]");
+        }
+
+        if (deadlineMillis < 0) {
+            throw new IllegalArgumentException("deadlineMillis must not be negative. [" + deadlineMillis + "]");
+        }
+
+        if (hedgeQuantile < 0.0 || hedgeQuantile >= 1.0) {
+            throw new IllegalArgumentException("hedgeQuantile must be in [0.0, 1.0). [" + hedgeQuantile + "]");
+        }
+
+        if (budget < 0.0) {
+            throw new IllegalArgumentException("budget must not be negative. [" + budget + "]");
+        }
+
+        return new ResiliencePolicy(maxRetries, backoffMillis, maxBackoffMillis, deadlineMillis, hedgeQuantile, budget);
+    }
+}
@@ -0,0 +1,161 @@
+package org.marre.mandelbrot.resilience;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.metrics.Histogram;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.HttpException;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retries failed requests with exponential backoff and jitter, fails attempts that pass a deadline
+ * and hedges slow requests by sending a duplicate and using whichever answer arrives first.
+ *
+ * Retries and hedges share a {@link RetryBudget} so that a failing or slow server isn't flooded with
+ * extra requests.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ResilientMandelbrotBackend implements MandelbrotBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(ResilientMandelbrotBackend.class);
+
+    /**
+     * Requests are not hedged until this many latencies have been observed.
+     */
+    static final int MIN_HEDGE_SAMPLES = 20;
+
+    @NonNull
+    private final MandelbrotBackend delegate;
+
+    @NonNull
+    private final ResiliencePolicy policy;
+
+    @NonNull
+    private final RetryBudget budget;
+
+    /**
+     * The latencies of successful attempts, hedges are sent after a quantile of these.
+     */
+    @NonNull
+    private final Histogram latencies;
+
+    @NonNull
+    private final MandelbrotMetrics metrics;
+
+    @NonNull
+    private final Scheduler scheduler;
+
+    public static ResilientMandelbrotBackend create(MandelbrotBackend delegate, ResiliencePolicy policy, MandelbrotMetrics metrics) {
+        return new ResilientMandelbrotBackend(delegate, policy, new RetryBudget(policy.getBudget()), new Histogram(), metrics, Schedulers.computation());
+    }
+
+    @Override
+    public Single<MandelbrotResult> mandelbrot(MandelbrotPart mandelbrotPart) {
+        return Single.defer(() -> {
+            budget.request();
+            return attempt(mandelbrotPart, 0);
+        });
+    }
+
+    private Single<MandelbrotResult> attempt(MandelbrotPart mandelbrotPart, int retry) {
+        return hedged(mandelbrotPart)
+                .onErrorResumeNext(err -> {
+                    if (retry >= policy.getMaxRetries() || !isRetryable(err) || !budget.tryAcquire()) {
+                        return Single.error(err);
+                    }
+
+                    long backoff = backoffMillis(retry);
+                    metrics.retried();
+                    LOG.warn("Retrying {} {} in {} ms after : {}", mandelbrotPart.getOffset(), mandelbrotPart.getSize(), backoff, err.toString());
+
+                    return Single.timer(backoff, TimeUnit.MILLISECONDS, scheduler)
+                            .flatMap(ignored -> attempt(mandelbrotPart, retry + 1));
+                });
+    }
+
+    /**
+     * Sends a duplicate request if there is no answer within the hedge delay. The first answer, or
+     * error, is used and the other request is cancelled.
+     */
+    private Single<MandelbrotResult> hedged(MandelbrotPart mandelbrotPart) {
+        Single<MandelbrotResult> primary = timed(mandelbrotPart);
+
+        long hedgeDelay = hedgeDelayNanos();
+        if (hedgeDelay < 0) {
+            return primary;
+        }
+
+        Single<MandelbrotResult> hedge = Single.timer(hedgeDelay, TimeUnit.NANOSECONDS, scheduler)
+                .flatMap(ignored -> {
+                    if (!budget.tryAcquire()) {
+                        return Single.never();
+                    }
+
+                    metrics.hedged();
+                    LOG.info("Hedging {} {} after {} ms", mandelbrotPart.getOffset(), mandelbrotPart.getSize(), hedgeDelay / 1_000_000);
+
+                    return timed(mandelbrotPart);
+                });
+
+        return primary.ambWith(hedge);
+    }
+
+    private Single<MandelbrotResult> timed(MandelbrotPart mandelbrotPart) {
+        return Single.defer(() -> {
+            long start = System.nanoTime();
+
+            Single<MandelbrotResult> result = delegate.mandelbrot(mandelbrotPart);
+            if (policy.getDeadlineMillis() > 0) {
+                result = result.timeout(policy.getDeadlineMillis(), TimeUnit.MILLISECONDS, scheduler);
+            }
+
+            return result.doOnSuccess(ignored -> latencies.record(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Returns the delay before a hedge is sent or -1 if requests shouldn't be hedged (yet).
+     */
+    long hedgeDelayNanos() {
+        if (policy.getHedgeQuantile() <= 0.0 || latencies.getCount() < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+
+        return latencies.quantile(policy.getHedgeQuantile());
+    }
+
+    /**
+     * Full jitter, a random backoff between 0 and the exponential backoff.
+     */
+    private long backoffMillis(int retry) {
+        long backoff = policy.getBackoffMillis() << Math.min(retry, 30);
+        long cap = Math.min(policy.getMaxBackoffMillis(), backoff < 0 ? Long.MAX_VALUE : backoff);
+
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Returns true for server errors, throttling, io errors and timeouts. Client errors fail
+     * again if retried.
+     */
+    static boolean isRetryable(Throwable err) {
+        if (err instanceof HttpException) {
+            int code = ((HttpException) err).code();
+            return code >= 500 || code == 429;
+        }
+
+        return err instanceof IOException || err instanceof TimeoutException;
+    }
+}
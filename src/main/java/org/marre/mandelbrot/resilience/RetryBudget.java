@@ -0,0 +1,45 @@
+package org.marre.mandelbrot.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the extra requests, retries and hedges, to a fraction of the original requests.
+ *
+ * A few extra requests are always allowed so that the first failures of a render can be retried.
+ */
+final class RetryBudget {
+    static final long MIN_EXTRA = 10;
+
+    private final double ratio;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong extra = new AtomicLong();
+
+    RetryBudget(double ratio) {
+        this.ratio = ratio;
+    }
+
+    void request() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * Returns true, and counts it, if one more extra request fits in the budget.
+     */
+    boolean tryAcquire() {
+        long allowed = MIN_EXTRA + (long) (ratio * requests.get());
+
+        long current;
+        do {
+            current = extra.get();
+            if (current >= allowed) {
+                return false;
+            }
+        } while (!extra.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    long getExtra() {
+        return extra.get();
+    }
+}
@@ -0,0 +1,86 @@
+package org.marre.mandelbrot.server;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+
+/**
+ * Maps z/x/y tiles to mandelbrot parts, laid out like the tiles of a
+ * {@link org.marre.mandelbrot.render.TilePyramidWriter} pyramid.
+ *
+ * Zoom level z divides the square between min c and max c in 2^z x 2^z tiles, so level 0 is one tile.
+ * Tile x grows with re and tile y with im, the same way the pixels of a part do.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TileGrid {
+    /**
+     * The deepest zoom level. Deeper than this neighbouring pixels are only a few doubles apart.
+     */
+    public static final int MAX_ZOOM = 40;
+
+    @NonNull
+    private final Complex minc;
+
+    /**
+     * Width and height of the square at zoom level 0.
+     */
+    private final double span;
+
+    private final int tileSize;
+
+    private final int maxSteps;
+
+    /**
+     * The square from -2 - 2i to 2 + 2i.
+     */
+    public static TileGrid create(int tileSize, int maxSteps) {
+        return create(new Complex(-2, -2), 4.0, tileSize, maxSteps);
+    }
+
+    public static TileGrid create(Complex minc, double span, int tileSize, int maxSteps) {
+        if (!(span > 0.0)) {
+            throw new IllegalArgumentException("span must be positive. [" + span + "]");
+        }
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tileSize must be a positive integer. [" + tileSize + "]");
+        }
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be a positive integer. [" + maxSteps + "]");
+        }
+
+        return new TileGrid(minc, span, tileSize, maxSteps);
+    }
+
+    /**
+     * If the tile is within the grid.
+     */
+    public boolean contains(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM) {
+            return false;
+        }
+
+        long tiles = 1L << z;
+        return x >= 0 && x < tiles && y >= 0 && y < tiles;
+    }
+
+    /**
+     * The part of a tile.
+     */
+    public MandelbrotPart part(int z, int x, int y) {
+        if (!contains(z, x, y)) {
+            throw new IllegalArgumentException("tile outside of grid [z=" + z + ", x=" + x + ", y=" + y + "]");
+        }
+
+        double tileSpan = span / (1L << z);
+        return MandelbrotPart.create(
+                new Dimension(tileSize, tileSize),
+                new Complex(minc.getRe() + x * tileSpan, minc.getIm() + y * tileSpan),
+                new Complex(minc.getRe() + (x + 1) * tileSpan, minc.getIm() + (y + 1) * tileSpan),
+                maxSteps);
+    }
+}
@@ -0,0 +1,13 @@
+package org.marre.mandelbrot.server;
+
+import lombok.Value;
+
+/**
+ * The z/x/y of a tile.
+ */
+@Value
+final class TileKey {
+    private final int z;
+    private final int x;
+    private final int y;
+}
@@ -0,0 +1,60 @@
+package org.marre.mandelbrot.server;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encoded tiles in memory, the least recently used evicted when they take more than maxBytes.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class TileLru {
+    private final long maxBytes;
+
+    /**
+     * In access order, the least recently used first. Guarded by this.
+     */
+    @NonNull
+    private final LinkedHashMap<TileKey, byte[]> tiles;
+
+    private long bytes;
+
+    static TileLru create(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative. [" + maxBytes + "]");
+        }
+
+        return new TileLru(maxBytes, new LinkedHashMap<>(16, 0.75f, true), 0);
+    }
+
+    synchronized byte[] get(TileKey key) {
+        return tiles.get(key);
+    }
+
+    synchronized void put(TileKey key, byte[] tile) {
+        if (tile.length > maxBytes) {
+            return;
+        }
+
+        byte[] previous = tiles.put(key, tile);
+        bytes += tile.length - (previous != null ? previous.length : 0);
+
+        Iterator<Map.Entry<TileKey, byte[]>> eldest = tiles.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,150 @@
+package org.marre.mandelbrot.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the tiles of a {@link TileService} over http, GET /z/x/y.png.
+ *
+ * The handler threads don't wait for the tile. The response is sent when the tile is ready, back on a
+ * handler thread so that slow viewers don't hold up the threads rendering tiles, and a few handler
+ * threads can serve any number of viewers waiting for tiles.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TileServer {
+    private static final Logger LOG = LoggerFactory.getLogger(TileServer.class);
+
+    private static final Pattern TILE_PATH = Pattern.compile("/(\\d{1,2})/(\\d{1,10})/(\\d{1,10})\\.png");
+
+    /**
+     * Tiles never change, viewers may cache them for a day.
+     */
+    private static final String CACHE_CONTROL = "public, max-age=86400";
+
+    @NonNull
+    private final HttpServer server;
+
+    @NonNull
+    private final ExecutorService executor;
+
+    /**
+     * @param address where to listen, port 0 for any free port
+     * @param threads the number of threads parsing requests and sending responses
+     */
+    public static TileServer create(TileService tileService, InetSocketAddress address, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be a positive integer. [" + threads + "]");
+        }
+
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory());
+        Scheduler scheduler = Schedulers.from(executor);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> handle(tileService, scheduler, exchange));
+
+        return new TileServer(server, executor);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Serving tiles on {}", server.getAddress());
+    }
+
+    /**
+     * Stops accepting requests and waits at most delaySeconds for the exchanges in progress.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private static void handle(TileService tileService, Scheduler scheduler, HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, "Only GET is supported");
+            return;
+        }
+
+        Matcher matcher = TILE_PATH.matcher(exchange.getRequestURI().getPath());
+        if (!matcher.matches()) {
+            send(exchange, 404, "Tiles are at /z/x/y.png");
+            return;
+        }
+
+        long z = Long.parseLong(matcher.group(1));
+        long x = Long.parseLong(matcher.group(2));
+        long y = Long.parseLong(matcher.group(3));
+        if (x > Integer.MAX_VALUE || y > Integer.MAX_VALUE || !tileService.getGrid().contains((int) z, (int) x, (int) y)) {
+            send(exchange, 404, "No tile " + z + "/" + x + "/" + y);
+            return;
+        }
+
+        tileService.tile((int) z, (int) x, (int) y)
+                .observeOn(scheduler)
+                .subscribe(
+                        png -> sendPng(exchange, png),
+                        err -> {
+                            LOG.warn("Failed to render tile {}/{}/{}", z, x, y, err);
+                            send(exchange, 502, "Failed to render tile");
+                        });
+    }
+
+    private static void sendPng(HttpExchange exchange, byte[] png) {
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.getResponseHeaders().set("Cache-Control", CACHE_CONTROL);
+        send(exchange, 200, png);
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            // The viewer went away
+            LOG.debug("Failed to send response", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "tile-server-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
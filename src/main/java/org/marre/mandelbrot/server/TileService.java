@@ -0,0 +1,152 @@
+package org.marre.mandelbrot.server;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.cli.StreamingPngWriter;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.marre.mandelbrot.render.Palette;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Renders tiles as png.
+ *
+ * Encoded tiles are kept in an LRU. A tile that is requested again while it is being rendered is
+ * not requested from the backend twice, all requests for it get the same png.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TileService {
+    @NonNull
+    private final MandelbrotBackend backend;
+
+    @NonNull
+    private final TileGrid grid;
+
+    @NonNull
+    private final Palette palette;
+
+    @NonNull
+    private final Scheduler encodeScheduler;
+
+    @NonNull
+    private final TileLru lru;
+
+    /**
+     * Tiles requested from the backend and not yet in the LRU.
+     */
+    @NonNull
+    private final ConcurrentMap<TileKey, Single<byte[]>> rendering;
+
+    @NonNull
+    private final AtomicLong requests;
+
+    @NonNull
+    private final AtomicLong lruHits;
+
+    @NonNull
+    private final AtomicLong rendered;
+
+    /**
+     * @param lruBytes max size of the encoded tiles kept in memory
+     */
+    public static TileService create(MandelbrotBackend backend, TileGrid grid, Palette palette, long lruBytes) {
+        return create(backend, grid, palette, lruBytes, Schedulers.computation());
+    }
+
+    public static TileService create(MandelbrotBackend backend, TileGrid grid, Palette palette, long lruBytes, Scheduler encodeScheduler) {
+        return new TileService(
+                backend,
+                grid,
+                palette,
+                encodeScheduler,
+                TileLru.create(lruBytes),
+                new ConcurrentHashMap<>(),
+                new AtomicLong(),
+                new AtomicLong(),
+                new AtomicLong());
+    }
+
+    public TileGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * The png of a tile. The tile must be within the grid.
+     */
+    public Single<byte[]> tile(int z, int x, int y) {
+        if (!grid.contains(z, x, y)) {
+            return Single.error(new IllegalArgumentException("tile outside of grid [z=" + z + ", x=" + x + ", y=" + y + "]"));
+        }
+
+        return Single.defer(() -> {
+            requests.incrementAndGet();
+            TileKey key = new TileKey(z, x, y);
+
+            byte[] png = lru.get(key);
+            if (png != null) {
+                lruHits.incrementAndGet();
+                return Single.just(png);
+            }
+
+            return rendering.computeIfAbsent(key, this::render);
+        });
+    }
+
+    /**
+     * Tiles requested.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Tiles found in the LRU.
+     */
+    public long getLruHits() {
+        return lruHits.get();
+    }
+
+    /**
+     * Tiles requested from the backend.
+     */
+    public long getRendered() {
+        return rendered.get();
+    }
+
+    /**
+     * Requests the tile once, for all subscribers. It is in the LRU before it is no longer rendering,
+     * so a later request finds it in one or the other.
+     */
+    private Single<byte[]> render(TileKey key) {
+        return Single.defer(() -> {
+                    rendered.incrementAndGet();
+                    return backend.mandelbrot(grid.part(key.getZ(), key.getX(), key.getY()));
+                })
+                .observeOn(encodeScheduler)
+                .map(this::encode)
+                .doOnSuccess(png -> lru.put(key, png))
+                .doFinally(() -> rendering.remove(key))
+                .cache();
+    }
+
+    private byte[] encode(MandelbrotResult result) throws IOException {
+        ImageCanvas canvas = Canvas.create(result.getMandelbrotPart().getSize(), palette);
+        canvas.draw(result);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingPngWriter.start(out, canvas, grid.getTileSize(), Deflater.DEFAULT_COMPRESSION, Runnable::run).finish();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+package org.marre.mandelbrot.zoom;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A zoom towards a center, frame by frame.
+ *
+ * Only keyframes are rendered, one for every doubling of the zoom, at twice the resolution of the
+ * frames. Keyframe k covers the zoom from 2^k up to 2^(k+1), so a frame is a crop of its keyframe
+ * between the whole keyframe and its center half, always scaled down or 1:1.
+ *
+ * A keyframe is four frames of pixels, so with fewer than four frames per doubling every frame is
+ * rendered directly instead, as its own keyframe at the frame size.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ZoomPath {
+    /**
+     * Rounding slack, so that a frame exactly at a doubling uses the keyframe of that doubling.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Frames per doubling below which rendering the frames directly requests fewer pixels.
+     */
+    private static final int MIN_FRAMES_PER_DOUBLING = 4;
+
+    @NonNull
+    private final Complex center;
+
+    /**
+     * Width along the real axis of the first frame.
+     */
+    private final double span;
+
+    /**
+     * Zoom factor from one frame to the next.
+     */
+    private final double zoom;
+
+    private final int frames;
+
+    @NonNull
+    private final Dimension frameSize;
+
+    private final int maxSteps;
+
+    public static ZoomPath create(Complex center, double span, double zoom, int frames, Dimension frameSize, int maxSteps) {
+        if (!(span > 0.0)) {
+            throw new IllegalArgumentException("span must be positive. [" + span + "]");
+        }
+        if (!(zoom >= 1.0)) {
+            throw new IllegalArgumentException("zoom must be at least 1. [" + zoom + "]");
+        }
+        if (frames < 1) {
+            throw new IllegalArgumentException("frames must be a positive integer. [" + frames + "]");
+        }
+        if (frameSize.getWidth() < 1 || frameSize.getHeight() < 1) {
+            throw new IllegalArgumentException("frameSize must be at least 1x1. [" + frameSize + "]");
+        }
+
+        return new ZoomPath(center, span, zoom, frames, frameSize, maxSteps);
+    }
+
+    /**
+     * The keyframe a frame is cropped from.
+     */
+    public int keyframeOf(int frame) {
+        if (isDirect()) {
+            return frame;
+        }
+
+        return (int) Math.floor(frame * log2(zoom) + EPSILON);
+    }
+
+    /**
+     * The keyframes that any frame is cropped from, in order.
+     */
+    public List<Integer> keyframes() {
+        List<Integer> keyframes = new ArrayList<>();
+        for (int frame = 0; frame < frames; frame++) {
+            int keyframe = keyframeOf(frame);
+            if (keyframes.isEmpty() || keyframes.get(keyframes.size() - 1) != keyframe) {
+                keyframes.add(keyframe);
+            }
+        }
+        return keyframes;
+    }
+
+    /**
+     * The part rendered for a keyframe, {@link #getKeyframeScale()} times the frame size.
+     */
+    public MandelbrotPart keyframe(int keyframe) {
+        double width = span / Math.pow(isDirect() ? zoom : 2, keyframe);
+        double height = width * frameSize.getHeight() / frameSize.getWidth();
+        int scale = getKeyframeScale();
+
+        return MandelbrotPart.create(
+                new Dimension(scale * frameSize.getWidth(), scale * frameSize.getHeight()),
+                new Complex(center.getRe() - width / 2, center.getIm() - height / 2),
+                new Complex(center.getRe() + width / 2, center.getIm() + height / 2),
+                maxSteps);
+    }
+
+    /**
+     * The width of a frame relative to the width of its keyframe, from 1 down to just above 1/2.
+     */
+    public double crop(int frame) {
+        if (isDirect()) {
+            return 1.0;
+        }
+
+        return Math.pow(2, keyframeOf(frame) - frame * log2(zoom));
+    }
+
+    /**
+     * Whether every frame is rendered directly, see the class comment.
+     */
+    public boolean isDirect() {
+        return log2(zoom) * MIN_FRAMES_PER_DOUBLING > 1.0 + EPSILON;
+    }
+
+    /**
+     * The size of a keyframe relative to the frame size, 1 when the frames are rendered directly.
+     */
+    public int getKeyframeScale() {
+        return isDirect() ? 1 : 2;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
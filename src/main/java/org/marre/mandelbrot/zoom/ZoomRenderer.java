@@ -0,0 +1,271 @@
+package org.marre.mandelbrot.zoom;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.subjects.SingleSubject;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.marre.mandelbrot.render.Palette;
+import org.marre.mandelbrot.render.SymmetryPlan;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders the keyframes of a zoom with one backend and draws the frames from them.
+ *
+ * The next keyframe is requested while the frames of the previous one are drawn and written, so the
+ * backend is kept busy through the whole zoom.
+ *
+ * Keyframe k + 1 is the center half of keyframe k at twice the resolution, so every other pixel of
+ * every other row is copied from keyframe k and only the other three quarters are requested.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ZoomRenderer {
+    /**
+     * Keyframes rendered at the same time, the one whose frames are drawn and the next.
+     */
+    private static final int KEYFRAMES_AHEAD = 2;
+
+    @NonNull
+    private final MandelbrotBackend backend;
+
+    @NonNull
+    private final ZoomPath path;
+
+    @NonNull
+    private final Palette palette;
+
+    private final int partSize;
+
+    private final int inFlight;
+
+    private final boolean mirror;
+
+    @NonNull
+    private final AtomicLong requestedPixels;
+
+    /**
+     * @param partSize the max size of each request
+     * @param inFlight the max number of outstanding requests per keyframe
+     * @param mirror if rows mirrored about the real axis are copied instead of requested
+     */
+    public static ZoomRenderer create(MandelbrotBackend backend, ZoomPath path, Palette palette, int partSize, int inFlight, boolean mirror) {
+        if (partSize < 1) {
+            throw new IllegalArgumentException("partSize must be a positive integer. [" + partSize + "]");
+        }
+        if (inFlight < 1) {
+            throw new IllegalArgumentException("inFlight must be a positive integer. [" + inFlight + "]");
+        }
+
+        return new ZoomRenderer(backend, path, palette, partSize, inFlight, mirror, new AtomicLong());
+    }
+
+    /**
+     * The keyframes of the path, in order.
+     */
+    public Flowable<Keyframe> keyframes() {
+        return Flowable.defer(() -> {
+            // Only the iterations of the latest keyframe are kept, for the next one to copy from
+            AtomicReference<SingleSubject<int[]>> previous = new AtomicReference<>();
+
+            return Flowable.fromIterable(path.keyframes())
+                    .map(keyframe -> {
+                        SingleSubject<int[]> iterations = SingleSubject.create();
+                        return render(keyframe, previous.getAndSet(iterations), iterations);
+                    })
+                    .concatMapEager(Single::toFlowable, KEYFRAMES_AHEAD, 1);
+        });
+    }
+
+    /**
+     * Draws a frame from its keyframe, scaled down with bilinear interpolation.
+     */
+    public void drawFrame(Keyframe keyframe, int frame, ImageCanvas target) {
+        if (path.keyframeOf(frame) != keyframe.getIndex()) {
+            throw new IllegalArgumentException("frame is not cropped from keyframe. [" + frame + ", " + keyframe.getIndex() + "]");
+        }
+
+        Dimension size = path.getFrameSize();
+        double crop = path.crop(frame);
+        int keyframeScale = path.getKeyframeScale();
+
+        // A frame pixel is keyframeScale * crop keyframe pixels, and the crop is centered on the keyframe
+        double scale = 1.0 / (keyframeScale * crop);
+        double margin = keyframeScale * (1.0 - crop) / 2.0;
+        AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+        transform.translate(-size.getWidth() * margin, -size.getHeight() * margin);
+
+        Graphics2D graphics = target.getImage().createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(keyframe.getCanvas().getImage(), transform, null);
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Pixels requested from the backend so far.
+     */
+    public long getRequestedPixels() {
+        return requestedPixels.get();
+    }
+
+    /**
+     * @param previous the iterations of the keyframe before, null for the first keyframe
+     * @param done receives the iterations of this keyframe
+     */
+    private Single<Keyframe> render(int index, SingleSubject<int[]> previous, SingleSubject<int[]> done) {
+        MandelbrotPart whole = path.keyframe(index);
+        SymmetryPlan symmetryPlan = mirror ? SymmetryPlan.create(whole) : SymmetryPlan.none(whole);
+
+        // Direct frames don't line up with the frame before. Mirrored rows already save more than
+        // copying, so keyframes with mirrored rows are requested as usual.
+        boolean copy = (previous != null) && !path.isDirect() && (symmetryPlan.getMirroredRows() == 0);
+
+        return Single.defer(() -> {
+            Dimension size = whole.getSize();
+            int[] iterations = new int[size.getWidth() * size.getHeight()];
+
+            Flowable<Single<MandelbrotResult>> requests;
+            Completable copied;
+            if (copy) {
+                // Rows of the other parity than the copied ones, then the rest of the copied rows
+                int copiedX = path.getFrameSize().getWidth() % 2;
+                int copiedY = path.getFrameSize().getHeight() % 2;
+                requests = Flowable.fromArray(
+                        Grid.create(whole, 0, 1 - copiedY, 1, 2),
+                        Grid.create(whole, 1 - copiedX, copiedY, 2, 2))
+                        .concatMap(grid -> Flowable.fromIterable(grid.getPart().split(partSize))
+                                .map(part -> request(part, grid, iterations, symmetryPlan)));
+                copied = previous.doOnSuccess(from -> copy(from, iterations)).toCompletable();
+            } else {
+                Grid grid = Grid.create(whole, 0, 0, 1, 1);
+                requests = symmetryPlan.parts(partSize)
+                        .map(part -> request(part, grid, iterations, symmetryPlan));
+                copied = Completable.complete();
+            }
+
+            return requests
+                    .flatMapSingle(request -> request, false, inFlight)
+                    .ignoreElements()
+                    .andThen(copied)
+                    .toSingle(() -> {
+                        ImageCanvas canvas = Canvas.create(size, palette);
+                        canvas.draw(new Position(0, 0), size, iterations);
+                        done.onSuccess(iterations);
+                        return new Keyframe(index, canvas);
+                    })
+                    .doOnError(done::onError);
+        });
+    }
+
+    /**
+     * Requests a part of a grid and stores its iterations, and the rows mirrored from them, in the
+     * iterations of the keyframe.
+     */
+    private Single<MandelbrotResult> request(MandelbrotPart part, Grid grid, int[] iterations, SymmetryPlan symmetryPlan) {
+        return backend.mandelbrot(part).doOnSuccess(result -> {
+            requestedPixels.addAndGet(result.getPixels().length);
+            grid.store(result, iterations, symmetryPlan);
+        });
+    }
+
+    /**
+     * Copies the pixels of a keyframe that are also in the keyframe before it.
+     *
+     * Pixel x of a keyframe 2 * W pixels wide is at the same point as pixel (x + W) / 2 of the keyframe
+     * before, when x has the same parity as W. Rows work the same way.
+     */
+    private void copy(int[] from, int[] iterations) {
+        int frameWidth = path.getFrameSize().getWidth();
+        int frameHeight = path.getFrameSize().getHeight();
+        int width = 2 * frameWidth;
+
+        for (int y = frameHeight % 2; y < 2 * frameHeight; y += 2) {
+            int fromRow = (y + frameHeight) / 2 * width;
+            for (int x = frameWidth % 2; x < width; x += 2) {
+                iterations[y * width + x] = from[fromRow + (x + frameWidth) / 2];
+            }
+        }
+    }
+
+    /**
+     * Every strideX:th pixel of every strideY:th row of a keyframe, from pixel x, y, as one part.
+     */
+    @Value
+    private static class Grid {
+        private final int x;
+        private final int y;
+        private final int strideX;
+        private final int strideY;
+
+        @NonNull
+        private final MandelbrotPart part;
+
+        static Grid create(MandelbrotPart whole, int x, int y, int strideX, int strideY) {
+            Dimension size = whole.getSize();
+            int width = (size.getWidth() - x + strideX - 1) / strideX;
+            int height = (size.getHeight() - y + strideY - 1) / strideY;
+
+            double pixelSizeRe = strideX * whole.getPixelSizeRe();
+            double pixelSizeIm = strideY * whole.getPixelSizeIm();
+            Complex minc = new Complex(
+                    whole.getMinc().getRe() + x * whole.getPixelSizeRe(),
+                    whole.getMinc().getIm() + y * whole.getPixelSizeIm());
+            Complex maxc = new Complex(minc.getRe() + width * pixelSizeRe, minc.getIm() + height * pixelSizeIm);
+
+            MandelbrotPart part = (strideX == 1) && (strideY == 1)
+                    ? whole
+                    : MandelbrotPart.create(new Dimension(width, height), minc, maxc, whole.getMaxSteps());
+            return new Grid(x, y, strideX, strideY, part);
+        }
+
+        /**
+         * Stores the iterations of a part of this grid at their pixels in the keyframe.
+         */
+        void store(MandelbrotResult result, int[] iterations, SymmetryPlan symmetryPlan) {
+            int wholeWidth = symmetryPlan.getWhole().getSize().getWidth();
+            Position offset = result.getMandelbrotPart().getOffset();
+            Dimension size = result.getMandelbrotPart().getSize();
+            int[] pixels = result.getPixels();
+
+            for (int row = 0; row < size.getHeight(); row++) {
+                int keyframeY = y + strideY * (offset.getY() + row);
+                int keyframeX = x + strideX * offset.getX();
+                for (int column = 0; column < size.getWidth(); column++) {
+                    iterations[keyframeY * wholeWidth + keyframeX + strideX * column] = pixels[row * size.getWidth() + column];
+                }
+
+                int mirrored = symmetryPlan.mirror(keyframeY);
+                if (mirrored >= 0) {
+                    System.arraycopy(iterations, keyframeY * wholeWidth + keyframeX,
+                            iterations, mirrored * wholeWidth + keyframeX, size.getWidth());
+                }
+            }
+        }
+    }
+
+    @Value
+    public static class Keyframe {
+        private final int index;
+
+        @NonNull
+        private final ImageCanvas canvas;
+    }
+}
@@ -3,6 +3,7 @@ package org.marre.mandelbrot;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class TestMandelbrotPart {
@@ -95,6 +96,75 @@ public class TestMandelbrotPart {
         Assert.assertEquals(part(3000, 0, 1000, 1000, 1, -2, 2, 2), parts.get(3));
     }
 
+    @Test
+    public void testSplitLazilyWithRest() {
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(1000, 600),
+                new Complex(-2, -2),
+                new Complex(2, 2),
+                100);
+
+        List<MandelbrotPart> parts = new ArrayList<>();
+        for (MandelbrotPart part : mandelbrotPart.splitLazily(400)) {
+            parts.add(part);
+        }
+
+        Assert.assertEquals(6, mandelbrotPart.splitCount(400));
+        Assert.assertEquals(mandelbrotPart.split(400), parts);
+
+        Assert.assertEquals(new Position(0, 0), parts.get(0).getOffset());
+        Assert.assertEquals(new Position(400, 0), parts.get(1).getOffset());
+        Assert.assertEquals(new Position(800, 0), parts.get(2).getOffset());
+        Assert.assertEquals(new Dimension(200, 400), parts.get(2).getSize());
+        Assert.assertEquals(new Position(0, 400), parts.get(3).getOffset());
+        Assert.assertEquals(new Dimension(400, 200), parts.get(3).getSize());
+        Assert.assertEquals(new Position(800, 400), parts.get(5).getOffset());
+        Assert.assertEquals(new Dimension(200, 200), parts.get(5).getSize());
+    }
+
+    @Test
+    public void testSplitWithOffset() {
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(4000, 2000),
+                new Complex(-2, -2),
+                new Complex(2, 2),
+                100);
+
+        MandelbrotPart subPart = mandelbrotPart.split(2000).get(1);
+        Assert.assertEquals(part(2000, 0, 2000, 2000, 0, -2, 2, 2), subPart);
+
+        List<MandelbrotPart> parts = subPart.split(1000);
+        Assert.assertEquals(4, parts.size());
+
+        Assert.assertEquals(part(2000, 0, 1000, 1000, 0, -2, 1, 0), parts.get(0));
+        Assert.assertEquals(part(3000, 0, 1000, 1000, 1, -2, 2, 0), parts.get(1));
+        Assert.assertEquals(part(2000, 1000, 1000, 1000, 0, 0, 1, 2), parts.get(2));
+        Assert.assertEquals(part(3000, 1000, 1000, 1000, 1, 0, 2, 2), parts.get(3));
+    }
+
+    @Test
+    public void testSubPart() {
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(1000, 1000),
+                new Complex(-2, -2),
+                new Complex(2, 2),
+                100);
+
+        Assert.assertSame(mandelbrotPart, mandelbrotPart.subPart(0, 0, 1000, 1000));
+        Assert.assertEquals(part(500, 250, 250, 500, 0, -1, 1, 1), mandelbrotPart.subPart(500, 250, 250, 500));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubPartOutside() {
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(1000, 1000),
+                new Complex(-2, -2),
+                new Complex(2, 2),
+                100);
+
+        mandelbrotPart.subPart(500, 500, 501, 100);
+    }
+
     private static MandelbrotPart part(
             int x,
             int y,
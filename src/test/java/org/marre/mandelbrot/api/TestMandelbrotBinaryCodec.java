@@ -0,0 +1,70 @@
+package org.marre.mandelbrot.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestMandelbrotBinaryCodec {
+    @Test
+    public void testRoundTrip() throws IOException {
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(300, 200),
+                new Complex(-2, -1),
+                new Complex(1, 1),
+                1024);
+        int[] pixels = LocalMandelbrotBackend.create().mandelbrot(mandelbrotPart).blockingGet().getPixels();
+
+        byte[] encoded = MandelbrotBinaryCodec.encode(pixels, 300, 200);
+
+        Assert.assertArrayEquals(pixels, MandelbrotBinaryCodec.decode(new ByteArrayInputStream(encoded), 300, 200));
+
+        // Runs of equal pixels make it much smaller than 4 bytes per pixel
+        Assert.assertTrue(encoded.length < pixels.length / 2);
+    }
+
+    @Test
+    public void testRoundTripExtremes() throws IOException {
+        Random random = new Random(17);
+        int[] pixels = new int[1000 * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextBoolean() ? random.nextInt() : Integer.MAX_VALUE;
+        }
+        pixels[0] = Integer.MIN_VALUE;
+
+        byte[] encoded = MandelbrotBinaryCodec.encode(pixels, 1000, 3);
+
+        Assert.assertArrayEquals(pixels, MandelbrotBinaryCodec.decode(new ByteArrayInputStream(encoded), 1000, 3));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws IOException {
+        int[] pixels = new int[100];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i;
+        }
+        byte[] encoded = MandelbrotBinaryCodec.encode(pixels, 10, 10);
+
+        MandelbrotBinaryCodec.decode(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1)), 10, 10);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongSize() throws IOException {
+        byte[] encoded = MandelbrotBinaryCodec.encode(new int[100], 10, 10);
+
+        MandelbrotBinaryCodec.decode(new ByteArrayInputStream(encoded), 20, 5);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotEncoded() throws IOException {
+        MandelbrotBinaryCodec.decode(new ByteArrayInputStream("{\"pixels\":[]}".getBytes("UTF-8")), 1, 1);
+    }
+}
@@ -0,0 +1,209 @@
+package org.marre.mandelbrot.api;
+
+import io.reactivex.Single;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.marre.mandelbrot.metrics.RecordingMetrics;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMandelbrotClient {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSplitOnBadGateway() {
+        AtomicInteger requests = new AtomicInteger();
+
+        // Fails with 502 for anything larger than 250 x 250 pixels. Each pixel is x + 1000 * y
+        MandelbrotClient.MandelbrotApi api = (mincre, mincim, maxcre, maxcim, xres, yres, infn) -> {
+            requests.incrementAndGet();
+            if (xres * yres > 250 * 250) {
+                return Single.just(Response.error(502, ResponseBody.create(MediaType.parse("text/plain"), "Bad Gateway")));
+            }
+
+            int x0 = (int) Math.round(mincre);
+            int y0 = (int) Math.round(mincim);
+            int[] pixels = new int[xres * yres];
+            for (int y = 0; y < yres; y++) {
+                for (int x = 0; x < xres; x++) {
+                    pixels[y * xres + x] = (x0 + x) + 1000 * (y0 + y);
+                }
+            }
+            return Single.just(Response.success(json(pixels)));
+        };
+
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(1000, 500),
+                new Complex(0, 0),
+                new Complex(1000, 500),
+                100);
+
+        RecordingMetrics metrics = RecordingMetrics.create();
+        MandelbrotResult result = new MandelbrotClient(api, metrics).mandelbrot(mandelbrotPart).blockingGet();
+
+        Assert.assertSame(mandelbrotPart, result.getMandelbrotPart());
+        for (int y = 0; y < 500; y++) {
+            for (int x = 0; x < 1000; x++) {
+                Assert.assertEquals(x + 1000 * y, result.getPixels()[y * 1000 + x]);
+            }
+        }
+
+        // 1000x500 -> 2 x 500x500 -> 8 x 250x250
+        Assert.assertEquals(1 + 2 + 8, requests.get());
+
+        Assert.assertEquals(1 + 2 + 8, metrics.getRequests());
+        Assert.assertEquals(1 + 2, metrics.getRetries());
+        Assert.assertEquals(1 + 2, metrics.getErrors(502));
+        Assert.assertEquals(0, metrics.getInFlight());
+        Assert.assertEquals(1 + 2 + 8, metrics.getLatency().getCount());
+        Assert.assertEquals(8, metrics.getDecode().getCount());
+        Assert.assertTrue(metrics.getBytes() > 0);
+    }
+
+    @Test
+    public void testWrongNumberOfPixels() {
+        MandelbrotClient.MandelbrotApi api = (mincre, mincim, maxcre, maxcim, xres, yres, infn) ->
+                Single.just(Response.success(json(new int[xres * yres - 1])));
+
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(10, 10),
+                new Complex(0, 0),
+                new Complex(1, 1),
+                100);
+
+        try {
+            new MandelbrotClient(api, MandelbrotMetrics.NOOP).mandelbrot(mandelbrotPart).blockingGet();
+            Assert.fail("Expected IOException");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testBinaryResponse() {
+        MandelbrotClient.MandelbrotApi api = (mincre, mincim, maxcre, maxcim, xres, yres, infn) -> {
+            int[] pixels = new int[xres * yres];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = i / 7;
+            }
+            byte[] encoded = MandelbrotBinaryCodec.encode(pixels, xres, yres);
+            return Single.just(Response.success(ResponseBody.create(MediaType.parse(MandelbrotBinaryCodec.MEDIA_TYPE), encoded)));
+        };
+
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(30, 20),
+                new Complex(0, 0),
+                new Complex(1, 1),
+                100);
+
+        MandelbrotResult result = new MandelbrotClient(api, MandelbrotMetrics.NOOP).mandelbrot(mandelbrotPart).blockingGet();
+
+        for (int i = 0; i < 30 * 20; i++) {
+            Assert.assertEquals(i / 7, result.getPixels()[i]);
+        }
+    }
+
+    @Test
+    public void testOtherErrorsAreNotSplit() {
+        AtomicInteger requests = new AtomicInteger();
+
+        MandelbrotClient.MandelbrotApi api = (mincre, mincim, maxcre, maxcim, xres, yres, infn) -> {
+            requests.incrementAndGet();
+            return Single.just(Response.error(500, ResponseBody.create(MediaType.parse("text/plain"), "Internal Server Error")));
+        };
+
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(1000, 500),
+                new Complex(0, 0),
+                new Complex(1000, 500),
+                100);
+
+        try {
+            new MandelbrotClient(api, MandelbrotMetrics.NOOP).mandelbrot(mandelbrotPart).blockingGet();
+            Assert.fail("Expected HttpException");
+        } catch (HttpException e) {
+            Assert.assertEquals(500, e.code());
+        }
+
+        Assert.assertEquals(1, requests.get());
+    }
+
+    private static ResponseBody json(int[] pixels) {
+        StringBuilder json = new StringBuilder("{\"pixels\":[");
+        for (int i = 0; i < pixels.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(pixels[i]);
+        }
+        json.append("]}");
+
+        return ResponseBody.create(MediaType.parse("application/json"), json.toString());
+    }
+
+    @Test
+    public void testTransportsSkipThoseThatFailToLoad() throws IOException {
+        // The first transport is built for a newer JDK, the second loads
+        File services = folder.newFile(MandelbrotTransport.class.getName());
+        Files.write(services.toPath(), Arrays.asList("org.marre.mandelbrot.api.TooNewTransport", StubTransport.class.getName()), StandardCharsets.UTF_8);
+        URL servicesUrl = services.toURI().toURL();
+
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                if (name.equals("META-INF/services/" + MandelbrotTransport.class.getName())) {
+                    return Collections.enumeration(Collections.singletonList(servicesUrl));
+                }
+                return super.getResources(name);
+            }
+
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (name.equals("org.marre.mandelbrot.api.TooNewTransport")) {
+                    throw new UnsupportedClassVersionError(name + " has been compiled by a more recent version of the Java Runtime");
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            Assert.assertEquals(Arrays.asList(OkHttpTransport.NAME, "stub"), MandelbrotClient.transports());
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    public static final class StubTransport implements MandelbrotTransport {
+        @Override
+        public String getName() {
+            return "stub";
+        }
+
+        @Override
+        public MandelbrotClient.MandelbrotApi create(String mandelbrotServerBaseUrl, int maxConcurrency) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.marre.mandelbrot.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class TestMandelbrotResponseDecoder {
+    @Test
+    public void testDecode() throws Exception {
+        String json =
+                "{\n" +
+                "  \"pixels\": [1,2,3,4,5,6,7,8]\n" +
+                "}\n";
+
+        MandelbrotResponseJson response = decode(json, 8);
+
+        Assert.assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, response.getPixels());
+    }
+
+    @Test
+    public void testUnknownFieldsAreSkipped() throws Exception {
+        String json = "{\"version\": {\"major\": 1, \"tags\": [1, 2]}, \"pixels\": [1,2,3,4], \"elapsed\": 17}";
+
+        MandelbrotResponseJson response = decode(json, 4);
+
+        Assert.assertArrayEquals(new int[]{1, 2, 3, 4}, response.getPixels());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooManyPixels() throws Exception {
+        decode("{\"pixels\": [1,2,3,4,5]}", 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooFewPixels() throws Exception {
+        decode("{\"pixels\": [1,2,3]}", 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoPixels() throws Exception {
+        decode("{}", 4);
+    }
+
+    private static MandelbrotResponseJson decode(String json, int expectedPixels) throws IOException {
+        return MandelbrotResponseDecoder.decode(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                expectedPixels);
+    }
+}
@@ -0,0 +1,146 @@
+package org.marre.mandelbrot.autotune;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestLimitedMandelbrotBackend {
+    private static final MandelbrotPart PART = MandelbrotPart.create(
+            new Dimension(10, 10),
+            new Complex(-2, -1),
+            new Complex(1, 1),
+            100);
+
+    @Test
+    public void testLimit() {
+        List<SingleSubject<MandelbrotResult>> requests = new ArrayList<>();
+        LimitedMandelbrotBackend backend = LimitedMandelbrotBackend.adaptive(part -> {
+            SingleSubject<MandelbrotResult> request = SingleSubject.create();
+            requests.add(request);
+            return request;
+        }, 2, 2);
+
+        List<MandelbrotResult> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            backend.mandelbrot(PART).subscribe(result -> results.add(result));
+        }
+        Assert.assertEquals(2, requests.size());
+
+        // Each answer starts a queued request
+        requests.get(0).onSuccess(new MandelbrotResult(PART, new int[100]));
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(1, results.size());
+
+        // A cancelled request gives its place to the next one
+        backend.mandelbrot(PART).subscribe().dispose();
+        Disposable running = backend.mandelbrot(PART).subscribe();
+        requests.get(1).onSuccess(new MandelbrotResult(PART, new int[100]));
+        requests.get(2).onSuccess(new MandelbrotResult(PART, new int[100]));
+        Assert.assertEquals(5, requests.size());
+
+        running.dispose();
+        requests.get(3).onSuccess(new MandelbrotResult(PART, new int[100]));
+        requests.get(4).onSuccess(new MandelbrotResult(PART, new int[100]));
+        Assert.assertEquals(5, results.size());
+    }
+
+    @Test
+    public void testThrottlingDecreasesLimit() {
+        LimitedMandelbrotBackend backend = LimitedMandelbrotBackend.adaptive(
+                part -> Single.error(new HttpException(Response.error(429, ResponseBody.create(MediaType.parse("text/plain"), "Too Many Requests")))),
+                8,
+                10);
+
+        backend.mandelbrot(PART).onErrorReturnItem(new MandelbrotResult(PART, new int[0])).blockingGet();
+
+        Assert.assertEquals(4, backend.getLimit());
+    }
+
+    @Test
+    public void testFixedLimitIgnoresThrottling() {
+        LimitedMandelbrotBackend backend = LimitedMandelbrotBackend.fixed(
+                part -> Single.error(new HttpException(Response.error(429, ResponseBody.create(MediaType.parse("text/plain"), "Too Many Requests")))),
+                8);
+
+        backend.mandelbrot(PART).onErrorReturnItem(new MandelbrotResult(PART, new int[0])).blockingGet();
+
+        Assert.assertEquals(8, backend.getLimit());
+        Assert.assertEquals(0, backend.getInFlight());
+    }
+
+    @Test
+    public void testSynchronousRequestsBehindSlowOne() {
+        // The first request is slow, the rest are answered right away like cache hits
+        AtomicInteger requests = new AtomicInteger();
+        LimitedMandelbrotBackend backend = LimitedMandelbrotBackend.fixed(part -> requests.getAndIncrement() == 0
+                ? Single.just(new MandelbrotResult(part, new int[100])).delay(100, TimeUnit.MILLISECONDS, Schedulers.io())
+                : Single.fromCallable(() -> new MandelbrotResult(part, new int[100])), 1);
+
+        List<Single<MandelbrotResult>> queued = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            queued.add(backend.mandelbrot(PART));
+        }
+
+        // All are queued behind the slow one, then drained without recursing once per request
+        long results = Flowable.fromIterable(queued)
+                .flatMapSingle(single -> single)
+                .count()
+                .timeout(30, TimeUnit.SECONDS)
+                .blockingGet();
+
+        Assert.assertEquals(10_000, results);
+        Assert.assertEquals(10_000, requests.get());
+        Assert.assertEquals(0, backend.getInFlight());
+    }
+
+    @Test
+    public void testAdditiveIncrease() {
+        AimdLimiter limiter = new AimdLimiter(2, 4);
+
+        // Only grows while the limit is used
+        limiter.tryAcquire();
+        limiter.release(limiter.getEpoch(), false);
+        Assert.assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            Assert.assertEquals(limiter.getLimit(), acquired);
+
+            for (int j = 0; j < acquired; j++) {
+                limiter.release(limiter.getEpoch(), false);
+            }
+        }
+        Assert.assertEquals(4, limiter.getLimit());
+
+        // Requests started before a decrease don't decrease it again
+        int epoch = limiter.getEpoch();
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.release(epoch, true);
+        }
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+}
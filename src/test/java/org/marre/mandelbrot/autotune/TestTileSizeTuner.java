@@ -0,0 +1,91 @@
+package org.marre.mandelbrot.autotune;
+
+import io.reactivex.Single;
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestTileSizeTuner {
+    private static final MandelbrotPart WHOLE = MandelbrotPart.create(
+            new Dimension(1000, 700),
+            new Complex(-2, -1),
+            new Complex(1, 1),
+            100);
+
+    @Test
+    public void testPartsCoverRegions() {
+        TileSizeTuner tuner = TileSizeTuner.create(300, 50, 1000, 1000);
+
+        MandelbrotPart below = WHOLE.subPart(0, 0, 1000, 300);
+        MandelbrotPart above = WHOLE.subPart(0, 400, 1000, 300);
+
+        int[] covered = new int[1000 * 700];
+        List<Integer> widths = new ArrayList<>();
+        // Parts are created one ahead, as a pipeline with room for one part asks for them
+        for (MandelbrotPart part : tuner.parts(Arrays.asList(below, above)).blockingIterable(1)) {
+            // 1 ms per pixel for the first parts, so the parts shrink to the min size, then 100 ns per
+            // pixel, so they grow again
+            long pixelNanos = widths.size() < 10 ? 1_000_000L : 100L;
+            tuner.observe(part, pixelNanos * part.getSize().getWidth() * part.getSize().getHeight());
+            widths.add(part.getSize().getWidth());
+
+            Position offset = part.getOffset();
+            for (int y = 0; y < part.getSize().getHeight(); y++) {
+                for (int x = 0; x < part.getSize().getWidth(); x++) {
+                    covered[(offset.getY() + y) * 1000 + offset.getX() + x]++;
+                }
+            }
+        }
+
+        Assert.assertEquals(50, widths.get(9).intValue());
+        Assert.assertTrue("widths " + widths, widths.subList(10, widths.size()).stream().anyMatch(width -> width > 300));
+
+        for (int y = 0; y < 700; y++) {
+            for (int x = 0; x < 1000; x++) {
+                Assert.assertEquals(y < 300 || y >= 400 ? 1 : 0, covered[y * 1000 + x]);
+            }
+        }
+    }
+
+    @Test
+    public void testSizeFromTimePerPixel() {
+        TileSizeTuner tuner = TileSizeTuner.create(300, 50, 1000, 1000);
+        Assert.assertEquals(300, tuner.nextSize());
+
+        // 1 ms per 100 pixels, a second is 100 000 pixels
+        tuner.observe(WHOLE, 10_000L * 1000 * 700);
+        Assert.assertEquals(316, tuner.nextSize());
+
+        // Clamped
+        TileSizeTuner fast = TileSizeTuner.create(300, 50, 1000, 1000);
+        fast.observe(WHOLE, 1000 * 700);
+        Assert.assertEquals(1000, fast.nextSize());
+
+        Assert.assertEquals(1, fast.parts(Collections.singletonList(WHOLE)).count().blockingGet().longValue());
+    }
+
+    @Test
+    public void testOnlyCreatedPartsAreTimed() {
+        TileSizeTuner tuner = TileSizeTuner.create(300, 50, 1000, 1000);
+        MandelbrotBackend backend = tuner.observe(part -> Single.just(new MandelbrotResult(part, new int[part.getSize().getWidth() * part.getSize().getHeight()])));
+
+        // A coarse pass or a border strip
+        backend.mandelbrot(WHOLE.subPart(0, 0, 1000, 1)).blockingGet();
+        Assert.assertEquals(300, tuner.nextSize());
+
+        // Answered right away, so as large as allowed
+        MandelbrotPart first = tuner.parts(Collections.singletonList(WHOLE)).blockingFirst();
+        backend.mandelbrot(first).blockingGet();
+        Assert.assertEquals(1000, tuner.nextSize());
+    }
+}
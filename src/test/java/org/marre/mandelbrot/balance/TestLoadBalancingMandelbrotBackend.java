@@ -0,0 +1,124 @@
+package org.marre.mandelbrot.balance;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestLoadBalancingMandelbrotBackend {
+    private static final MandelbrotPart PART = MandelbrotPart.create(
+            new Dimension(10, 10),
+            new Complex(-2, -1),
+            new Complex(1, 1),
+            100);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testLeastOutstanding() {
+        Endpoint a = new Endpoint("a", part -> Single.never());
+        Endpoint b = new Endpoint("b", part -> Single.never());
+        LoadBalancingMandelbrotBackend backend = new LoadBalancingMandelbrotBackend(Arrays.asList(a, b), clock::get);
+
+        List<Disposable> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(backend.mandelbrot(PART).subscribe());
+        }
+
+        Assert.assertEquals(2, a.getOutstanding());
+        Assert.assertEquals(2, b.getOutstanding());
+
+        requests.forEach(Disposable::dispose);
+
+        Assert.assertEquals(0, a.getOutstanding());
+        Assert.assertEquals(0, b.getOutstanding());
+    }
+
+    @Test
+    public void testLowestLatency() {
+        Endpoint fast = new Endpoint("fast", respondAfter(10));
+        Endpoint slow = new Endpoint("slow", respondAfter(100));
+        LoadBalancingMandelbrotBackend backend = new LoadBalancingMandelbrotBackend(Arrays.asList(fast, slow), clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            backend.mandelbrot(PART).blockingGet();
+        }
+
+        // The slow endpoint is only tried once
+        Assert.assertEquals(19, fast.getRequests());
+        Assert.assertEquals(1, slow.getRequests());
+    }
+
+    @Test
+    public void testEjectFailing() {
+        Endpoint failing = new Endpoint("failing", part -> Single.error(new IOException("Connection refused")));
+        Endpoint working = new Endpoint("working", respondAfter(10));
+        LoadBalancingMandelbrotBackend backend = new LoadBalancingMandelbrotBackend(Arrays.asList(failing, working), clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            backend.mandelbrot(PART).onErrorReturnItem(new MandelbrotResult(PART, new int[0])).blockingGet();
+        }
+
+        Assert.assertEquals(LoadBalancingMandelbrotBackend.MAX_CONSECUTIVE_FAILURES, failing.getRequests());
+        Assert.assertTrue(failing.isEjected());
+
+        // Reinstated when the ejection has ended
+        clock.addAndGet(LoadBalancingMandelbrotBackend.BASE_EJECTION_NANOS);
+        Assert.assertSame(failing, backend.select(clock.get()));
+    }
+
+    @Test
+    public void testEjectSlow() {
+        Endpoint slow = new Endpoint("slow", respondAfter(100));
+        Endpoint fast = new Endpoint("fast", respondAfter(10));
+        LoadBalancingMandelbrotBackend backend = new LoadBalancingMandelbrotBackend(Arrays.asList(slow, fast), clock::get);
+
+        for (int i = 0; i < LoadBalancingMandelbrotBackend.MIN_SAMPLES; i++) {
+            fast.record(TimeUnit.MILLISECONDS.toNanos(10), true);
+        }
+        for (int i = 0; i < LoadBalancingMandelbrotBackend.MIN_SAMPLES - 1; i++) {
+            slow.record(TimeUnit.MILLISECONDS.toNanos(100), true);
+        }
+
+        // The fast endpoint is busy, so the next part goes to the slow one
+        for (int i = 0; i < 20; i++) {
+            fast.started();
+        }
+        backend.mandelbrot(PART).blockingGet();
+
+        Assert.assertTrue(slow.isEjected());
+        Assert.assertSame(fast, backend.select(clock.get()));
+    }
+
+    @Test
+    public void testNeverEjectLast() {
+        Endpoint failing = new Endpoint("failing", part -> Single.error(new IOException("Connection refused")));
+        LoadBalancingMandelbrotBackend backend = new LoadBalancingMandelbrotBackend(Arrays.asList(failing), clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            backend.mandelbrot(PART).onErrorReturnItem(new MandelbrotResult(PART, new int[0])).blockingGet();
+        }
+
+        Assert.assertEquals(20, failing.getRequests());
+        Assert.assertFalse(failing.isEjected());
+    }
+
+    private MandelbrotBackend respondAfter(long millis) {
+        return part -> Single.fromCallable(() -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+            return new MandelbrotResult(part, new int[100]);
+        });
+    }
+}
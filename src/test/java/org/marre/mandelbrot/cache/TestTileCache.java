@@ -0,0 +1,92 @@
+package org.marre.mandelbrot.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+public class TestTileCache {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        TileCache tileCache = TileCache.create(folder.getRoot().toPath(), 1024 * 1024);
+
+        for (int maxSteps : new int[]{200, 60000, 100000}) {
+            MandelbrotPart mandelbrotPart = part(0, maxSteps);
+            int[] pixels = pixels(mandelbrotPart);
+
+            Assert.assertNull(tileCache.get(mandelbrotPart));
+
+            tileCache.put(mandelbrotPart, pixels);
+
+            Assert.assertArrayEquals(pixels, tileCache.get(mandelbrotPart));
+        }
+
+        Assert.assertEquals(3, tileCache.getHits());
+        Assert.assertEquals(3, tileCache.getMisses());
+    }
+
+    @Test
+    public void testKeyIncludesCoordinates() throws Exception {
+        TileCache tileCache = TileCache.create(folder.getRoot().toPath(), 1024 * 1024);
+
+        tileCache.put(part(0, 200), pixels(part(0, 200)));
+
+        Assert.assertNull(tileCache.get(part(1, 200)));
+        Assert.assertNull(tileCache.get(part(0, 201)));
+    }
+
+    @Test
+    public void testSharedBetweenInstances() throws Exception {
+        TileCache first = TileCache.create(folder.getRoot().toPath(), 1024 * 1024);
+        first.put(part(0, 200), pixels(part(0, 200)));
+
+        TileCache second = TileCache.create(folder.getRoot().toPath(), 1024 * 1024);
+        Assert.assertArrayEquals(pixels(part(0, 200)), second.get(part(0, 200)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        // Each part is 100x100 pixels with one byte per pixel, room for 3 parts
+        TileCache tileCache = TileCache.create(folder.getRoot().toPath(), 35000);
+
+        for (int i = 0; i < 3; i++) {
+            tileCache.put(part(i, 200), pixels(part(i, 200)));
+            Files.setLastModifiedTime(tileCache.file(part(i, 200)), FileTime.fromMillis(1000L * i));
+        }
+
+        // Use the oldest part so that part 1 becomes the least recently used
+        Assert.assertNotNull(tileCache.get(part(0, 200)));
+
+        tileCache.put(part(3, 200), pixels(part(3, 200)));
+
+        Assert.assertNotNull(tileCache.get(part(0, 200)));
+        Assert.assertNull(tileCache.get(part(1, 200)));
+        Assert.assertNotNull(tileCache.get(part(2, 200)));
+        Assert.assertNotNull(tileCache.get(part(3, 200)));
+    }
+
+    private static MandelbrotPart part(int i, int maxSteps) {
+        return MandelbrotPart.create(
+                new Dimension(100, 100),
+                new Complex(-2 + i, -2),
+                new Complex(-1 + i, -1),
+                maxSteps);
+    }
+
+    private static int[] pixels(MandelbrotPart mandelbrotPart) {
+        int[] pixels = new int[mandelbrotPart.getSize().getWidth() * mandelbrotPart.getSize().getHeight()];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (i * 31) % (mandelbrotPart.getMaxSteps() + 1);
+        }
+        return pixels;
+    }
+}
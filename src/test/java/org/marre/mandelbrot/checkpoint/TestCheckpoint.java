@@ -0,0 +1,135 @@
+package org.marre.mandelbrot.checkpoint;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestCheckpoint {
+    private static final MandelbrotPart WHOLE = MandelbrotPart.create(
+            new Dimension(100, 80), new Complex(-2, -1), new Complex(1, 1), 500);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("render.checkpoint");
+        List<MandelbrotPart> regions = Collections.singletonList(WHOLE);
+
+        Checkpoint checkpoint = Checkpoint.create(file, WHOLE, regions);
+        Assert.assertEquals(regions, checkpoint.getRemaining());
+
+        List<MandelbrotPart> parts = WHOLE.split(40);
+        for (int i = 0; i < 4; i++) {
+            checkpoint.append(result(parts.get(i)));
+        }
+        checkpoint.close();
+
+        Checkpoint resumed = Checkpoint.resume(file, WHOLE, regions);
+        Assert.assertEquals(4, resumed.getDoneCount());
+
+        List<MandelbrotResult> done = new ArrayList<>();
+        resumed.replay(done::add);
+        Assert.assertEquals(4, done.size());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(parts.get(i), done.get(i).getMandelbrotPart());
+            Assert.assertArrayEquals(result(parts.get(i)).getPixels(), done.get(i).getPixels());
+        }
+
+        // Parts 0-2 are the first band, part 3 the start of the second
+        Assert.assertEquals(Collections.singletonList(WHOLE.subPart(40, 40, 60, 40)), resumed.getRemaining());
+
+        // More parts are appended after the replayed ones
+        resumed.append(result(parts.get(4)));
+        resumed.close();
+        Assert.assertEquals(5, Checkpoint.resume(file, WHOLE, regions).getDoneCount());
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("render.checkpoint");
+        List<MandelbrotPart> regions = Collections.singletonList(WHOLE);
+        List<MandelbrotPart> parts = WHOLE.split(40);
+
+        Checkpoint checkpoint = Checkpoint.create(file, WHOLE, regions);
+        checkpoint.append(result(parts.get(0)));
+        checkpoint.append(result(parts.get(1)));
+        checkpoint.close();
+
+        // The process died while writing the second part
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        Checkpoint resumed = Checkpoint.resume(file, WHOLE, regions);
+        Assert.assertEquals(1, resumed.getDoneCount());
+        resumed.append(result(parts.get(1)));
+        resumed.close();
+
+        List<MandelbrotResult> done = new ArrayList<>();
+        Checkpoint.resume(file, WHOLE, regions).replay(done::add);
+        Assert.assertEquals(2, done.size());
+        Assert.assertEquals(parts.get(1), done.get(1).getMandelbrotPart());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOtherRender() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("render.checkpoint");
+        Checkpoint.create(file, WHOLE, Collections.singletonList(WHOLE)).close();
+
+        MandelbrotPart deeper = MandelbrotPart.create(WHOLE.getSize(), WHOLE.getMinc(), WHOLE.getMaxc(), 1000);
+        Checkpoint.resume(file, deeper, Collections.singletonList(deeper));
+    }
+
+    @Test
+    public void testRemaining() {
+        MandelbrotPart below = WHOLE.subPart(0, 0, 100, 30);
+        MandelbrotPart above = WHOLE.subPart(0, 50, 100, 30);
+
+        List<int[]> done = Arrays.asList(
+                new int[] { 0, 0, 50, 10 },
+                new int[] { 50, 0, 50, 10 },
+                new int[] { 0, 10, 30, 20 },
+                new int[] { 0, 50, 100, 30 });
+
+        List<MandelbrotPart> remaining = Checkpoint.remaining(Arrays.asList(below, above), new ArrayList<>(done));
+
+        Assert.assertEquals(Collections.singletonList(WHOLE.subPart(30, 10, 70, 20)), remaining);
+    }
+
+    @Test
+    public void testRemainingGaps() {
+        // A hole in the middle leaves gaps on all four sides
+        List<int[]> done = new ArrayList<>(Collections.singletonList(new int[] { 20, 20, 10, 10 }));
+
+        List<MandelbrotPart> remaining = Checkpoint.remaining(Collections.singletonList(WHOLE), done);
+
+        long pixels = 0;
+        for (MandelbrotPart part : remaining) {
+            pixels += part.getSize().getWidth() * part.getSize().getHeight();
+        }
+        Assert.assertEquals(100 * 80 - 10 * 10, pixels);
+        Assert.assertEquals(4, remaining.size());
+    }
+
+    private static MandelbrotResult result(MandelbrotPart part) {
+        int[] pixels = new int[part.getSize().getWidth() * part.getSize().getHeight()];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (part.getOffset().getX() + i) % 37;
+        }
+        return new MandelbrotResult(part, pixels);
+    }
+}
@@ -0,0 +1,119 @@
+package org.marre.mandelbrot.checkpoint;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestDeepening {
+    private static final MandelbrotPart SHALLOW = MandelbrotPart.create(
+            new Dimension(200, 160), new Complex(-0.6, 0.6), new Complex(-0.5, 0.68), 50);
+
+    private static final MandelbrotPart DEEP = MandelbrotPart.create(
+            SHALLOW.getSize(), SHALLOW.getMinc(), SHALLOW.getMaxc(), 2000);
+
+    private final LocalMandelbrotBackend backend = LocalMandelbrotBackend.create(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameAsDeepRender() throws IOException {
+        Path file = checkpoint(SHALLOW.split(50));
+
+        Deepening deepening = Deepening.open(file, DEEP, Collections.singletonList(DEEP), 16);
+        Assert.assertEquals(50, deepening.getPreviousMaxSteps());
+
+        int[] pixels = new int[200 * 160];
+        long[] reused = new long[1];
+        deepening.replay(result -> {
+            Assert.assertEquals(DEEP.getMaxSteps(), result.getMandelbrotPart().getMaxSteps());
+            reused[0] += draw(pixels, result);
+        });
+        Assert.assertEquals(deepening.getReusedPixels(), reused[0]);
+
+        long requested = 0;
+        for (MandelbrotPart part : deepening.getDeeper()) {
+            Assert.assertEquals(DEEP.getMaxSteps(), part.getMaxSteps());
+            requested += draw(pixels, backend.mandelbrot(part).blockingGet());
+        }
+
+        Assert.assertEquals(200 * 160, reused[0] + requested);
+        // At most a few chaotic pixels near the boundary differ, the parts start at other offsets and round differently
+        int[] expected = backend.mandelbrot(DEEP).blockingGet().getPixels();
+        int differ = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            if (pixels[i] != expected[i]) {
+                differ++;
+            }
+        }
+        Assert.assertTrue("differ " + differ, differ <= pixels.length / 1000);
+
+        // Most of the view is near the boundary, still a third of the pixels are in tiles that all escaped
+        Assert.assertTrue("reused " + reused[0], reused[0] > 200 * 160 / 3);
+    }
+
+    @Test
+    public void testPartlyDone() throws IOException {
+        List<MandelbrotPart> parts = SHALLOW.split(50);
+        Path file = checkpoint(parts.subList(0, 4));
+
+        Deepening deepening = Deepening.open(file, DEEP, Collections.singletonList(DEEP), 16);
+
+        // Parts 0-3 are the first band, the rest is requested whole
+        Assert.assertTrue(deepening.getDeeper().contains(DEEP.subPart(0, 50, 200, 110)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotDeeper() throws IOException {
+        Path file = checkpoint(SHALLOW.split(50));
+        Deepening.open(file, SHALLOW, Collections.singletonList(SHALLOW), 16);
+    }
+
+    @Test
+    public void testUnresolvedRuns() {
+        MandelbrotPart part = DEEP.subPart(10, 20, 40, 20);
+        int[] pixels = new int[40 * 20];
+
+        // Unresolved pixels in the first two of three tiles in the first row, and in the last tile in the second
+        pixels[5] = 50;
+        pixels[3 * 40 + 20] = 50;
+        pixels[19 * 40 + 39] = 70;
+
+        List<int[]> tiles = Deepening.unresolved(new MandelbrotResult(part, pixels), 16, 50);
+
+        Assert.assertEquals(2, tiles.size());
+        Assert.assertArrayEquals(new int[] { 10, 20, 32, 16 }, tiles.get(0));
+        Assert.assertArrayEquals(new int[] { 42, 36, 8, 4 }, tiles.get(1));
+    }
+
+    private Path checkpoint(List<MandelbrotPart> parts) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("shallow.checkpoint");
+        try (Checkpoint checkpoint = Checkpoint.create(file, SHALLOW, Collections.singletonList(SHALLOW))) {
+            for (MandelbrotPart part : parts) {
+                checkpoint.append(backend.mandelbrot(part).blockingGet());
+            }
+        }
+        return file;
+    }
+
+    private static int draw(int[] pixels, MandelbrotResult result) {
+        MandelbrotPart part = result.getMandelbrotPart();
+        int width = part.getSize().getWidth();
+        for (int row = 0; row < part.getSize().getHeight(); row++) {
+            System.arraycopy(result.getPixels(), row * width, pixels, (part.getOffset().getY() + row) * 200 + part.getOffset().getX(), width);
+        }
+        return result.getPixels().length;
+    }
+}
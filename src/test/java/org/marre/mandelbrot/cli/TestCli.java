@@ -0,0 +1,99 @@
+package org.marre.mandelbrot.cli;
+
+import io.reactivex.Flowable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.marre.mandelbrot.render.CoarseGrid;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+public class TestCli {
+    private static final MandelbrotPart WHOLE = MandelbrotPart.create(
+            new Dimension(320, 240),
+            new Complex(-2, -1.2),
+            new Complex(1, 1.2),
+            200);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LocalMandelbrotBackend backend = LocalMandelbrotBackend.create(1);
+    private final List<MandelbrotPart> parts = WHOLE.split(40);
+
+    @Test
+    public void testLptFromProgressivePass() {
+        CoarseGrid coarseGrid = CoarseGrid.render(backend, WHOLE, 4, 40, 4).blockingGet();
+        List<MandelbrotPart> sorted = Cli.sortParts(Flowable.fromIterable(parts), coarseGrid, true).toList().blockingGet();
+
+        assertDescending(parts, sorted, coarseGrid::iterations);
+        assertCostliestFirst(sorted);
+    }
+
+    @Test
+    public void testLptFromCostProbe() {
+        // Without --progressive the parts are sorted by the coarser cost probe
+        CoarseGrid costProbe = CoarseGrid.render(backend, WHOLE, Cli.COST_PROBE_SCALE, 40, 4).blockingGet();
+        List<MandelbrotPart> sorted = Cli.sortParts(Flowable.fromIterable(parts), costProbe, true).toList().blockingGet();
+
+        assertDescending(parts, sorted, costProbe::iterations);
+        assertCostliestFirst(sorted);
+    }
+
+    @Test
+    public void testMostDetailFirstWithoutLpt() {
+        CoarseGrid coarseGrid = CoarseGrid.render(backend, WHOLE, 4, 40, 4).blockingGet();
+        List<MandelbrotPart> sorted = Cli.sortParts(Flowable.fromIterable(parts), coarseGrid, false).toList().blockingGet();
+
+        assertDescending(parts, sorted, coarseGrid::variance);
+    }
+
+    @Test
+    public void testSameFile() throws IOException {
+        File checkpoint = folder.newFile("a.ckpt");
+        File relative = new File(checkpoint.getParentFile(), "./sub/../a.ckpt");
+        File link = Files.createSymbolicLink(new File(folder.getRoot(), "b.ckpt").toPath(), checkpoint.toPath()).toFile();
+
+        Assert.assertTrue(Cli.sameFile(checkpoint, new File(checkpoint.getPath())));
+        Assert.assertTrue(Cli.sameFile(checkpoint, relative));
+        Assert.assertTrue(Cli.sameFile(checkpoint, link));
+        Assert.assertFalse(Cli.sameFile(checkpoint, new File(folder.getRoot(), "c.ckpt")));
+    }
+
+    private static void assertDescending(List<MandelbrotPart> parts, List<MandelbrotPart> sorted, ToDoubleFunction<MandelbrotPart> estimate) {
+        Assert.assertEquals(new HashSet<>(parts), new HashSet<>(sorted));
+        Assert.assertEquals(parts.size(), sorted.size());
+
+        for (int i = 1; i < sorted.size(); i++) {
+            Assert.assertTrue("part " + i, estimate.applyAsDouble(sorted.get(i - 1)) >= estimate.applyAsDouble(sorted.get(i)));
+        }
+    }
+
+    /**
+     * The first quarter of the parts takes more iterations than the last quarter.
+     */
+    private void assertCostliestFirst(List<MandelbrotPart> sorted) {
+        int quarter = sorted.size() / 4;
+        Assert.assertTrue(iterations(sorted.subList(0, quarter)) > iterations(sorted.subList(sorted.size() - quarter, sorted.size())));
+    }
+
+    private long iterations(List<MandelbrotPart> parts) {
+        long sum = 0;
+        for (MandelbrotPart part : parts) {
+            for (int pixel : backend.mandelbrot(part).blockingGet().getPixels()) {
+                sum += pixel;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,100 @@
+package org.marre.mandelbrot.cli;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+public class TestStreamingPngWriter {
+    @Test
+    public void testCombineAdler32() {
+        byte[] data = new byte[100_000];
+        new Random(17).nextBytes(data);
+
+        for (int split : new int[] { 0, 1, 65521, 70_000, data.length }) {
+            Adler32 whole = new Adler32();
+            whole.update(data, 0, data.length);
+
+            Adler32 first = new Adler32();
+            first.update(data, 0, split);
+            Adler32 second = new Adler32();
+            second.update(data, split, data.length - split);
+
+            Assert.assertEquals(whole.getValue(), StreamingPngWriter.combineAdler32(first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    @Test
+    public void testBandsInAnyOrder() throws IOException {
+        ImageCanvas canvas = createCanvas(123, 45);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingPngWriter writer = StreamingPngWriter.start(out, canvas, 10, Deflater.DEFAULT_COMPRESSION, Runnable::run);
+        int headerLength = out.size();
+
+        // The last band is drawn first, but can't be written before the others
+        for (int y = 40; y < 45; y++) {
+            writer.drawn(y, 123);
+        }
+        Assert.assertEquals(headerLength, out.size());
+
+        // The first band is drawn in two halves
+        for (int y = 0; y < 10; y++) {
+            writer.drawn(y, 60);
+            writer.drawn(y, 63);
+        }
+        Assert.assertTrue(out.size() > headerLength);
+
+        // The rest of the bands are never marked as drawn
+        writer.finish();
+
+        assertPng(canvas, out.toByteArray());
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        ImageCanvas canvas = createCanvas(300, 1000);
+
+        for (int i = 0; i < 10; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StreamingPngWriter.write(out, canvas, 7);
+            assertPng(canvas, out.toByteArray());
+        }
+    }
+
+    private static ImageCanvas createCanvas(int width, int height) {
+        ImageCanvas canvas = Canvas.create(new Dimension(width, height));
+        Random random = new Random(4711);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Smooth with some noise, as a mandelbrot
+                row[x] = ((x & 0xff) << 16) | ((y & 0xff) << 8) | random.nextInt(4);
+            }
+            canvas.setRow(y, 0, row, 0, width);
+        }
+        return canvas;
+    }
+
+    private static void assertPng(ImageCanvas canvas, byte[] png) throws IOException {
+        BufferedImage expected = canvas.getImage();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        Assert.assertEquals(expected.getWidth(), image.getWidth());
+        Assert.assertEquals(expected.getHeight(), image.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                Assert.assertEquals(expected.getRGB(x, y) & 0xffffff, image.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+}
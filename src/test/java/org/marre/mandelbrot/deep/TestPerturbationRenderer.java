@@ -0,0 +1,87 @@
+package org.marre.mandelbrot.deep;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+public class TestPerturbationRenderer {
+    @Test
+    public void testSameAsDoubles() {
+        // Centered outside the set, so the pixels inside it outlive the first reference and are re-referenced
+        double pixelSize = 0.02;
+        DeepView view = DeepView.create(new BigDecimal(0.3), BigDecimal.ZERO, pixelSize, new Dimension(200, 150), 200);
+        PerturbationRenderer renderer = PerturbationRenderer.create(2);
+
+        int[] pixels = renderer.render(view);
+
+        MandelbrotPart part = MandelbrotPart.create(
+                new Dimension(200, 150),
+                new Complex(0.3 - 100 * pixelSize, -75 * pixelSize),
+                new Complex(0.3 + 100 * pixelSize, 75 * pixelSize),
+                200);
+        int[] expected = LocalMandelbrotBackend.create(1).mandelbrot(part).blockingGet().getPixels();
+
+        // Only pixels at the rounding error from an escape or a periodic orbit may differ
+        int differing = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            if (pixels[i] != expected[i]) {
+                differing++;
+            }
+        }
+        Assert.assertTrue(differing <= pixels.length / 1000);
+        Assert.assertTrue(renderer.getReferences() > 1);
+        Assert.assertEquals(0, renderer.getGlitchedPixels());
+    }
+
+    @Test
+    public void testDeepZoom() {
+        // Pixels 1e-18 apart, far below what a double can tell apart around the center
+        DeepView view = DeepView.create(
+                new BigDecimal("-0.743643887037158704752191506114774"),
+                new BigDecimal("0.131825904205311970493132056385139"),
+                1e-18,
+                new Dimension(40, 30),
+                20000);
+        PerturbationRenderer renderer = PerturbationRenderer.create(2);
+
+        int[] pixels = renderer.render(view);
+
+        int[][] corners = { { 0, 0 }, { 39, 0 }, { 0, 29 }, { 39, 29 } };
+        for (int[] corner : corners) {
+            int expected = iterations(view.re(corner[0]), view.im(corner[1]), view.getMaxSteps(), view.mathContext());
+            Assert.assertTrue(expected < view.getMaxSteps());
+            Assert.assertEquals(expected, pixels[corner[1] * 40 + corner[0]]);
+        }
+        Assert.assertNotEquals(pixels[0], pixels[39]);
+        Assert.assertEquals(0, renderer.getGlitchedPixels());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPixelSizeUnderflow() {
+        DeepView.create(BigDecimal.ZERO, BigDecimal.ZERO, 1e-300, new Dimension(40, 30), 100);
+    }
+
+    /**
+     * Iterations of one point, every step in arbitrary precision.
+     */
+    private static int iterations(BigDecimal cre, BigDecimal cim, int maxSteps, MathContext mathContext) {
+        BigDecimal zre = BigDecimal.ZERO;
+        BigDecimal zim = BigDecimal.ZERO;
+        BigDecimal four = BigDecimal.valueOf(4);
+        for (int i = 0; i < maxSteps; i++) {
+            if (zre.multiply(zre, mathContext).add(zim.multiply(zim, mathContext), mathContext).compareTo(four) > 0) {
+                return i;
+            }
+            BigDecimal nextZre = zre.multiply(zre, mathContext).subtract(zim.multiply(zim, mathContext), mathContext).add(cre, mathContext);
+            zim = zre.multiply(zim, mathContext).multiply(BigDecimal.valueOf(2)).add(cim, mathContext);
+            zre = nextZre;
+        }
+        return maxSteps;
+    }
+}
@@ -0,0 +1,221 @@
+package org.marre.mandelbrot.distributed;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestCoordinator {
+    private static final MandelbrotPart WHOLE = MandelbrotPart.create(
+            new Dimension(200, 150), new Complex(-2, -1.5), new Complex(1, 1.5), 200);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LocalMandelbrotBackend backend = LocalMandelbrotBackend.create(1);
+    private final List<Disposable> workers = new ArrayList<>();
+    private Coordinator coordinator;
+
+    @After
+    public void teardown() throws IOException {
+        if (coordinator != null) {
+            coordinator.close();
+        }
+        workers.forEach(Disposable::dispose);
+    }
+
+    @Test
+    public void testWorkers() throws Exception {
+        coordinator = start(10_000);
+        List<Worker> started = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Worker worker = Worker.create(backend, 2, 2);
+            workers.add(worker.work(coordinator.getAddress()).subscribe());
+            started.add(worker);
+        }
+        awaitWorkers(3);
+
+        assertRendered(WHOLE.split(30));
+
+        Assert.assertEquals(35, coordinator.getCompleted());
+        Assert.assertEquals(35, coordinator.getLeased());
+        Assert.assertEquals(0, coordinator.getRedelivered());
+        for (Worker worker : started) {
+            Assert.assertTrue(worker.getDone() > 0);
+        }
+    }
+
+    @Test
+    public void testExpiredLease() throws Exception {
+        coordinator = start(200);
+
+        // Pulls parts and never returns them
+        try (Socket stuck = connect(coordinator)) {
+            awaitWorkers(1);
+            Single<List<MandelbrotResult>> results = Flowable.fromIterable(WHOLE.split(50))
+                    .flatMapSingle(coordinator::mandelbrot)
+                    .toList()
+                    .cache();
+            results.subscribe((list, err) -> { });
+
+            Assert.assertTrue(pull(stuck, 100) > 0);
+            workers.add(Worker.create(backend, 4, 1).work(coordinator.getAddress()).subscribe());
+
+            Assert.assertEquals(12, results.timeout(10, TimeUnit.SECONDS).blockingGet().size());
+            Assert.assertTrue(coordinator.getRedelivered() > 0);
+        }
+    }
+
+    @Test
+    public void testDisconnectedWorker() throws Exception {
+        coordinator = start(60_000);
+
+        Socket gone = connect(coordinator);
+        awaitWorkers(1);
+        Single<MandelbrotResult> result = coordinator.mandelbrot(WHOLE).cache();
+        result.subscribe((part, err) -> { });
+        Assert.assertEquals(1, pull(gone, 1));
+        gone.close();
+
+        // Handed to the next worker long before the lease expires
+        workers.add(Worker.create(backend, 1, 1).work(coordinator.getAddress()).subscribe());
+        Assert.assertSame(WHOLE, result.timeout(10, TimeUnit.SECONDS).blockingGet().getMandelbrotPart());
+        Assert.assertEquals(1, coordinator.getRedelivered());
+    }
+
+    @Test
+    public void testFailingPart() throws Exception {
+        coordinator = start(60_000);
+        Worker worker = Worker.create(part -> Single.error(new IOException("Out of steps")), 1, 1);
+        workers.add(worker.work(coordinator.getAddress()).subscribe());
+        awaitWorkers(1);
+
+        try {
+            coordinator.mandelbrot(WHOLE).timeout(10, TimeUnit.SECONDS).blockingGet();
+            Assert.fail("Expected the part to fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(Coordinator.MAX_ATTEMPTS, worker.getFailed());
+    }
+
+    @Test
+    public void testWorkerProcesses() throws Exception {
+        coordinator = start(10_000);
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        List<File> logs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            // Not inherited, the forked test JVM talks to maven over its stdout
+            File log = folder.newFile("worker-" + i + ".log");
+            logs.add(log);
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    "org.marre.mandelbrot.cli.WorkerCli", "-b", "local", "127.0.0.1:" + coordinator.getAddress().getPort())
+                    .redirectErrorStream(true)
+                    .redirectOutput(log)
+                    .start());
+        }
+
+        try {
+            awaitWorkers(2);
+            assertRendered(WHOLE.split(25));
+
+            // The workers are done when the coordinator is
+            coordinator.close();
+            for (Process process : processes) {
+                Assert.assertTrue(process.waitFor(20, TimeUnit.SECONDS));
+                Assert.assertEquals(0, process.exitValue());
+            }
+        } catch (AssertionError | RuntimeException e) {
+            StringBuilder output = new StringBuilder(e.toString());
+            for (File log : logs) {
+                output.append("\n").append(log.getName()).append(" :\n")
+                        .append(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+            }
+            throw new AssertionError(output.toString(), e);
+        } finally {
+            processes.forEach(Process::destroyForcibly);
+        }
+    }
+
+    private void assertRendered(List<MandelbrotPart> parts) {
+        List<MandelbrotResult> results = Flowable.fromIterable(parts)
+                .flatMapSingle(coordinator::mandelbrot)
+                .toList()
+                .timeout(30, TimeUnit.SECONDS)
+                .blockingGet();
+
+        Assert.assertEquals(parts.size(), results.size());
+        for (MandelbrotResult result : results) {
+            MandelbrotPart part = result.getMandelbrotPart();
+            Assert.assertTrue(parts.contains(part));
+
+            // The workers only get the corners of the parts
+            MandelbrotPart sent = MandelbrotPart.create(part.getSize(), part.getMinc(), part.getMaxc(), part.getMaxSteps());
+            Assert.assertArrayEquals(backend.mandelbrot(sent).blockingGet().getPixels(), result.getPixels());
+        }
+    }
+
+    private static Coordinator start(long leaseMillis) throws IOException {
+        Coordinator coordinator = Coordinator.create(new InetSocketAddress("127.0.0.1", 0), leaseMillis);
+        coordinator.start();
+        return coordinator;
+    }
+
+    private void awaitWorkers(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (coordinator.getWorkers() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, coordinator.getWorkers());
+    }
+
+    private static Socket connect(Coordinator coordinator) throws IOException {
+        Socket socket = new Socket("127.0.0.1", coordinator.getAddress().getPort());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(WorkProtocol.MAGIC);
+        out.flush();
+        return socket;
+    }
+
+    /**
+     * Pulls parts like a worker and returns how many were leased.
+     */
+    private static int pull(Socket socket, int parts) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeByte(WorkProtocol.PULL);
+        out.writeInt(parts);
+        out.flush();
+
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        Assert.assertEquals(WorkProtocol.PARTS, in.readByte());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            in.readLong();
+            WorkProtocol.readPart(in);
+        }
+        return count;
+    }
+}
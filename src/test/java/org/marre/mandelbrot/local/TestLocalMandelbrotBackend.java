@@ -0,0 +1,60 @@
+package org.marre.mandelbrot.local;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotResult;
+
+public class TestLocalMandelbrotBackend {
+    @Test
+    public void testShortcutsMatchPlainIteration() {
+        for (double re = -2.0; re <= 1.0; re += 0.01) {
+            for (double im = -1.5; im <= 1.5; im += 0.01) {
+                Assert.assertEquals(
+                        "c=" + re + "+" + im + "i",
+                        plainIterations(re, im, 500),
+                        MandelbrotKernel.iterations(re, im, 500));
+            }
+        }
+    }
+
+    @Test
+    public void testMandelbrot() {
+        MandelbrotPart mandelbrotPart = MandelbrotPart.create(
+                new Dimension(123, 77),
+                new Complex(-2, -1),
+                new Complex(1, 1),
+                100);
+
+        MandelbrotResult result = LocalMandelbrotBackend.create(3).mandelbrot(mandelbrotPart).blockingGet();
+
+        Assert.assertEquals(mandelbrotPart, result.getMandelbrotPart());
+        Assert.assertEquals(123 * 77, result.getPixels().length);
+
+        double pixelSizeRe = 3.0 / 123;
+        double pixelSizeIm = 2.0 / 77;
+        for (int y = 0; y < 77; y++) {
+            for (int x = 0; x < 123; x++) {
+                Assert.assertEquals(
+                        plainIterations(-2 + x * pixelSizeRe, -1 + y * pixelSizeIm, 100),
+                        result.getPixels()[y * 123 + x]);
+            }
+        }
+    }
+
+    private static int plainIterations(double cre, double cim, int maxSteps) {
+        double zre = 0;
+        double zim = 0;
+        for (int i = 0; i < maxSteps; i++) {
+            if (zre * zre + zim * zim > 4) {
+                return i;
+            }
+            double tmp = zre * zre - zim * zim + cre;
+            zim = 2 * zre * zim + cim;
+            zre = tmp;
+        }
+        return maxSteps;
+    }
+}
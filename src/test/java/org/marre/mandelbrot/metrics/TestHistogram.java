@@ -0,0 +1,46 @@
+package org.marre.mandelbrot.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHistogram {
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = Histogram.bucket(value);
+            Assert.assertTrue(value <= Histogram.upperBound(bucket));
+            Assert.assertTrue(bucket == 0 || value > Histogram.upperBound(bucket - 1));
+        }
+
+        Assert.assertTrue(Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)) >= Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testQuantiles() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1_000_000, histogram.getMax());
+        Assert.assertEquals(500_500_000, histogram.getSum());
+
+        assertWithin(500_000, histogram.quantile(0.5));
+        assertWithin(990_000, histogram.quantile(0.99));
+        assertWithin(999_000, histogram.quantile(0.999));
+        Assert.assertEquals(1_000_000, histogram.quantile(1.0));
+    }
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+
+        Assert.assertEquals(0, histogram.quantile(0.5));
+        Assert.assertEquals(0, histogram.getMax());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertEquals(expected, actual, expected / 16.0);
+    }
+}
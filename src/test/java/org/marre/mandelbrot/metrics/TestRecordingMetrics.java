@@ -0,0 +1,67 @@
+package org.marre.mandelbrot.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class TestRecordingMetrics {
+    @Test
+    public void testPrometheus() {
+        RecordingMetrics metrics = record();
+
+        StringWriter writer = new StringWriter();
+        metrics.writePrometheus(writer);
+        String text = writer.toString();
+
+        Assert.assertTrue(text.contains("mandelbrot_requests_total 1"));
+        Assert.assertTrue(text.contains("mandelbrot_errors_total{status=\"502\"} 1"));
+        Assert.assertTrue(text.contains("mandelbrot_errors_total{status=\"0\"} 1"));
+        Assert.assertTrue(text.contains("mandelbrot_request_latency_seconds_count 1"));
+        Assert.assertTrue(text.contains("mandelbrot_in_flight_requests_max 1"));
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        RecordingMetrics metrics = record();
+
+        StringWriter writer = new StringWriter();
+        metrics.writeJson(writer);
+        JsonNode json = new ObjectMapper().readTree(writer.toString());
+
+        Assert.assertEquals(1, json.get("requests").asLong());
+        Assert.assertEquals(2048, json.get("bytesReceived").asLong());
+        Assert.assertEquals(1, json.get("retries").asLong());
+        Assert.assertEquals(0, json.get("hedges").asLong());
+        Assert.assertEquals(0, json.get("inFlight").asLong());
+        Assert.assertEquals(1, json.get("maxInFlight").asLong());
+
+        // Only the statuses that occurred
+        Assert.assertEquals(2, json.get("errors").size());
+        Assert.assertEquals(1, json.get("errors").get("502").asLong());
+        Assert.assertEquals(1, json.get("errors").get("0").asLong());
+
+        JsonNode latency = json.get("latency");
+        Assert.assertEquals(1, latency.get("count").asLong());
+        Assert.assertEquals(1500.0, latency.get("sumMs").asDouble(), 0.0);
+        Assert.assertEquals(1500.0, latency.get("maxMs").asDouble(), 0.0);
+        Assert.assertEquals(1500.0, latency.get("p50Ms").asDouble(), 1500.0 / 16);
+        Assert.assertEquals(0, json.get("decode").get("count").asLong());
+        Assert.assertEquals(0.0, json.get("queueWait").get("p99Ms").asDouble(), 0.0);
+    }
+
+    private static RecordingMetrics record() {
+        RecordingMetrics metrics = RecordingMetrics.create();
+        metrics.requestStarted();
+        metrics.latency(1_500_000_000L);
+        metrics.bytesReceived(2048);
+        metrics.retried();
+        metrics.failed(502);
+        metrics.failed(0);
+        metrics.requestFinished();
+        return metrics;
+    }
+}
@@ -0,0 +1,47 @@
+package org.marre.mandelbrot.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+public class TestCoarseGrid {
+    @Test
+    public void testCoarsePart() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(1000, 500),
+                new Complex(-2, -1),
+                new Complex(2, 1),
+                100);
+
+        MandelbrotPart coarsePart = CoarseGrid.coarsePart(whole, 8);
+
+        // 1000 / 8 = 125, 500 / 8 = 62.5 so the last row reaches outside the whole part
+        Assert.assertEquals(new Dimension(125, 63), coarsePart.getSize());
+        Assert.assertEquals(whole.getMinc(), coarsePart.getMinc());
+        Assert.assertEquals(8 * whole.getPixelSizeRe(), coarsePart.getPixelSizeRe(), 1e-12);
+        Assert.assertEquals(8 * whole.getPixelSizeIm(), coarsePart.getPixelSizeIm(), 1e-12);
+    }
+
+    @Test
+    public void testVarianceAndIterations() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(400, 400),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                100);
+
+        CoarseGrid coarseGrid = CoarseGrid.render(LocalMandelbrotBackend.create(2), whole, 4, 50, 4).blockingGet();
+
+        // Inside the main cardioid every pixel runs to max steps
+        MandelbrotPart inside = whole.subPart(240, 180, 40, 40);
+        Assert.assertEquals(0.0, coarseGrid.variance(inside), 0.0);
+        Assert.assertEquals(40 * 40 * 100, coarseGrid.iterations(inside), 0.0);
+
+        // The boundary has a lot of detail
+        MandelbrotPart boundary = whole.subPart(150, 180, 40, 40);
+        Assert.assertTrue(coarseGrid.variance(boundary) > 100);
+    }
+}
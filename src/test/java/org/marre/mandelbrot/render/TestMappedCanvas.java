@@ -0,0 +1,68 @@
+package org.marre.mandelbrot.render;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.io.IOException;
+
+public class TestMappedCanvas {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSameAsImageCanvas() throws IOException {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(300, 200),
+                new Complex(-2, -1),
+                new Complex(1, 1),
+                256);
+        LocalMandelbrotBackend backend = LocalMandelbrotBackend.create();
+
+        ImageCanvas imageCanvas = Canvas.create(whole.getSize());
+
+        // Small chunks, so that parts cross chunks
+        try (MappedCanvas mappedCanvas = MappedCanvas.create(temporaryFolder.newFile().toPath(), whole.getSize(), Palette.grey(), 7 * 300 * 4)) {
+            MandelbrotPart coarse = MandelbrotPart.create(new Dimension(75, 50), whole.getMinc(), whole.getMaxc(), 256);
+            MandelbrotResult coarseResult = backend.mandelbrot(coarse).blockingGet();
+            imageCanvas.drawScaled(coarseResult, 4, new Position(0, 0));
+            mappedCanvas.drawScaled(coarseResult, 4, new Position(0, 0));
+            assertSame(imageCanvas, mappedCanvas);
+
+            for (MandelbrotPart part : whole.split(64)) {
+                MandelbrotResult result = backend.mandelbrot(part).blockingGet();
+                imageCanvas.draw(result);
+                mappedCanvas.draw(result);
+            }
+
+            imageCanvas.copyRow(3, 150, 10, 100);
+            mappedCanvas.copyRow(3, 150, 10, 100);
+
+            assertSame(imageCanvas, mappedCanvas);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooWide() throws IOException {
+        MappedCanvas.create(temporaryFolder.newFile().toPath(), new Dimension(100, 10), Palette.grey(), 399);
+    }
+
+    private static void assertSame(Canvas expected, Canvas actual) {
+        int width = expected.getSize().getWidth();
+        int[] expectedRow = new int[width];
+        int[] actualRow = new int[width];
+
+        for (int y = 0; y < expected.getSize().getHeight(); y++) {
+            expected.getRow(y, 0, expectedRow, 0, width);
+            actual.getRow(y, 0, actualRow, 0, width);
+            Assert.assertArrayEquals("row " + y, expectedRow, actualRow);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.marre.mandelbrot.render;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMarianiSilverRenderer {
+    private final LocalMandelbrotBackend backend = LocalMandelbrotBackend.create(2);
+
+    @Test
+    public void testUniformRegionIsFilled() {
+        // Entirely inside the main cardioid
+        MandelbrotPart region = MandelbrotPart.create(
+                new Dimension(200, 100),
+                new Complex(-0.4, -0.2),
+                new Complex(0.0, 0.2),
+                100);
+
+        MarianiSilverRenderer renderer = MarianiSilverRenderer.create(backend, 8, 16);
+        MandelbrotResult result = merge(region, renderer.render(region).toList().blockingGet());
+
+        for (int pixel : result.getPixels()) {
+            Assert.assertEquals(100, pixel);
+        }
+        Assert.assertEquals(2 * 200 + 2 * 98, renderer.getRequestedPixels());
+        Assert.assertEquals(198 * 98, renderer.getFilledPixels());
+    }
+
+    @Test
+    public void testSameAsFullRender() {
+        MandelbrotPart region = MandelbrotPart.create(
+                new Dimension(300, 300),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                100);
+
+        MarianiSilverRenderer renderer = MarianiSilverRenderer.create(backend, 8, 16);
+        MandelbrotResult result = merge(region, renderer.render(region).toList().blockingGet());
+        int[] expected = backend.mandelbrot(region).blockingGet().getPixels();
+
+        // Coordinates of sub parts are rounded differently, so a few pixels on thin filaments differ.
+        // Splitting the part the normal way gives the same amount of differences.
+        int differing = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != result.getPixels()[i]) {
+                differing++;
+            }
+        }
+        Assert.assertTrue("differing pixels " + differing, differing < expected.length / 1000);
+        Assert.assertEquals(300 * 300, renderer.getRequestedPixels() + renderer.getFilledPixels());
+        Assert.assertTrue(renderer.getFilledPixels() > 300 * 300 / 10);
+    }
+
+    @Test
+    public void testRequestsOfAllPartsAreBounded() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(200, 200),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                100);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        MandelbrotBackend slowBackend = part -> backend.mandelbrot(part)
+                .delay(1, TimeUnit.MILLISECONDS, Schedulers.io())
+                .doOnSubscribe(disposable -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                .doOnEvent((result, err) -> running.decrementAndGet());
+
+        // Every part is rendered at once, so only the renderer bounds the requests
+        MarianiSilverRenderer renderer = MarianiSilverRenderer.create(slowBackend, 8, 3);
+        long pixels = Flowable.fromIterable(whole.split(50))
+                .flatMap(renderer::render)
+                .map(result -> (long) result.getPixels().length)
+                .reduce(0L, Long::sum)
+                .blockingGet();
+
+        Assert.assertEquals(200 * 200, pixels);
+        Assert.assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 3);
+        Assert.assertEquals(0, running.get());
+    }
+
+    private static MandelbrotResult merge(MandelbrotPart region, List<MandelbrotResult> results) {
+        long pixels = 0;
+        for (MandelbrotResult result : results) {
+            pixels += result.getPixels().length;
+        }
+        Assert.assertEquals("results must not overlap", region.getSize().getWidth() * region.getSize().getHeight(), pixels);
+
+        return MandelbrotResult.merge(region, results);
+    }
+}
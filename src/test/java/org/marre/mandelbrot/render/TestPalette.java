@@ -0,0 +1,107 @@
+package org.marre.mandelbrot.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestPalette {
+    @Test
+    public void testGrey() {
+        Palette palette = Palette.grey();
+
+        Assert.assertEquals(Canvas.packRgb(0, 0, 0), palette.colour(0));
+        Assert.assertEquals(Canvas.packRgb(17, 17, 17), palette.colour(17));
+        Assert.assertEquals(Canvas.packRgb(4, 4, 4), palette.colour(260));
+
+        int[] rgb = new int[3];
+        palette.colourize(new int[] { 1, 255, 256 }, 0, rgb, 0, 3);
+        Assert.assertArrayEquals(new int[] { Canvas.packRgb(1, 1, 1), Canvas.packRgb(255, 255, 255), Canvas.packRgb(0, 0, 0) }, rgb);
+    }
+
+    @Test
+    public void testSmooth() {
+        Palette palette = Palette.smooth(1000);
+
+        Assert.assertEquals(palette.colour(3), palette.colour(3 + 256));
+        Assert.assertEquals(0xff000000, palette.colour(1000));
+        Assert.assertEquals(0xff000000, palette.colour(1001));
+
+        // Neighbouring iterations get close colours
+        for (int i = 0; i < 256; i++) {
+            int a = palette.colour(i);
+            int b = palette.colour(i + 1);
+            Assert.assertTrue(Math.abs(((a >> 8) & 0xff) - ((b >> 8) & 0xff)) < 16);
+        }
+
+        int[] rgb = new int[2];
+        palette.colourize(new int[] { 300, 1000 }, 0, rgb, 0, 2);
+        Assert.assertArrayEquals(new int[] { palette.colour(300), palette.colour(1000) }, rgb);
+    }
+
+    @Test
+    public void testGradient() {
+        Assert.assertEquals(0xff000764, LookupPalette.gradient(0.0));
+        Assert.assertEquals(0xffedffff, LookupPalette.gradient(0.42));
+        Assert.assertEquals(0xff000764, LookupPalette.gradient(1.0));
+    }
+
+    @Test
+    public void testHistogramEqualized() {
+        Palette palette = Palette.histogram(10_000);
+
+        // Almost all pixels escape after 10-19 iterations, a few take thousands
+        int[] pixels = new int[10_000];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i % 100 == 0 ? 1000 + i / 10 : 10 + i % 10;
+        }
+        palette.record(pixels);
+
+        // The few iterations that cover most pixels are spread over the gradient
+        Set<Integer> common = new HashSet<>();
+        for (int i = 10; i < 20; i++) {
+            common.add(palette.colour(i));
+        }
+        Assert.assertEquals(10, common.size());
+        Assert.assertEquals(LookupPalette.gradient(0.0), palette.colour(10));
+
+        // While iterations without pixels get the same colour as the ones below them
+        Assert.assertEquals(palette.colour(1501), palette.colour(1509));
+        Assert.assertEquals(0xff000000, palette.colour(10_000));
+    }
+
+    @Test
+    public void testHistogramSampled() {
+        Palette palette = Palette.histogram(100);
+        int[] pixels = new int[400];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i % 40;
+        }
+
+        // A sample of 40 pixels for an image of 400, with the same distribution as the image
+        palette.sample(Arrays.copyOf(pixels, 40), pixels.length);
+        int sampled = palette.colour(20);
+        Assert.assertEquals(LookupPalette.gradient(0.5), sampled);
+
+        // The first part only has low iterations, but the sample still stands for 19/20 of the image
+        palette.record(Arrays.copyOf(pixels, 20));
+        Assert.assertEquals(LookupPalette.gradient((20 * (1 + 9.5)) / 400), palette.colour(20));
+
+        palette.record(Arrays.copyOfRange(pixels, 20, 400));
+        Assert.assertEquals(sampled, palette.colour(20));
+    }
+
+    @Test
+    public void testHistogramRebuilt() {
+        Palette palette = Palette.histogram(100);
+        palette.record(new int[] { 10, 20, 30, 40 });
+        int before = palette.colour(25);
+
+        // Recording many more pixels below 25 moves it along the gradient
+        int[] low = new int[100];
+        palette.record(low);
+        Assert.assertNotEquals(before, palette.colour(25));
+    }
+}
@@ -0,0 +1,91 @@
+package org.marre.mandelbrot.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+
+import java.util.List;
+
+public class TestSymmetryPlan {
+    @Test
+    public void testCenteredView() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(1000, 1000),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5),
+                100);
+
+        SymmetryPlan plan = SymmetryPlan.create(whole);
+
+        // Row 500 is the real axis, rows 501..999 mirror rows 499..1
+        Assert.assertEquals(501, plan.getMirroredFrom());
+        Assert.assertEquals(499, plan.getMirroredRows());
+        Assert.assertEquals(999, plan.mirror(1));
+        Assert.assertEquals(501, plan.mirror(499));
+        Assert.assertEquals(-1, plan.mirror(0));
+        Assert.assertEquals(-1, plan.mirror(500));
+
+        List<MandelbrotPart> parts = plan.parts(250).toList().blockingGet();
+        Assert.assertEquals(12, parts.size());
+        Assert.assertEquals(12, plan.partCount(250));
+
+        int rows = 0;
+        for (MandelbrotPart part : parts) {
+            if (part.getOffset().getX() == 0) {
+                rows += part.getSize().getHeight();
+            }
+        }
+        Assert.assertEquals(501, rows);
+    }
+
+    @Test
+    public void testOffCenterView() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(100, 400),
+                new Complex(-2, -0.5),
+                new Complex(1, 1.5),
+                100);
+
+        SymmetryPlan plan = SymmetryPlan.create(whole);
+
+        // Row 100 is the real axis, rows 101..200 mirror rows 99..0. Rows 201..399 are requested.
+        Assert.assertEquals(101, plan.getMirroredFrom());
+        Assert.assertEquals(100, plan.getMirroredRows());
+        Assert.assertEquals(200, plan.mirror(0));
+
+        List<MandelbrotPart> parts = plan.parts(1000).toList().blockingGet();
+        Assert.assertEquals(2, parts.size());
+        Assert.assertEquals(101, parts.get(0).getSize().getHeight());
+        Assert.assertEquals(201, parts.get(1).getOffset().getY());
+        Assert.assertEquals(199, parts.get(1).getSize().getHeight());
+    }
+
+    @Test
+    public void testNoSymmetry() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(1000, 1000),
+                new Complex(-2, 0.1),
+                new Complex(1, 1.5),
+                100);
+
+        SymmetryPlan plan = SymmetryPlan.create(whole);
+
+        Assert.assertEquals(0, plan.getMirroredRows());
+        Assert.assertEquals(16, plan.parts(250).count().blockingGet().intValue());
+    }
+
+    @Test
+    public void testRealAxisBetweenPixels() {
+        MandelbrotPart whole = MandelbrotPart.create(
+                new Dimension(1000, 1000),
+                new Complex(-2, -1.5),
+                new Complex(1, 1.5015),
+                100);
+
+        SymmetryPlan plan = SymmetryPlan.create(whole);
+
+        Assert.assertEquals(0, plan.getMirroredRows());
+    }
+}
@@ -0,0 +1,57 @@
+package org.marre.mandelbrot.render;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.marre.mandelbrot.Dimension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class TestTilePyramidWriter {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testLevels() {
+        Assert.assertEquals(1, TilePyramidWriter.levels(new Dimension(256, 100), 256));
+        Assert.assertEquals(2, TilePyramidWriter.levels(new Dimension(257, 100), 256));
+        Assert.assertEquals(3, TilePyramidWriter.levels(new Dimension(300, 200), 100));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        // 300x200 -> 150x100 -> 75x50
+        ImageCanvas canvas = Canvas.create(new Dimension(300, 200));
+        int[] row = new int[300];
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 300; x++) {
+                row[x] = Canvas.packRgb(x, y, (x / 2 + y / 2) % 2 == 0 ? 0 : 200);
+            }
+            canvas.setRow(y, 0, row, 0, 300);
+        }
+
+        Path directory = temporaryFolder.getRoot().toPath();
+        int tiles = TilePyramidWriter.write(canvas, directory, 128);
+
+        Assert.assertEquals(3 * 2 + 2 * 1 + 1, tiles);
+
+        BufferedImage fullCorner = ImageIO.read(TilePyramidWriter.tile(directory, 2, 2, 1).toFile());
+        Assert.assertEquals(300 - 256, fullCorner.getWidth());
+        Assert.assertEquals(200 - 128, fullCorner.getHeight());
+        Assert.assertEquals(canvas.getImage().getRGB(299, 199), fullCorner.getRGB(43, 71));
+
+        BufferedImage middle = ImageIO.read(TilePyramidWriter.tile(directory, 1, 1, 0).toFile());
+        Assert.assertEquals(150 - 128, middle.getWidth());
+        Assert.assertEquals(100, middle.getHeight());
+        // The average of a 2x2 block
+        Assert.assertEquals(Canvas.packRgb(0, 2, 200), middle.getRGB(0, 1));
+
+        BufferedImage top = ImageIO.read(TilePyramidWriter.tile(directory, 0, 0, 0).toFile());
+        Assert.assertEquals(75, top.getWidth());
+        Assert.assertEquals(50, top.getHeight());
+    }
+}
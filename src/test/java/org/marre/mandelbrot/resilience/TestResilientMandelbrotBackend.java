@@ -0,0 +1,171 @@
+package org.marre.mandelbrot.resilience;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.metrics.Histogram;
+import org.marre.mandelbrot.metrics.MandelbrotMetrics;
+import org.marre.mandelbrot.metrics.RecordingMetrics;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestResilientMandelbrotBackend {
+    private static final MandelbrotPart PART = MandelbrotPart.create(
+            new Dimension(10, 10),
+            new Complex(-2, -1),
+            new Complex(1, 1),
+            100);
+
+    @Test
+    public void testRetry() {
+        AtomicInteger requests = new AtomicInteger();
+        MandelbrotBackend backend = part -> Single.defer(() -> requests.incrementAndGet() <= 2
+                ? Single.error(new IOException("Connection reset"))
+                : Single.just(result(part)));
+
+        RecordingMetrics metrics = RecordingMetrics.create();
+        MandelbrotResult result = ResilientMandelbrotBackend.create(backend, ResiliencePolicy.create(2, 1, 10, 0, 0.0, 0.1), metrics)
+                .mandelbrot(PART)
+                .blockingGet();
+
+        Assert.assertSame(PART, result.getMandelbrotPart());
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(2, metrics.getRetries());
+    }
+
+    @Test
+    public void testRetriesExhausted() {
+        AtomicInteger requests = new AtomicInteger();
+        MandelbrotBackend backend = part -> Single.defer(() -> {
+            requests.incrementAndGet();
+            return Single.error(new IOException("Connection reset"));
+        });
+
+        try {
+            ResilientMandelbrotBackend.create(backend, ResiliencePolicy.create(3, 1, 10, 0, 0.0, 0.1), MandelbrotMetrics.NOOP)
+                    .mandelbrot(PART)
+                    .blockingGet();
+            Assert.fail("Expected IOException");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+
+        Assert.assertEquals(4, requests.get());
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() {
+        AtomicInteger requests = new AtomicInteger();
+        MandelbrotBackend backend = part -> Single.defer(() -> {
+            requests.incrementAndGet();
+            return Single.error(new HttpException(Response.error(400, ResponseBody.create(MediaType.parse("text/plain"), "Bad Request"))));
+        });
+
+        try {
+            ResilientMandelbrotBackend.create(backend, ResiliencePolicy.create(3, 1, 10, 0, 0.0, 0.1), MandelbrotMetrics.NOOP)
+                    .mandelbrot(PART)
+                    .blockingGet();
+            Assert.fail("Expected HttpException");
+        } catch (HttpException e) {
+            Assert.assertEquals(400, e.code());
+        }
+
+        Assert.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testDeadline() {
+        // The first request never answers
+        AtomicInteger requests = new AtomicInteger();
+        MandelbrotBackend backend = part -> Single.defer(() -> requests.incrementAndGet() == 1
+                ? Single.never()
+                : Single.just(result(part)));
+
+        MandelbrotResult result = ResilientMandelbrotBackend.create(backend, ResiliencePolicy.create(1, 1, 10, 50, 0.0, 0.1), MandelbrotMetrics.NOOP)
+                .mandelbrot(PART)
+                .blockingGet();
+
+        Assert.assertSame(PART, result.getMandelbrotPart());
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testHedge() {
+        // The first request never answers, the hedge does
+        AtomicInteger requests = new AtomicInteger();
+        MandelbrotBackend backend = part -> Single.defer(() -> requests.incrementAndGet() == 1
+                ? Single.never()
+                : Single.just(result(part)));
+
+        // Enough observed latencies of 10 ms to start hedging
+        Histogram latencies = new Histogram();
+        for (int i = 0; i < ResilientMandelbrotBackend.MIN_HEDGE_SAMPLES; i++) {
+            latencies.record(10_000_000);
+        }
+
+        RecordingMetrics metrics = RecordingMetrics.create();
+        ResilientMandelbrotBackend resilientBackend = new ResilientMandelbrotBackend(
+                backend,
+                ResiliencePolicy.create(0, 0, 0, 0, 0.95, 0.1),
+                new RetryBudget(0.1),
+                latencies,
+                metrics,
+                Schedulers.computation());
+
+        MandelbrotResult result = resilientBackend.mandelbrot(PART).blockingGet();
+
+        Assert.assertSame(PART, result.getMandelbrotPart());
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(1, metrics.getHedges());
+    }
+
+    @Test
+    public void testNoHedgeWithoutSamples() {
+        ResilientMandelbrotBackend resilientBackend = ResilientMandelbrotBackend.create(
+                part -> Single.just(result(part)),
+                ResiliencePolicy.create(0, 0, 0, 0, 0.95, 0.1),
+                MandelbrotMetrics.NOOP);
+
+        Assert.assertEquals(-1, resilientBackend.hedgeDelayNanos());
+    }
+
+    @Test
+    public void testBudget() {
+        RetryBudget budget = new RetryBudget(0.1);
+
+        for (int i = 0; i < RetryBudget.MIN_EXTRA; i++) {
+            Assert.assertTrue(budget.tryAcquire());
+        }
+        Assert.assertFalse(budget.tryAcquire());
+
+        for (int i = 0; i < 100; i++) {
+            budget.request();
+        }
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(budget.tryAcquire());
+        }
+        Assert.assertFalse(budget.tryAcquire());
+        Assert.assertEquals(RetryBudget.MIN_EXTRA + 10, budget.getExtra());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHedgeQuantile() {
+        ResiliencePolicy.create(0, 0, 0, 0, 1.0, 0.1);
+    }
+
+    private static MandelbrotResult result(MandelbrotPart part) {
+        return new MandelbrotResult(part, new int[part.getSize().getWidth() * part.getSize().getHeight()]);
+    }
+}
@@ -0,0 +1,42 @@
+package org.marre.mandelbrot.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.MandelbrotPart;
+
+public class TestTileGrid {
+    @Test
+    public void testParts() {
+        TileGrid grid = TileGrid.create(256, 100);
+
+        MandelbrotPart whole = grid.part(0, 0, 0);
+        Assert.assertEquals(256, whole.getSize().getWidth());
+        Assert.assertEquals(-2.0, whole.getMinc().getRe(), 0.0);
+        Assert.assertEquals(2.0, whole.getMaxc().getIm(), 0.0);
+
+        MandelbrotPart tile = grid.part(2, 3, 1);
+        Assert.assertEquals(1.0, tile.getMinc().getRe(), 0.0);
+        Assert.assertEquals(2.0, tile.getMaxc().getRe(), 0.0);
+        Assert.assertEquals(-1.0, tile.getMinc().getIm(), 0.0);
+        Assert.assertEquals(0.0, tile.getMaxc().getIm(), 0.0);
+        Assert.assertEquals(100, tile.getMaxSteps());
+    }
+
+    @Test
+    public void testContains() {
+        TileGrid grid = TileGrid.create(256, 100);
+
+        Assert.assertTrue(grid.contains(0, 0, 0));
+        Assert.assertFalse(grid.contains(0, 1, 0));
+        Assert.assertTrue(grid.contains(3, 7, 7));
+        Assert.assertFalse(grid.contains(3, 8, 0));
+        Assert.assertFalse(grid.contains(-1, 0, 0));
+        Assert.assertTrue(grid.contains(TileGrid.MAX_ZOOM, 0, Integer.MAX_VALUE));
+        Assert.assertFalse(grid.contains(TileGrid.MAX_ZOOM + 1, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutside() {
+        TileGrid.create(256, 100).part(1, 2, 0);
+    }
+}
@@ -0,0 +1,92 @@
+package org.marre.mandelbrot.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.marre.mandelbrot.render.Palette;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestTileServer {
+    private TileService service;
+    private TileServer server;
+
+    @Before
+    public void setup() throws IOException {
+        service = TileService.create(LocalMandelbrotBackend.create(1), TileGrid.create(32, 100), Palette.smooth(100), 1 << 20);
+        server = TileServer.create(service, new InetSocketAddress("127.0.0.1", 0), 2);
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testTile() throws IOException {
+        HttpURLConnection connection = open("/1/0/1.png");
+
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertEquals("image/png", connection.getContentType());
+        try (InputStream in = connection.getInputStream()) {
+            BufferedImage image = ImageIO.read(in);
+            Assert.assertEquals(32, image.getWidth());
+        }
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        Assert.assertEquals(404, open("/1/2/0.png").getResponseCode());
+        Assert.assertEquals(404, open("/1/0/99999999999.png").getResponseCode());
+        Assert.assertEquals(404, open("/index.html").getResponseCode());
+    }
+
+    @Test
+    public void testConcurrentViewers() throws Exception {
+        // Many viewers looking at the same four tiles
+        ExecutorService viewers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String path = "/1/" + (i % 2) + "/" + (i / 2 % 2) + ".png";
+                responses.add(viewers.submit(() -> {
+                    HttpURLConnection connection = open(path);
+                    try (InputStream in = connection.getInputStream()) {
+                        while (in.read() >= 0) {
+                            // Read the whole tile
+                        }
+                    }
+                    return connection.getResponseCode();
+                }));
+            }
+
+            for (Future<Integer> response : responses) {
+                Assert.assertEquals(200, response.get().intValue());
+            }
+        } finally {
+            viewers.shutdown();
+        }
+
+        Assert.assertEquals(64, service.getRequests());
+        Assert.assertEquals(4, service.getRendered());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        InetSocketAddress address = server.getAddress();
+        return (HttpURLConnection) new URL("http", "127.0.0.1", address.getPort(), path).openConnection();
+    }
+}
@@ -0,0 +1,111 @@
+package org.marre.mandelbrot.server;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.MandelbrotPart;
+import org.marre.mandelbrot.api.MandelbrotBackend;
+import org.marre.mandelbrot.api.MandelbrotResult;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.marre.mandelbrot.render.Palette;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestTileService {
+    private static final TileGrid GRID = TileGrid.create(16, 50);
+
+    @Test
+    public void testCoalesce() {
+        List<SingleSubject<MandelbrotResult>> calls = new ArrayList<>();
+        MandelbrotBackend backend = part -> {
+            SingleSubject<MandelbrotResult> call = SingleSubject.create();
+            calls.add(call);
+            return call;
+        };
+        TileService service = TileService.create(backend, GRID, Palette.grey(), 1 << 20, Schedulers.trampoline());
+
+        List<TestObserver<byte[]>> viewers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            viewers.add(service.tile(1, 1, 0).test());
+        }
+        Assert.assertEquals(1, calls.size());
+
+        MandelbrotPart part = GRID.part(1, 1, 0);
+        calls.get(0).onSuccess(new MandelbrotResult(part, new int[16 * 16]));
+
+        byte[] png = viewers.get(0).values().get(0);
+        for (TestObserver<byte[]> viewer : viewers) {
+            viewer.assertValue(png);
+        }
+
+        // Later requests are answered from the LRU
+        service.tile(1, 1, 0).test().assertValue(png);
+        Assert.assertEquals(1, calls.size());
+        Assert.assertEquals(11, service.getRequests());
+        Assert.assertEquals(1, service.getLruHits());
+        Assert.assertEquals(1, service.getRendered());
+    }
+
+    @Test
+    public void testRetryAfterError() {
+        AtomicInteger calls = new AtomicInteger();
+        MandelbrotBackend failing = part -> calls.incrementAndGet() == 1
+                ? Single.error(new IOException("HTTP 502"))
+                : LocalMandelbrotBackend.create(1).mandelbrot(part);
+        TileService service = TileService.create(failing, GRID, Palette.grey(), 1 << 20);
+
+        service.tile(0, 0, 0).test().awaitDone(10, TimeUnit.SECONDS).assertError(IOException.class);
+        service.tile(0, 0, 0).test().awaitDone(10, TimeUnit.SECONDS).assertValueCount(1);
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        TileService service = TileService.create(LocalMandelbrotBackend.create(1), GRID, Palette.grey(), 1 << 20);
+
+        byte[] png = service.tile(2, 1, 1).blockingGet();
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        Assert.assertEquals(16, image.getWidth());
+        Assert.assertEquals(16, image.getHeight());
+    }
+
+    @Test
+    public void testOutsideGrid() {
+        TileService service = TileService.create(LocalMandelbrotBackend.create(1), GRID, Palette.grey(), 1 << 20);
+
+        service.tile(1, 2, 0).test().assertError(IllegalArgumentException.class);
+        Assert.assertEquals(0, service.getRendered());
+    }
+
+    @Test
+    public void testLruEviction() {
+        TileLru lru = TileLru.create(100);
+
+        lru.put(new TileKey(0, 0, 0), new byte[40]);
+        lru.put(new TileKey(1, 0, 0), new byte[40]);
+        lru.get(new TileKey(0, 0, 0));
+        lru.put(new TileKey(1, 1, 0), new byte[40]);
+
+        // The least recently used tile is evicted
+        Assert.assertNotNull(lru.get(new TileKey(0, 0, 0)));
+        Assert.assertNull(lru.get(new TileKey(1, 0, 0)));
+        Assert.assertNotNull(lru.get(new TileKey(1, 1, 0)));
+        Assert.assertEquals(80, lru.bytes());
+
+        // Tiles larger than the whole LRU are not kept
+        lru.put(new TileKey(2, 0, 0), new byte[101]);
+        Assert.assertNull(lru.get(new TileKey(2, 0, 0)));
+        Assert.assertEquals(2, lru.size());
+    }
+}
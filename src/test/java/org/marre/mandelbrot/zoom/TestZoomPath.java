@@ -0,0 +1,76 @@
+package org.marre.mandelbrot.zoom;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.MandelbrotPart;
+
+import java.util.Arrays;
+
+public class TestZoomPath {
+    @Test
+    public void testKeyframes() {
+        // Four frames per doubling, the fewest that are cropped from keyframes
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.1), 3.0, Math.pow(2, 0.25), 13, new Dimension(300, 200), 100);
+
+        Assert.assertFalse(path.isDirect());
+        Assert.assertEquals(2, path.getKeyframeScale());
+        Assert.assertEquals(0, path.keyframeOf(0));
+        Assert.assertEquals(0, path.keyframeOf(3));
+        Assert.assertEquals(1, path.keyframeOf(4));
+        Assert.assertEquals(3, path.keyframeOf(12));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), path.keyframes());
+
+        Assert.assertEquals(1.0, path.crop(0), 1e-9);
+        Assert.assertEquals(1 / Math.sqrt(2), path.crop(2), 1e-9);
+        Assert.assertEquals(1.0, path.crop(4), 1e-9);
+    }
+
+    @Test
+    public void testDirectFrames() {
+        // sqrt(2) per frame, two frames per doubling
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.1), 3.0, Math.sqrt(2), 5, new Dimension(300, 200), 100);
+
+        Assert.assertTrue(path.isDirect());
+        Assert.assertEquals(1, path.getKeyframeScale());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), path.keyframes());
+        Assert.assertEquals(3, path.keyframeOf(3));
+        Assert.assertEquals(1.0, path.crop(3), 1e-9);
+
+        MandelbrotPart frame = path.keyframe(2);
+        Assert.assertEquals(300, frame.getSize().getWidth());
+        Assert.assertEquals(200, frame.getSize().getHeight());
+        Assert.assertEquals(-0.75 - 0.75, frame.getMinc().getRe(), 1e-12);
+        Assert.assertEquals(-0.75 + 0.75, frame.getMaxc().getRe(), 1e-12);
+    }
+
+    @Test
+    public void testKeyframe() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.1), 3.0, 1.1, 20, new Dimension(300, 200), 100);
+
+        MandelbrotPart keyframe = path.keyframe(2);
+        Assert.assertEquals(600, keyframe.getSize().getWidth());
+        Assert.assertEquals(400, keyframe.getSize().getHeight());
+        Assert.assertEquals(-0.75 - 0.375, keyframe.getMinc().getRe(), 1e-12);
+        Assert.assertEquals(-0.75 + 0.375, keyframe.getMaxc().getRe(), 1e-12);
+        Assert.assertEquals(0.1 - 0.25, keyframe.getMinc().getIm(), 1e-12);
+        Assert.assertEquals(0.1 + 0.25, keyframe.getMaxc().getIm(), 1e-12);
+        Assert.assertEquals(100, keyframe.getMaxSteps());
+    }
+
+    @Test
+    public void testCropWithinKeyframe() {
+        ZoomPath path = ZoomPath.create(new Complex(0, 0), 3.0, 1.07, 100, new Dimension(300, 200), 100);
+
+        for (int frame = 0; frame < path.getFrames(); frame++) {
+            Assert.assertTrue(path.crop(frame) <= 1.0);
+            Assert.assertTrue(path.crop(frame) > 0.5);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZoomOut() {
+        ZoomPath.create(new Complex(0, 0), 3.0, 0.9, 10, new Dimension(300, 200), 100);
+    }
+}
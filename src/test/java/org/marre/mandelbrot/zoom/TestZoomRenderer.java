@@ -0,0 +1,129 @@
+package org.marre.mandelbrot.zoom;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.marre.mandelbrot.Complex;
+import org.marre.mandelbrot.Dimension;
+import org.marre.mandelbrot.Position;
+import org.marre.mandelbrot.local.LocalMandelbrotBackend;
+import org.marre.mandelbrot.render.Canvas;
+import org.marre.mandelbrot.render.ImageCanvas;
+import org.marre.mandelbrot.render.Palette;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+public class TestZoomRenderer {
+    @Test
+    public void testKeyframes() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.0), 3.0, 1.1, 16, new Dimension(60, 40), 100);
+        ZoomRenderer renderer = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, false);
+
+        List<ZoomRenderer.Keyframe> keyframes = renderer.keyframes().toList().blockingGet();
+
+        Assert.assertEquals(3, keyframes.size());
+        for (int i = 0; i < keyframes.size(); i++) {
+            Assert.assertEquals((int) path.keyframes().get(i), keyframes.get(i).getIndex());
+            Assert.assertEquals(120, keyframes.get(i).getCanvas().getImage().getWidth());
+        }
+        // A quarter of the second and third keyframes is copied from the keyframe before
+        Assert.assertEquals(120 * 80 + 2 * 3 * 60 * 40, renderer.getRequestedPixels());
+    }
+
+    @Test
+    public void testCopiedPixels() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.743, 0.13), 0.1, 1.1, 16, new Dimension(61, 41), 200);
+        ZoomRenderer renderer = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, false);
+
+        List<ZoomRenderer.Keyframe> keyframes = renderer.keyframes().toList().blockingGet();
+        Assert.assertEquals(122 * 82 + 2 * (122 * 82 - 61 * 41), renderer.getRequestedPixels());
+
+        // Copied pixels only differ where rounding tips the escape of a pixel on the boundary
+        LocalMandelbrotBackend backend = LocalMandelbrotBackend.create();
+        for (ZoomRenderer.Keyframe keyframe : keyframes) {
+            int[] expected = backend.mandelbrot(path.keyframe(keyframe.getIndex())).blockingGet().getPixels();
+            ImageCanvas canvas = Canvas.create(new Dimension(122, 82), Palette.grey());
+            canvas.draw(new Position(0, 0), new Dimension(122, 82), expected);
+
+            Assert.assertTrue(differing(canvas.getImage(), keyframe.getCanvas().getImage()) < 122 * 82 / 100);
+        }
+    }
+
+    @Test
+    public void testDirectFrames() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.1), 3.0, 1.5, 4, new Dimension(60, 40), 100);
+        ZoomRenderer renderer = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, false);
+
+        List<ZoomRenderer.Keyframe> keyframes = renderer.keyframes().toList().blockingGet();
+
+        Assert.assertEquals(4, keyframes.size());
+        Assert.assertEquals(4 * 60 * 40, renderer.getRequestedPixels());
+
+        // Each frame is its keyframe as is
+        ImageCanvas frame = Canvas.create(path.getFrameSize(), Palette.grey());
+        renderer.drawFrame(keyframes.get(2), 2, frame);
+        Assert.assertEquals(0, differing(keyframes.get(2).getCanvas().getImage(), frame.getImage()));
+    }
+
+    @Test
+    public void testMirroredKeyframes() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.0), 3.0, 1.1, 16, new Dimension(60, 40), 100);
+        ZoomRenderer plain = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, false);
+        ZoomRenderer mirrored = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, true);
+
+        List<ZoomRenderer.Keyframe> expected = plain.keyframes().toList().blockingGet();
+        List<ZoomRenderer.Keyframe> actual = mirrored.keyframes().toList().blockingGet();
+
+        Assert.assertTrue(mirrored.getRequestedPixels() < plain.getRequestedPixels());
+
+        // Mirrored rows only differ where rounding tips the escape of a pixel on the boundary
+        int differing = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            differing += differing(expected.get(i).getCanvas().getImage(), actual.get(i).getCanvas().getImage());
+        }
+        Assert.assertTrue(differing < expected.size() * 120 * 80 / 100);
+    }
+
+    @Test
+    public void testDrawWholeKeyframe() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.0), 3.0, 1.1, 16, new Dimension(60, 40), 100);
+        ZoomRenderer renderer = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, false);
+        ZoomRenderer.Keyframe keyframe = renderer.keyframes().blockingFirst();
+
+        // The first frame is the whole keyframe at half the resolution, each pixel the mean of four
+        ImageCanvas frame = Canvas.create(path.getFrameSize(), Palette.grey());
+        renderer.drawFrame(keyframe, 0, frame);
+
+        BufferedImage source = keyframe.getCanvas().getImage();
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 60; x++) {
+                int mean = ((source.getRGB(2 * x, 2 * y) & 0xff)
+                        + (source.getRGB(2 * x + 1, 2 * y) & 0xff)
+                        + (source.getRGB(2 * x, 2 * y + 1) & 0xff)
+                        + (source.getRGB(2 * x + 1, 2 * y + 1) & 0xff)) / 4;
+                Assert.assertEquals(mean, frame.getImage().getRGB(x, y) & 0xff, 2);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDrawFromOtherKeyframe() {
+        ZoomPath path = ZoomPath.create(new Complex(-0.75, 0.0), 3.0, 1.1, 16, new Dimension(60, 40), 100);
+        ZoomRenderer renderer = ZoomRenderer.create(LocalMandelbrotBackend.create(), path, Palette.grey(), 50, 4, false);
+        ZoomRenderer.Keyframe keyframe = renderer.keyframes().blockingFirst();
+
+        renderer.drawFrame(keyframe, 15, Canvas.create(path.getFrameSize(), Palette.grey()));
+    }
+
+    private static int differing(BufferedImage expected, BufferedImage actual) {
+        int differing = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    differing++;
+                }
+            }
+        }
+        return differing;
+    }
+}